@@ -0,0 +1,133 @@
+package com.base.benchmark;
+
+import androidx.annotation.NonNull;
+
+import com.base.networking.retrofit.interceptor.ApiRestInterceptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Overhead that {@link ApiRestInterceptor} adds to every request, measured against a chain that
+ * answers immediately. The baseline proceeds without intercepting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiRestInterceptorBenchmark {
+
+    private Interceptor mInterceptor;
+    private Interceptor.Chain mChain;
+
+    @Setup
+    public void setUp() {
+        mInterceptor = new ApiRestInterceptor() {
+            @Override
+            public void addHeaders(@NonNull Request.Builder requestBuilder) {
+                requestBuilder.addHeader("Authorization", "Bearer 0123456789abcdef");
+                requestBuilder.addHeader("X-Client-Version", "1.0.0");
+            }
+        };
+        mChain = new ImmediateChain(new Request.Builder()
+                .url("http://localhost/users?page=1")
+                .build());
+    }
+
+    @Benchmark
+    public Response baseline() throws IOException {
+        return mChain.proceed(mChain.request());
+    }
+
+    @Benchmark
+    public Response intercept() throws IOException {
+        return mInterceptor.intercept(mChain);
+    }
+
+    /**
+     * A chain that answers every request with an empty response, without performing it.
+     */
+    private static class ImmediateChain implements Interceptor.Chain {
+
+        private static final ResponseBody EMPTY_BODY =
+                ResponseBody.create(MediaType.parse("application/json"), "");
+
+        private final Request mRequest;
+
+        ImmediateChain(@NonNull Request request) {
+            mRequest = request;
+        }
+
+        @Override
+        public Request request() {
+            return mRequest;
+        }
+
+        @Override
+        public Response proceed(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(EMPTY_BODY)
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            return null;
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.base.benchmark;
+
+import androidx.annotation.NonNull;
+
+import com.base.networking.retrofit.RetrofitServices;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * {@link RetrofitServices} pointing to a local server. The logging interceptor added by default
+ * is left out, since it would dominate the measurements.
+ */
+class BenchmarkServices extends RetrofitServices {
+
+    private final String mEndpoint;
+
+    BenchmarkServices(@NonNull String endpoint) {
+        mEndpoint = endpoint;
+    }
+
+    @NonNull
+    @Override
+    public String getApiEndpoint() {
+        return mEndpoint;
+    }
+
+    @Override
+    protected void initClient(@NonNull OkHttpClient.Builder builder) {
+    }
+}
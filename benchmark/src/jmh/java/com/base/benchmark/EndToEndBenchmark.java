@@ -0,0 +1,90 @@
+package com.base.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+/**
+ * Full API calls through {@link com.base.networking.retrofit.RetrofitServices}, against an
+ * in-process {@link MockWebServer} that answers every request with the same payload. It measures
+ * the client side of the stack: connection reuse, interceptors, event listeners and decoding.
+ * <p>
+ * Both throughput and the latency distribution are reported, with one and several threads
+ * sharing the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EndToEndBenchmark {
+
+    @Param({"1", "50"})
+    public int users;
+
+    private MockWebServer mServer;
+    private SampleService mService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final String usersJson = Payloads.users(users);
+        final String userJson = Payloads.user();
+
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String body = "/users".equals(request.getPath()) ? usersJson : userJson;
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody(body);
+            }
+        });
+        mServer.start();
+
+        BenchmarkServices services = new BenchmarkServices(mServer.url("/").toString());
+        services.init();
+        mService = services.getService(SampleService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Benchmark
+    public List<User> getUsers() throws IOException {
+        return checked(mService.getUsers().execute());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<User> getUsersConcurrently() throws IOException {
+        return checked(mService.getUsers().execute());
+    }
+
+    @Benchmark
+    public User getUser() throws IOException {
+        return checked(mService.getUser(1).execute());
+    }
+
+    private static <T> T checked(Response<T> response) throws IOException {
+        if (!response.isSuccessful()) throw new IOException("Unexpected " + response.code());
+        return response.body();
+    }
+}
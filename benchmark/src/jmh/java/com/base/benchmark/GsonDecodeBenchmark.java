@@ -0,0 +1,68 @@
+package com.base.benchmark;
+
+import com.base.networking.retrofit.serializer.BaseGsonBuilder;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of a Gson configured by {@link BaseGsonBuilder}, from a String and from the
+ * UTF-8 bytes of a response body, like the Retrofit converter does, and encode throughput of the
+ * same, already decoded, users.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GsonDecodeBenchmark {
+
+    private static final Type USERS_TYPE = new TypeToken<List<User>>() {
+    }.getType();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "50", "500"})
+    public int users;
+
+    private Gson mGson;
+    private String mJson;
+    private byte[] mBytes;
+    private List<User> mUsers;
+
+    @Setup
+    public void setUp() {
+        mGson = BaseGsonBuilder.getBaseGsonBuilder().create();
+        mJson = Payloads.users(users);
+        mBytes = mJson.getBytes(UTF_8);
+        mUsers = mGson.fromJson(mJson, USERS_TYPE);
+    }
+
+    @Benchmark
+    public List<User> decodeString() {
+        return mGson.fromJson(mJson, USERS_TYPE);
+    }
+
+    @Benchmark
+    public List<User> decodeStream() {
+        return mGson.fromJson(
+                new InputStreamReader(new ByteArrayInputStream(mBytes), UTF_8), USERS_TYPE);
+    }
+
+    @Benchmark
+    public String encode() {
+        return mGson.toJson(mUsers, USERS_TYPE);
+    }
+}
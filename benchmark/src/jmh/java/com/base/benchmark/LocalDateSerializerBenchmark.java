@@ -0,0 +1,47 @@
+package com.base.benchmark;
+
+import com.base.networking.retrofit.serializer.LocalDateSerializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting a single date with {@link LocalDateSerializer}, which runs for every date
+ * field of every response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocalDateSerializerBenchmark {
+
+    private LocalDateSerializer mSerializer;
+    private JsonElement mElement;
+    private LocalDate mDate;
+
+    @Setup
+    public void setUp() {
+        mSerializer = new LocalDateSerializer();
+        mElement = new JsonPrimitive("2019-06-15");
+        mDate = new LocalDate(2019, 6, 15);
+    }
+
+    @Benchmark
+    public LocalDate deserialize() {
+        return mSerializer.deserialize(mElement, LocalDate.class, null);
+    }
+
+    @Benchmark
+    public JsonElement serialize() {
+        return mSerializer.serialize(mDate, LocalDate.class, null);
+    }
+}
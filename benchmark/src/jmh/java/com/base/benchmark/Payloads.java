@@ -0,0 +1,60 @@
+package com.base.benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates realistic JSON payloads, with a fixed seed so every run decodes the same bytes.
+ */
+final class Payloads {
+
+    private static final String[] NAMES = {"Ana", "Bruno", "Carla", "Diego", "Elena", "Franco"};
+    private static final String[] CITIES = {"Buenos Aires", "Montevideo", "Santiago", "Lima"};
+    private static final String[] TAGS = {"admin", "beta", "premium", "mobile", "newsletter"};
+
+    private Payloads() {
+    }
+
+    /**
+     * Returns a JSON array of users.
+     *
+     * @param count amount of users
+     * @return the JSON
+     */
+    static String users(int count) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append(user(random, i));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Returns a JSON object of a single user.
+     *
+     * @return the JSON
+     */
+    static String user() {
+        return user(new Random(42), 1);
+    }
+
+    private static String user(Random random, long id) {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        StringBuilder tags = new StringBuilder();
+        for (int j = 0; j < 3; j++) {
+            if (j > 0) tags.append(',');
+            tags.append('"').append(TAGS[random.nextInt(TAGS.length)]).append('"');
+        }
+        return String.format(Locale.US, "{\"id\":%d,\"first_name\":\"%s\",\"last_name\":\"Doe\","
+                        + "\"email\":\"%s%d@example.com\",\"verified\":%b,\"rating\":%.2f,"
+                        + "\"birth_date\":\"19%02d-%02d-%02d\",\"created_at\":\"2019-01-%02d\","
+                        + "\"address\":{\"street\":\"Street %d\",\"city\":\"%s\","
+                        + "\"zip_code\":\"%05d\",\"country\":\"AR\"},\"tags\":[%s]}",
+                id, name, name.toLowerCase(Locale.US), id, random.nextBoolean(),
+                random.nextDouble() * 5, 50 + random.nextInt(50), 1 + random.nextInt(12),
+                1 + random.nextInt(28), 1 + random.nextInt(28), random.nextInt(5000),
+                CITIES[random.nextInt(CITIES.length)], random.nextInt(100000), tags);
+    }
+}
@@ -0,0 +1,88 @@
+package com.base.benchmark;
+
+import com.base.networking.retrofit.converter.ByteArrayPool;
+import com.base.networking.retrofit.converter.PooledBodyInterceptor;
+import com.base.networking.retrofit.converter.PooledGsonConverterFactory;
+import com.base.networking.retrofit.serializer.BaseGsonBuilder;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Serialization of request bodies by Retrofit's {@link GsonConverterFactory} and by the
+ * {@link PooledGsonConverterFactory}, including writing the body like OkHttp does. Run it with
+ * the gc profiler to compare the bytes allocated per request (<i>gc.alloc.rate.norm</i>).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestBodyConverterBenchmark {
+
+    private static final Type USERS_TYPE = new TypeToken<List<User>>() {
+    }.getType();
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"1", "50", "500"})
+    public int users;
+
+    private List<User> mUsers;
+    private Converter<List<User>, RequestBody> mGsonConverter;
+    private Converter<List<User>, RequestBody> mPooledConverter;
+    private Buffer mSink;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Gson gson = BaseGsonBuilder.getBaseGsonBuilder().create();
+        Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mUsers = gson.fromJson(Payloads.users(users), USERS_TYPE);
+        mGsonConverter = (Converter<List<User>, RequestBody>) GsonConverterFactory.create(gson)
+                .requestBodyConverter(USERS_TYPE, NO_ANNOTATIONS, NO_ANNOTATIONS, retrofit);
+        mPooledConverter = (Converter<List<User>, RequestBody>) PooledGsonConverterFactory
+                .create(gson, new ByteArrayPool(4))
+                .requestBodyConverter(USERS_TYPE, NO_ANNOTATIONS, NO_ANNOTATIONS, retrofit);
+        mSink = new Buffer();
+    }
+
+    @Benchmark
+    public long gsonConverter() throws IOException {
+        return write(mGsonConverter.convert(mUsers));
+    }
+
+    @Benchmark
+    public long pooledConverter() throws IOException {
+        RequestBody body = mPooledConverter.convert(mUsers);
+        try {
+            return write(body);
+        } finally {
+            PooledBodyInterceptor.release(body);
+        }
+    }
+
+    private long write(RequestBody body) throws IOException {
+        body.writeTo(mSink);
+        long size = mSink.size();
+        mSink.clear();
+        return size;
+    }
+}
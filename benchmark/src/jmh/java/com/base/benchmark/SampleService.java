@@ -0,0 +1,19 @@
+package com.base.benchmark;
+
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+/**
+ * Retrofit service used by the benchmarks.
+ */
+public interface SampleService {
+
+    @GET("users")
+    Call<List<User>> getUsers();
+
+    @GET("users/{id}")
+    Call<User> getUser(@Path("id") long id);
+}
@@ -0,0 +1,60 @@
+package com.base.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link com.base.networking.retrofit.RetrofitServices#getService(Class)}, which is
+ * called for every API call. The cached lookup is the common case; the first lookup creates the
+ * Retrofit proxy. The services of the first lookup are initialized before each invocation, so
+ * building the client and Retrofit is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceLookupBenchmark {
+
+    private static final String ENDPOINT = "http://localhost/";
+
+    private BenchmarkServices mServices;
+
+    @Setup
+    public void setUp() {
+        mServices = new BenchmarkServices(ENDPOINT);
+        mServices.init();
+        mServices.getService(SampleService.class);
+    }
+
+    @Benchmark
+    public SampleService cachedLookup() {
+        return mServices.getService(SampleService.class);
+    }
+
+    @Benchmark
+    public SampleService firstLookup(FreshServices fresh) {
+        return fresh.mServices.getService(SampleService.class);
+    }
+
+    /**
+     * Initialized services that haven't looked up any service yet.
+     */
+    @State(Scope.Thread)
+    public static class FreshServices {
+
+        private BenchmarkServices mServices;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            mServices = new BenchmarkServices(ENDPOINT);
+            mServices.init();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.base.benchmark;
+
+import org.joda.time.LocalDate;
+
+import java.util.List;
+
+/**
+ * A model shaped like the typical API response: snake_case fields, nested objects, lists and
+ * dates handled by {@link com.base.networking.retrofit.serializer.LocalDateSerializer}.
+ */
+public class User {
+
+    long id;
+    String firstName;
+    String lastName;
+    String email;
+    boolean verified;
+    double rating;
+    LocalDate birthDate;
+    LocalDate createdAt;
+    Address address;
+    List<String> tags;
+
+    static class Address {
+
+        String street;
+        String city;
+        String zipCode;
+        String country;
+    }
+}
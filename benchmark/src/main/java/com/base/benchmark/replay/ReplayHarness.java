@@ -0,0 +1,320 @@
+package com.base.benchmark.replay;
+
+import androidx.annotation.NonNull;
+
+import com.base.networking.recording.TrafficRecord;
+import com.base.networking.recording.TrafficRecorder;
+import com.base.networking.retrofit.RetrofitServices;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Replays a recording made by {@link TrafficRecorder} against a {@link StandInServer}, through
+ * the same client stack {@link RetrofitServices} builds, and reports client side throughput,
+ * latency, dispatcher queueing and allocation rate.
+ * <p>
+ * Requests are sent with the same spacing they were recorded with, divided by the speed factor,
+ * or all at once if the speed is 0. The concurrency is the max amount of calls the OkHttp
+ * dispatcher runs at the same time; the rest wait in its queue.
+ * <p>
+ * Usage:
+ * ./gradlew :benchmark:replay -Precording=traffic.rec -Pconcurrency=8 -Pspeed=2 -Platency=50
+ * -Pjitter=20 -PerrorRate=0.01 -Pout=report.json
+ */
+public class ReplayHarness {
+
+    private static final String JSON_TYPE = "application/json";
+
+    private final List<TrafficRecord> mRecords;
+    private final int mConcurrency;
+    private final double mSpeed;
+    private final StandInServer mServer;
+
+    private final Map<Request, Long> mEnqueuedAt = new HashMap<>();
+    private final double[] mLatencies;
+    private final double[] mQueueWaits;
+    private final AtomicInteger mCompleted = new AtomicInteger();
+    private final AtomicInteger mSuccessful = new AtomicInteger();
+    private final AtomicInteger mMaxQueued = new AtomicInteger();
+
+    ReplayHarness(@NonNull List<TrafficRecord> records, int concurrency, double speed,
+                  @NonNull StandInServer server) {
+        mRecords = records;
+        mConcurrency = concurrency;
+        mSpeed = speed;
+        mServer = server;
+        mLatencies = new double[records.size()];
+        mQueueWaits = new double[records.size()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        if (!options.containsKey("recording")) {
+            System.err.println("Usage: ReplayHarness recording=<file> [concurrency=8] [speed=1] "
+                    + "[latency=0] [jitter=0] [errorRate=0] [seed=1] [out=<file>]");
+            System.exit(1);
+        }
+
+        List<TrafficRecord> records =
+                TrafficRecorder.readRecording(new File(options.get("recording")));
+        StandInServer server = new StandInServer(records,
+                Long.parseLong(get(options, "latency", "0")),
+                Long.parseLong(get(options, "jitter", "0")),
+                Double.parseDouble(get(options, "errorRate", "0")),
+                Long.parseLong(get(options, "seed", "1")));
+        server.start();
+
+        ReplayReport report;
+        try {
+            report = new ReplayHarness(records,
+                    Integer.parseInt(get(options, "concurrency", "8")),
+                    Double.parseDouble(get(options, "speed", "1")),
+                    server).run();
+        } finally {
+            server.shutdown();
+        }
+
+        String json = new GsonBuilder().setPrettyPrinting().create().toJson(report);
+        System.out.println(json);
+        if (options.containsKey("out")) {
+            Writer writer = new FileWriter(options.get("out"));
+            try {
+                writer.write(json);
+            } finally {
+                writer.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    @NonNull
+    private static String get(@NonNull Map<String, String> options, @NonNull String key,
+                              @NonNull String defaultValue) {
+        String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Replays every record and waits for all of them to finish.
+     *
+     * @return the metrics of the run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @NonNull
+    ReplayReport run() throws InterruptedException {
+        final OkHttpClient client = createClient();
+        final CountDownLatch done = new CountDownLatch(mRecords.size());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        AllocationSampler allocations = new AllocationSampler();
+
+        long firstTimestamp = mRecords.isEmpty() ? 0 : mRecords.get(0).getTimestampMs();
+        long start = System.nanoTime();
+        allocations.start();
+        for (int i = 0; i < mRecords.size(); i++) {
+            final int index = i;
+            final Request request = toRequest(mRecords.get(i));
+            long delayMs = mSpeed <= 0 ? 0
+                    : (long) ((mRecords.get(i).getTimestampMs() - firstTimestamp) / mSpeed);
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(client, request, index, done);
+                }
+            }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+        }
+
+        while (!done.await(100, TimeUnit.MILLISECONDS)) {
+            allocations.sample();
+            int queued = client.dispatcher().queuedCallsCount();
+            if (queued > mMaxQueued.get()) mMaxQueued.set(queued);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocatedBytes = allocations.stop();
+        scheduler.shutdown();
+        client.dispatcher().executorService().shutdown();
+
+        ReplayReport report = new ReplayReport();
+        report.requests = mRecords.size();
+        report.successful = mSuccessful.get();
+        report.failed = report.requests - report.successful;
+        report.durationSeconds = seconds;
+        report.throughputPerSecond = mCompleted.get() / seconds;
+        report.latencyMs = ReplayReport.Percentiles.of(mLatencies);
+        report.queueWaitMs = ReplayReport.Percentiles.of(mQueueWaits);
+        report.maxQueuedCalls = mMaxQueued.get();
+        report.allocationMbPerSecond = allocatedBytes / (1024.0 * 1024.0) / seconds;
+        return report;
+    }
+
+    /**
+     * Builds the client of a {@link RetrofitServices} pointing to the stand-in server, with an
+     * interceptor that measures how long each call waited in the dispatcher queue.
+     */
+    @NonNull
+    private OkHttpClient createClient() {
+        final String endpoint = mServer.rewrite(HttpUrl.parse("http://localhost/")).toString();
+        RetrofitServices services = new RetrofitServices() {
+            @NonNull
+            @Override
+            public String getApiEndpoint() {
+                return endpoint;
+            }
+
+            @Override
+            protected void initClient(@NonNull OkHttpClient.Builder builder) {
+            }
+        };
+        services.init();
+
+        OkHttpClient.Builder builder = services.getClient().newBuilder();
+        builder.interceptors().add(0, new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Long enqueuedAt;
+                synchronized (mEnqueuedAt) {
+                    enqueuedAt = mEnqueuedAt.remove(chain.request());
+                }
+                Object tag = chain.request().tag();
+                if (enqueuedAt != null && tag instanceof Integer) {
+                    mQueueWaits[(Integer) tag] = (System.nanoTime() - enqueuedAt) / 1e6;
+                }
+                return chain.proceed(chain.request());
+            }
+        });
+        OkHttpClient client = builder.build();
+        client.dispatcher().setMaxRequests(mConcurrency);
+        client.dispatcher().setMaxRequestsPerHost(mConcurrency);
+        return client;
+    }
+
+    @NonNull
+    private Request toRequest(@NonNull TrafficRecord record) {
+        RequestBody body = null;
+        byte[] bytes = record.getRequestBody();
+        if (bytes != null) {
+            String contentType = record.getRequestHeaders().get("Content-Type");
+            body = RequestBody.create(
+                    MediaType.parse(contentType != null ? contentType : JSON_TYPE), bytes);
+        } else if (requiresBody(record.getMethod())) {
+            body = RequestBody.create(null, new byte[0]);
+        }
+
+        return new Request.Builder()
+                .url(mServer.rewrite(HttpUrl.parse(record.getUrl())))
+                .headers(record.getRequestHeaders())
+                .method(record.getMethod(), body)
+                .build();
+    }
+
+    private void send(@NonNull OkHttpClient client, @NonNull Request request, final int index,
+                      @NonNull final CountDownLatch done) {
+        final Request tagged = request.newBuilder().tag(index).build();
+        final long enqueuedAt = System.nanoTime();
+        synchronized (mEnqueuedAt) {
+            mEnqueuedAt.put(tagged, enqueuedAt);
+        }
+
+        client.newCall(tagged).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                finish(index, enqueuedAt, done);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try {
+                    response.body().source().readAll(okio.Okio.blackhole());
+                    if (response.isSuccessful()) mSuccessful.incrementAndGet();
+                } finally {
+                    response.close();
+                    finish(index, enqueuedAt, done);
+                }
+            }
+        });
+    }
+
+    private void finish(int index, long enqueuedAt, @NonNull CountDownLatch done) {
+        mLatencies[index] = (System.nanoTime() - enqueuedAt) / 1e6;
+        mCompleted.incrementAndGet();
+        done.countDown();
+    }
+
+    private static boolean requiresBody(@NonNull String method) {
+        return method.equals("POST") || method.equals("PUT") || method.equals("PATCH");
+    }
+
+    /**
+     * Sums the bytes allocated by every thread during the run. Threads are sampled periodically,
+     * so a thread that finishes between samples loses its last allocations: the rate is a lower
+     * bound.
+     */
+    private static class AllocationSampler {
+
+        private final Map<Long, Long> mStartBytes = new HashMap<>();
+        private final Map<Long, Long> mLastBytes = new HashMap<>();
+        private final com.sun.management.ThreadMXBean mThreads;
+
+        AllocationSampler() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            mThreads = threads instanceof com.sun.management.ThreadMXBean
+                    ? (com.sun.management.ThreadMXBean) threads : null;
+        }
+
+        void start() {
+            if (mThreads == null) return;
+            for (long id : mThreads.getAllThreadIds()) {
+                long bytes = mThreads.getThreadAllocatedBytes(id);
+                if (bytes >= 0) mStartBytes.put(id, bytes);
+            }
+        }
+
+        void sample() {
+            if (mThreads == null) return;
+            for (long id : mThreads.getAllThreadIds()) {
+                long bytes = mThreads.getThreadAllocatedBytes(id);
+                if (bytes >= 0) mLastBytes.put(id, bytes);
+            }
+        }
+
+        /**
+         * @return bytes allocated since {@link #start()}, or 0 if the JVM doesn't report them
+         */
+        long stop() {
+            sample();
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : mLastBytes.entrySet()) {
+                Long start = mStartBytes.get(entry.getKey());
+                total += entry.getValue() - (start != null ? start : 0);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.base.benchmark.replay;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Client side metrics of a replay run, serialized as JSON so runs can be compared.
+ */
+class ReplayReport {
+
+    int requests;
+    int successful;
+    int failed;
+    double durationSeconds;
+    double throughputPerSecond;
+    Percentiles latencyMs;
+    Percentiles queueWaitMs;
+    int maxQueuedCalls;
+    double allocationMbPerSecond;
+
+    /**
+     * Latency distribution of a set of samples.
+     */
+    static class Percentiles {
+
+        double p50;
+        double p90;
+        double p99;
+        double max;
+        double mean;
+
+        @NonNull
+        static Percentiles of(@NonNull double[] samples) {
+            Percentiles percentiles = new Percentiles();
+            if (samples.length == 0) return percentiles;
+
+            double[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            percentiles.p50 = at(sorted, 0.50);
+            percentiles.p90 = at(sorted, 0.90);
+            percentiles.p99 = at(sorted, 0.99);
+            percentiles.max = sorted[sorted.length - 1];
+            double sum = 0;
+            for (double sample : sorted) {
+                sum += sample;
+            }
+            percentiles.mean = sum / sorted.length;
+            return percentiles;
+        }
+
+        private static double at(@NonNull double[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
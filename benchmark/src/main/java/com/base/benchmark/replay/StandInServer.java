@@ -0,0 +1,148 @@
+package com.base.benchmark.replay;
+
+import androidx.annotation.NonNull;
+
+import com.base.networking.recording.TrafficRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * A local server that answers each request with a response recorded for the same method and
+ * path, cycling through them when there are several. It adds a configurable latency and injects
+ * errors, half of them as 503 responses and half as dropped connections.
+ */
+class StandInServer {
+
+    // Managed by MockWebServer, or no longer valid for the body it serves
+    private static final Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList(
+            "content-length", "transfer-encoding", "content-encoding", "connection"));
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final Map<String, List<TrafficRecord>> mResponses = new HashMap<>();
+    private final Map<String, Integer> mNextResponse = new HashMap<>();
+    private final Random mRandom;
+    private final long mLatencyMs;
+    private final long mJitterMs;
+    private final double mErrorRate;
+
+    /**
+     * @param records   recorded traffic to answer with
+     * @param latencyMs latency added to every response
+     * @param jitterMs  max random latency added on top of the fixed one
+     * @param errorRate fraction of requests answered with an error, between 0 and 1
+     * @param seed      seed of the random latency and errors, so runs are repeatable
+     */
+    StandInServer(@NonNull List<TrafficRecord> records, long latencyMs, long jitterMs,
+                  double errorRate, long seed) {
+        for (TrafficRecord record : records) {
+            String key = getKey(record.getMethod(), HttpUrl.parse(record.getUrl()));
+            List<TrafficRecord> responses = mResponses.get(key);
+            if (responses == null) {
+                responses = new ArrayList<>();
+                mResponses.put(key, responses);
+            }
+            responses.add(record);
+        }
+        mRandom = new Random(seed);
+        mLatencyMs = latencyMs;
+        mJitterMs = jitterMs;
+        mErrorRate = errorRate;
+
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    void start() throws IOException {
+        mServer.start();
+    }
+
+    void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    /**
+     * Returns the URL of a recorded request, pointing to this server.
+     *
+     * @param recordedUrl URL of the recorded request
+     * @return the URL to request
+     */
+    @NonNull
+    HttpUrl rewrite(@NonNull HttpUrl recordedUrl) {
+        HttpUrl server = mServer.url("/");
+        return recordedUrl.newBuilder()
+                .scheme(server.scheme())
+                .host(server.host())
+                .port(server.port())
+                .build();
+    }
+
+    @NonNull
+    private MockResponse respond(@NonNull RecordedRequest request) {
+        TrafficRecord record;
+        long delay;
+        boolean error;
+        boolean disconnect;
+        synchronized (this) {
+            record = next(getKey(request.getMethod(), request.getRequestUrl()));
+            delay = mLatencyMs + (mJitterMs > 0 ? (long) (mRandom.nextDouble() * mJitterMs) : 0);
+            error = mRandom.nextDouble() < mErrorRate;
+            disconnect = mRandom.nextBoolean();
+        }
+
+        MockResponse response = new MockResponse().setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        if (error && disconnect) {
+            return response.setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        if (error) return response.setResponseCode(503);
+        if (record == null) return response.setResponseCode(404);
+
+        response.setResponseCode(record.getCode());
+        Headers headers = record.getResponseHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!SKIPPED_HEADERS.contains(headers.name(i).toLowerCase(Locale.US))) {
+                response.addHeader(headers.name(i), headers.value(i));
+            }
+        }
+        byte[] body = record.getResponseBody();
+        if (body != null) response.setBody(new Buffer().write(body));
+        return response;
+    }
+
+    private TrafficRecord next(@NonNull String key) {
+        List<TrafficRecord> responses = mResponses.get(key);
+        if (responses == null) return null;
+        Integer index = mNextResponse.get(key);
+        int current = index == null ? 0 : index;
+        mNextResponse.put(key, (current + 1) % responses.size());
+        return responses.get(current);
+    }
+
+    @NonNull
+    private static String getKey(@NonNull String method, @NonNull HttpUrl url) {
+        String query = url.encodedQuery();
+        return method + " " + url.encodedPath() + (query == null ? "" : "?" + query);
+    }
+}
@@ -107,15 +107,19 @@ class BaseFragmentHandler<T extends BasePresenter> {
         if (mFragment.isResumed() && mMenuVisible && !mVisible) {
             mBaseFragment.onVisible();
             mVisible = true;
+            if (getPresenter() != null) getPresenter().onViewVisible();
         } else if ((!mMenuVisible || !mFragment.isResumed()) && mVisible) {
             mBaseFragment.onHide();
             mVisible = false;
+            if (getPresenter() != null) getPresenter().onViewHidden();
         }
     }
 
     /**
      * Called from {@link BaseFragment#onResume()}, checks visibility of the fragment
      * and calls {@link BaseFragment#onVisible()} or {@link BaseFragment#onHide()} accordingly.
+     * The presenter is notified as well, through {@link BasePresenter#onViewVisible()} or
+     * {@link BasePresenter#onViewHidden()}.
      */
     void onResume() {
         onVisibilityChanged();
@@ -2,8 +2,12 @@ package com.base.core.fragment;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.StringRes;
@@ -11,10 +15,17 @@ import androidx.annotation.StringRes;
 import com.base.core.permission.PermissionListener;
 import com.base.core.permission.PermissionManager;
 import com.base.core.presenter.BasePresenter;
-import com.base.core.util.FileUtils;
 import com.base.core.util.ImageUtils;
+import com.base.core.util.UriUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class to help to load images from the gallery or from the camera.
@@ -32,9 +43,16 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
 
     private static final int INTENT_CODE_IMAGE_GALLERY = 9000;
     private static final int INTENT_CODE_IMAGE_CAMERA = 9001;
+    private static final int INTENT_CODE_IMAGES_GALLERY = 9002;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    private static ThreadPoolExecutor sExecutor;
 
     private File mPictureTakenFile;
+    private File mCopiedFile;
     private OnImageReturnCallback mImageCallback;
+    private OnImageUriReturnCallback mImageUriCallback;
+    private OnImagesReturnCallback mImagesCallback;
 
     /* Error types */
 
@@ -43,7 +61,8 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
      * <li>
      * <ul>{@link Error#USER_CANCELED}: Image selection canceled by the user.</ul>
      * <ul>{@link Error#ERROR_DATA}: Image URI was not returned.</ul>
-     * <ul>{@link Error#ERROR_UNKNOWN}: Unknown error.</ul>
+     * <ul>{@link Error#ERROR_UNKNOWN}: Unknown error, or the fragment was detached before the
+     * image was ready.</ul>
      * <ul>{@link Error#PERMISSION_DENIED}: Gallery/Camera permission denied.</ul>
      * </li>
      */
@@ -61,6 +80,14 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
 
         /**
          * Method for when the image retrieval was a success, exposing the {@link Uri} of the image.
+         * Called on the main thread: decode or compress the image with
+         * {@link ImageUtils#getImageAsByteArrayAsync} or the
+         * {@link com.base.core.util.ImagePipeline}.
+         * <p>
+         * Images from the gallery are copied to the cache directory in background, unless the
+         * gallery returned a file, since their file can't be read with scoped storage. The copy is
+         * deleted when the next image is selected here. Delete it before if it's not needed
+         * anymore, or use {@link OnImageUriReturnCallback} to avoid the copy.
          *
          * @param file retrieved image file
          *             Returning the Uri brought us some trouble. Anyway, it can be easily retrieved
@@ -78,6 +105,57 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
 
     }
 
+    /**
+     * Callback for image selection that gives the {@link Uri} of the image, without copying it
+     */
+    public interface OnImageUriReturnCallback {
+
+        /**
+         * Method for when the image retrieval was a success, exposing the {@link Uri} of the image.
+         * Called on the main thread: read it with {@link UriUtils}, or decode or compress it with
+         * {@link ImageUtils#getImageAsByteArrayAsync} or the
+         * {@link com.base.core.util.ImagePipeline}.
+         *
+         * @param imageUri retrieved image URI
+         */
+        void success(@NonNull Uri imageUri);
+
+        /**
+         * Method for when the image retrieval was a failure, exposing the corresponding
+         * {@link Error} instance.
+         *
+         * @param error describing the failure reason
+         */
+        void error(@NonNull Error error);
+
+    }
+
+    /**
+     * Callback for multiple image selection
+     */
+    public interface OnImagesReturnCallback {
+
+        /**
+         * Method for when the images retrieval was a success, exposing the {@link Uri}s of the
+         * images in the order they were selected. Called on the main thread: process them in
+         * parallel with {@link ImageUtils#getImagesAsByteArrayAsync} or an
+         * {@link com.base.core.util.ImageBatch}, which read them through
+         * {@link com.base.core.util.UriUtils} without needing a file.
+         *
+         * @param imageUris retrieved image URIs
+         */
+        void success(@NonNull List<Uri> imageUris);
+
+        /**
+         * Method for when the images retrieval was a failure, exposing the corresponding
+         * {@link Error} instance.
+         *
+         * @param error describing the failure reason
+         */
+        void error(@NonNull Error error);
+
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -85,11 +163,13 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
         if (resultCode == Activity.RESULT_OK) {
             switch (requestCode) {
                 case INTENT_CODE_IMAGE_GALLERY:
-                    if (data != null) {
-                        String pathUri = FileUtils.getRealPathFromUri(data.getData());
-                        mImageCallback.success(new File(pathUri));
-                    } else {
+                    Uri uri = data != null ? data.getData() : null;
+                    if (uri == null) {
                         notifyError(Error.ERROR_DATA);
+                    } else if (mImageUriCallback != null) {
+                        mImageUriCallback.success(uri);
+                    } else if (mImageCallback != null) {
+                        resolveFile(uri, mImageCallback);
                     }
                     break;
 
@@ -98,6 +178,17 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
                     mImageCallback.success(mPictureTakenFile);
                     break;
 
+                case INTENT_CODE_IMAGES_GALLERY:
+                    List<Uri> uris = data != null
+                            ? ImageUtils.getImageUris(data) : new ArrayList<Uri>();
+                    if (!uris.isEmpty()) {
+                        // Null if the fragment was recreated while the gallery was open
+                        if (mImagesCallback != null) mImagesCallback.success(uris);
+                    } else {
+                        notifyError(Error.ERROR_DATA);
+                    }
+                    break;
+
                 default:
                     notifyError(Error.ERROR_UNKNOWN);
             }
@@ -105,6 +196,7 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
             switch (requestCode) {
                 case INTENT_CODE_IMAGE_GALLERY:
                 case INTENT_CODE_IMAGE_CAMERA:
+                case INTENT_CODE_IMAGES_GALLERY:
                     notifyError(Error.USER_CANCELED);
                     break;
 
@@ -119,12 +211,88 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
 
     private void clearCallbacks() {
         mImageCallback = null;
+        mImageUriCallback = null;
+        mImagesCallback = null;
     }
 
     private void notifyError(Error error) {
         if (mImageCallback != null) {
             mImageCallback.error(error);
         }
+        if (mImageUriCallback != null) {
+            mImageUriCallback.error(error);
+        }
+        if (mImagesCallback != null) {
+            mImagesCallback.error(error);
+        }
+    }
+
+    /**
+     * Gives the selected image as a file. The content is copied to the cache directory through
+     * {@link UriUtils}, in background, unless the gallery returned a file Uri. Only the last copy
+     * is kept. If the fragment is detached meanwhile, the copy is deleted and an error notified.
+     */
+    private void resolveFile(@NonNull final Uri uri,
+                             @NonNull final OnImageReturnCallback callback) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            callback.success(new File(uri.getPath()));
+            return;
+        }
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final File previousFile = mCopiedFile;
+        mCopiedFile = null;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (previousFile != null) previousFile.delete();
+                File file = null;
+                try {
+                    file = UriUtils.copyToCacheFile(uri);
+                } catch (IOException e) {
+                    // Notified as an error below
+                }
+
+                final File finalFile = file;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (finalFile == null) {
+                            callback.error(Error.ERROR_DATA);
+                        } else if (!isAdded()) {
+                            finalFile.delete();
+                            callback.error(Error.ERROR_UNKNOWN);
+                        } else {
+                            mCopiedFile = finalFile;
+                            callback.success(finalFile);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    private synchronized static ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "GetImageFragment");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
     }
 
     /**
@@ -164,6 +332,7 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
                     @Override
                     public void onPermissionsGranted() {
                         mImageCallback = onImageReturnCallback;
+                        mImageUriCallback = null;
 
                         ImageUtils.getImageFromGallery(
                                 GetImageFragment.this,
@@ -179,6 +348,64 @@ public abstract class GetImageFragment<T extends BasePresenter> extends BaseFrag
                 GALLERY_PERMISSIONS);
     }
 
+    /**
+     * Start a request for an image from Gallery, returning its {@link Uri} without copying it.
+     *
+     * @param onImageUriReturnCallback callback for request result
+     */
+    protected void selectImageUriFromGallery(
+            @NonNull final OnImageUriReturnCallback onImageUriReturnCallback) {
+        PermissionManager.getInstance().requestPermission(
+                this,
+                new PermissionListener() {
+                    @Override
+                    public void onPermissionsGranted() {
+                        mImageUriCallback = onImageUriReturnCallback;
+                        mImageCallback = null;
+
+                        ImageUtils.getImageFromGallery(
+                                GetImageFragment.this,
+                                INTENT_CODE_IMAGE_GALLERY,
+                                galleryErrorResId());
+                    }
+
+                    @Override
+                    public void onPermissionsDenied(@NonNull String[] deniedPermissions) {
+                        onImageUriReturnCallback.error(Error.PERMISSION_DENIED);
+                    }
+                },
+                GALLERY_PERMISSIONS);
+    }
+
+    /**
+     * Start a request for several images from Gallery. Galleries that don't support multiple
+     * selection return a single image.
+     *
+     * @param onImagesReturnCallback callback for request result
+     */
+    protected void selectImagesFromGallery(
+            @NonNull final OnImagesReturnCallback onImagesReturnCallback) {
+        PermissionManager.getInstance().requestPermission(
+                this,
+                new PermissionListener() {
+                    @Override
+                    public void onPermissionsGranted() {
+                        mImagesCallback = onImagesReturnCallback;
+
+                        ImageUtils.getImagesFromGallery(
+                                GetImageFragment.this,
+                                INTENT_CODE_IMAGES_GALLERY,
+                                galleryErrorResId());
+                    }
+
+                    @Override
+                    public void onPermissionsDenied(@NonNull String[] deniedPermissions) {
+                        onImagesReturnCallback.error(Error.PERMISSION_DENIED);
+                    }
+                },
+                GALLERY_PERMISSIONS);
+    }
+
     /**
      * Start a request for an image from Camera.
      *
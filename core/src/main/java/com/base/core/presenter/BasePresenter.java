@@ -3,6 +3,16 @@ package com.base.core.presenter;
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 
+import com.base.networking.prefetch.PrefetchScheduler;
+import com.base.networking.retrofit.call.CallScope;
+import com.base.networking.stream.EventStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+
 /**
  * Base presenter that provides the view to the specific presenters.
  */
@@ -11,6 +21,9 @@ public class BasePresenter<T> {
     private final T mViewInstance;
     private boolean mViewCreated;
     private boolean mViewAttached;
+    private boolean mViewVisible;
+    private final CallScope mCallScope = new CallScope();
+    private final List<EventStream<?>> mStreams = new ArrayList<>();
 
     public BasePresenter(@NonNull T viewInstance) {
         mViewInstance = viewInstance;
@@ -58,6 +71,15 @@ public class BasePresenter<T> {
     public void detachView() {
         mViewAttached = false;
         mViewCreated = false;
+        mViewVisible = false;
+        if (getCancelPolicy() != CallScope.CancelPolicy.NEVER) {
+            mCallScope.cancelAll();
+        }
+        for (EventStream<?> stream : mStreams) {
+            stream.close();
+        }
+        mStreams.clear();
+        PrefetchScheduler.getInstance().cancel(this);
     }
 
     /**
@@ -77,6 +99,96 @@ public class BasePresenter<T> {
     @CallSuper
     public void onViewDestroyed() {
         mViewCreated = false;
+        if (getCancelPolicy() == CallScope.CancelPolicy.ON_VIEW_DESTROYED) {
+            mCallScope.cancelAll();
+        }
+    }
+
+    /**
+     * Method called when the view becomes visible to the user. It resumes the streams bound
+     * with {@link BasePresenter#bindStream(EventStream)}.
+     */
+    @CallSuper
+    public void onViewVisible() {
+        mViewVisible = true;
+        for (EventStream<?> stream : mStreams) {
+            stream.resume();
+        }
+    }
+
+    /**
+     * Method called when the view becomes hidden to the user. It pauses the streams bound
+     * with {@link BasePresenter#bindStream(EventStream)}, so their messages are buffered instead
+     * of being delivered to a view that can't show them.
+     */
+    @CallSuper
+    public void onViewHidden() {
+        mViewVisible = false;
+        for (EventStream<?> stream : mStreams) {
+            stream.pause();
+        }
+    }
+
+    /**
+     * Starts an {@link EventStream} bound to the view's lifecycle: it's paused while the view is
+     * hidden and closed when the view is detached.
+     *
+     * @param stream stream to bind
+     * @param <S>    type of the stream
+     * @return the same stream
+     */
+    @NonNull
+    protected <S extends EventStream<?>> S bindStream(@NonNull S stream) {
+        mStreams.add(stream);
+        if (!mViewVisible) stream.pause();
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Enqueues a Retrofit {@link Call} tracked by this presenter's {@link CallScope}, so it gets
+     * cancelled according to {@link BasePresenter#getCancelPolicy()}.
+     *
+     * @param call     Retrofit call to enqueue
+     * @param callback callback to notify the result of the call
+     * @param <R>      the type of object expected to be returned from the API call
+     */
+    protected <R> void enqueue(@NonNull Call<R> call, @NonNull Callback<R> callback) {
+        mCallScope.enqueue(call, callback);
+    }
+
+    /**
+     * Hints that the response of a GET {@link Call} will likely be needed soon, like the detail
+     * of the first rows of a list. It's performed by the {@link PrefetchScheduler} when the app is
+     * idle, so it's in the response cache when the call is actually made. The call itself is not
+     * executed, and hints not started yet are discarded when the view is detached.
+     *
+     * @param call Retrofit call whose response to prefetch
+     */
+    protected void prefetch(@NonNull Call<?> call) {
+        PrefetchScheduler.getInstance().submit(this, call.request());
+    }
+
+    /**
+     * Returns the {@link CallScope} that tracks the calls enqueued by this presenter.
+     *
+     * @return call scope of this presenter
+     */
+    @NonNull
+    protected final CallScope getCallScope() {
+        return mCallScope;
+    }
+
+    /**
+     * Override if needed.
+     * Defines when the calls enqueued through {@link BasePresenter#enqueue(Call, Callback)} are
+     * cancelled. By default, they are cancelled when the view is detached.
+     *
+     * @return the {@link CallScope.CancelPolicy} for this presenter
+     */
+    @NonNull
+    protected CallScope.CancelPolicy getCancelPolicy() {
+        return CallScope.CancelPolicy.ON_DETACH;
     }
 
     /**
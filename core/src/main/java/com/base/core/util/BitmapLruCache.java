@@ -0,0 +1,71 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded bitmaps kept in memory, bounded in bytes. When it's full, the least recently used
+ * bitmaps are dropped. They're not recycled nor given to the {@link BitmapPool}, since views may
+ * still be drawing them.
+ * <p>
+ * This class is thread safe.
+ */
+final class BitmapLruCache {
+
+    private final long mMaxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Bitmap> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mBytes;
+
+    BitmapLruCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    @Nullable
+    synchronized Bitmap get(@NonNull String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * Adds a bitmap, unless it's bigger than the whole cache.
+     */
+    synchronized void put(@NonNull String key, @NonNull Bitmap bitmap) {
+        long bytes = getBytes(bitmap);
+        if (bytes > mMaxBytes) return;
+
+        Bitmap previous = mEntries.put(key, bitmap);
+        if (previous != null) mBytes -= getBytes(previous);
+        mBytes += bytes;
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * Drops the least recently used bitmaps until the cache holds at most the given bytes.
+     */
+    synchronized void trimToSize(long maxBytes) {
+        Iterator<Map.Entry<String, Bitmap>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            mBytes -= getBytes(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    synchronized long getSize() {
+        return mBytes;
+    }
+
+    long getMaxSize() {
+        return mMaxBytes;
+    }
+
+    private static long getBytes(@NonNull Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -0,0 +1,265 @@
+package com.base.core.util;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * A pool of mutable {@link Bitmap}s no longer used, so decoding and scaling images can reuse
+ * their memory instead of allocating new bitmaps, which causes GC pauses in image heavy screens.
+ * <p>
+ * Bitmaps are grouped by dimensions and {@link Bitmap.Config}. The pool is bounded in bytes:
+ * when it's full, the least recently added bitmaps are recycled.
+ * <p>
+ * Only bitmaps that are not referenced anymore can be given back with {@link #put(Bitmap)}, since
+ * they will be drawn over. {@link ImageUtils} gives back the intermediate bitmaps it creates.
+ * <p>
+ * This class is thread safe.
+ */
+public class BitmapPool {
+
+    private static final int DEFAULT_MEMORY_FRACTION = 8;
+
+    private static BitmapPool sInstance; // Singleton
+
+    private final long mMaxBytes;
+
+    // Guarded by this
+    private final Map<String, ArrayDeque<Bitmap>> mGroups = new HashMap<>();
+    private final LinkedHashSet<Bitmap> mLru = new LinkedHashSet<>();
+    private long mBytes;
+    private long mHits;
+    private long mMisses;
+    private long mBytesSaved;
+
+    /**
+     * Returns the shared pool, which holds up to an eighth of the memory available to the app.
+     *
+     * @return the shared pool
+     */
+    public synchronized static BitmapPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes max amount of bytes held by the bitmaps of the pool
+     */
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Gives a bitmap no longer used to the pool. It's recycled instead if it can't be reused
+     * because it's immutable or bigger than the pool.
+     *
+     * @param bitmap bitmap that nobody references anymore
+     */
+    public void put(@NonNull Bitmap bitmap) {
+        if (bitmap.isRecycled()) return;
+        long bytes = getBytes(bitmap);
+        if (!bitmap.isMutable() || bytes > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            if (!mLru.add(bitmap)) return;
+            String key = getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> group = mGroups.get(key);
+            if (group == null) {
+                group = new ArrayDeque<>();
+                mGroups.put(key, group);
+            }
+            group.addLast(bitmap);
+            mBytes += bytes;
+            trimToSize(mMaxBytes);
+        }
+    }
+
+    /**
+     * Returns a bitmap of exactly the given dimensions and config, cleared to transparent.
+     *
+     * @param width  width of the bitmap
+     * @param height height of the bitmap
+     * @param config config of the bitmap
+     * @return a bitmap from the pool, or null if there isn't one
+     */
+    @Nullable
+    public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap bitmap;
+        synchronized (this) {
+            ArrayDeque<Bitmap> group = mGroups.get(getKey(width, height, config));
+            bitmap = group != null ? group.pollLast() : null;
+            if (bitmap == null) {
+                mMisses++;
+                return null;
+            }
+            remove(bitmap, group);
+        }
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap that BitmapFactory can decode an image of the given dimensions and config
+     * into, through {@link android.graphics.BitmapFactory.Options#inBitmap}. Before KitKat it must
+     * have the same dimensions; since then, any bitmap with enough memory is reconfigured.
+     *
+     * @param width  width of the decoded image
+     * @param height height of the decoded image
+     * @param config config of the decoded image
+     * @return a bitmap from the pool, or null if there isn't one
+     */
+    @Nullable
+    public Bitmap getForDecoding(int width, int height, @NonNull Bitmap.Config config) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return get(width, height, config);
+        }
+
+        synchronized (this) {
+            long needed = (long) width * height * getBytesPerPixel(config);
+            for (Bitmap bitmap : mLru) {
+                if (bitmap.getConfig() == config && getAllocationBytes(bitmap) >= needed) {
+                    ArrayDeque<Bitmap> group = mGroups.get(
+                            getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()));
+                    group.remove(bitmap);
+                    remove(bitmap, group);
+                    return bitmap;
+                }
+            }
+            mMisses++;
+            return null;
+        }
+    }
+
+    /**
+     * Recycles the least recently added bitmaps until the pool holds at most the given bytes.
+     *
+     * @param maxBytes bytes to keep
+     */
+    public synchronized void trimToSize(long maxBytes) {
+        Iterator<Bitmap> iterator = mLru.iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            String key = getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> group = mGroups.get(key);
+            group.remove(bitmap);
+            if (group.isEmpty()) mGroups.remove(key);
+            mBytes -= getBytes(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Recycles every bitmap of the pool. Call it when the system is low on memory.
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Returns the fraction of requests served by the pool.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        long requests = mHits + mMisses;
+        return requests == 0 ? 0 : (float) mHits / requests;
+    }
+
+    /**
+     * Returns the amount of requests served by the pool.
+     *
+     * @return the amount of hits
+     */
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    /**
+     * Returns the amount of requests that had to allocate a new bitmap.
+     *
+     * @return the amount of misses
+     */
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Returns the bytes that didn't have to be allocated thanks to the bitmaps reused.
+     *
+     * @return bytes saved
+     */
+    public synchronized long getBytesSaved() {
+        return mBytesSaved;
+    }
+
+    /**
+     * Returns the bytes held by the bitmaps of the pool.
+     *
+     * @return current size of the pool
+     */
+    public synchronized long getSize() {
+        return mBytes;
+    }
+
+    public long getMaxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Removes a bitmap already taken out of its group and counts it as a hit.
+     */
+    private void remove(@NonNull Bitmap bitmap, @NonNull ArrayDeque<Bitmap> group) {
+        mLru.remove(bitmap);
+        if (group.isEmpty()) {
+            mGroups.remove(getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()));
+        }
+        long bytes = getBytes(bitmap);
+        mBytes -= bytes;
+        mHits++;
+        mBytesSaved += bytes;
+    }
+
+    @NonNull
+    private static String getKey(int width, int height, @Nullable Bitmap.Config config) {
+        return width + "x" + height + ":" + config;
+    }
+
+    private static long getBytes(@NonNull Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return getAllocationBytes(bitmap);
+        }
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static long getAllocationBytes(@NonNull Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    private static int getBytesPerPixel(@NonNull Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
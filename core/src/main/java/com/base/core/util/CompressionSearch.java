@@ -0,0 +1,202 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the highest compress quality, and if needed the downscale, that makes an image fit a
+ * byte budget.
+ * <p>
+ * The quality is found with a parallel search: each round compresses the image at several
+ * qualities at the same time, one per CPU core, and narrows the range to the one between the
+ * highest quality that fits and the lowest that doesn't. Probes only count the bytes, and the
+ * image is compressed once more at the chosen quality. If the image doesn't fit even at the
+ * lowest quality, it's downscaled by the factor the sizes suggest and the search is repeated.
+ * <p>
+ * PNG ignores the quality, so it's only downscaled.
+ */
+final class CompressionSearch {
+
+    private static final int MIN_QUALITY = 30;
+    private static final int MAX_QUALITY = 100;
+    private static final int MIN_DIMENSION = 64;
+    private static final float MAX_SCALE = 0.9f;
+    private static final float MIN_SCALE = 0.25f;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private CompressionSearch() {
+    }
+
+    /**
+     * Compresses an image to the highest quality that fits the budget.
+     *
+     * @param bitmap   image to compress, already fitted to its boundaries. It's only read.
+     * @param format   image compress format
+     * @param maxBytes max size of the compressed image
+     * @return the compressed image, or null if it doesn't fit even downscaled to the min size
+     */
+    @Nullable
+    static byte[] compress(@NonNull Bitmap bitmap, @NonNull Bitmap.CompressFormat format,
+                           long maxBytes) {
+        Bitmap current = bitmap;
+        try {
+            while (true) {
+                int quality = findQuality(current, format, maxBytes);
+                if (quality > 0) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    current.compress(format, quality, bytes);
+                    return bytes.toByteArray();
+                }
+
+                // Area, and roughly size, scale with the square of the dimensions
+                long minSize = measure(current, format, MIN_QUALITY);
+                float scale = (float) Math.sqrt((double) maxBytes / minSize) * 0.95f;
+                scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+                int width = Math.round(current.getWidth() * scale);
+                int height = Math.round(current.getHeight() * scale);
+                if (width < MIN_DIMENSION || height < MIN_DIMENSION) return null;
+
+                Bitmap scaled = ImageUtils.fit(current, width, height);
+                if (current != bitmap) BitmapPool.getInstance().put(current);
+                current = scaled;
+            }
+        } finally {
+            if (current != bitmap) BitmapPool.getInstance().put(current);
+        }
+    }
+
+    /**
+     * Returns the highest quality that fits the budget, or -1 if not even the lowest one does.
+     */
+    private static int findQuality(@NonNull final Bitmap bitmap,
+                                   @NonNull final Bitmap.CompressFormat format, long maxBytes) {
+        if (format == Bitmap.CompressFormat.PNG) {
+            return measure(bitmap, format, MAX_QUALITY) <= maxBytes ? MAX_QUALITY : -1;
+        }
+
+        // Invariant: low fits (or is MIN_QUALITY - 1, unknown), high doesn't (or MAX + 1)
+        int low = MIN_QUALITY - 1;
+        int high = MAX_QUALITY + 1;
+        int probes = Math.max(1, Runtime.getRuntime().availableProcessors());
+        while (high - low > 1) {
+            int count = Math.min(probes, high - low - 1);
+            int[] qualities = new int[count];
+            for (int i = 0; i < count; i++) {
+                qualities[i] = low + (int) ((long) (high - low) * (i + 1) / (count + 1));
+            }
+            long[] sizes = measureAll(bitmap, format, qualities);
+
+            // Sizes grow with the quality, the first one that doesn't fit bounds the range
+            int i = 0;
+            while (i < count && sizes[i] <= maxBytes) i++;
+            if (i > 0) low = qualities[i - 1];
+            if (i < count) high = qualities[i];
+        }
+        return low >= MIN_QUALITY ? low : -1;
+    }
+
+    /**
+     * Measures the compressed size at each quality, running the probes in parallel. The calling
+     * thread runs the first probe, so the search progresses even if the pool is busy.
+     */
+    @NonNull
+    private static long[] measureAll(@NonNull final Bitmap bitmap,
+                                     @NonNull final Bitmap.CompressFormat format,
+                                     @NonNull int[] qualities) {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 1; i < qualities.length; i++) {
+            final int quality = qualities[i];
+            futures.add(getExecutor().submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return measure(bitmap, format, quality);
+                }
+            }));
+        }
+
+        long[] sizes = new long[qualities.length];
+        sizes[0] = measure(bitmap, format, qualities[0]);
+        boolean interrupted = false;
+        for (int i = 1; i < qualities.length; i++) {
+            Future<Long> future = futures.get(i - 1);
+            while (true) {
+                try {
+                    sizes[i] = future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return sizes;
+    }
+
+    private static long measure(@NonNull Bitmap bitmap, @NonNull Bitmap.CompressFormat format,
+                                int quality) {
+        CountingOutputStream out = new CountingOutputStream();
+        bitmap.compress(format, quality, out);
+        return out.mCount;
+    }
+
+    @NonNull
+    private synchronized static ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            sExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_S,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "CompressionSearch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Discards what's written, only counting the bytes.
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long mCount;
+
+        @Override
+        public void write(int b) {
+            mCount++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] bytes, int offset, int length) {
+            mCount += length;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.base.core.util;
+
+/**
+ * Bounds the memory used by the images being decoded at the same time. Each decode reserves the
+ * bytes its bitmaps will need and waits while they don't fit the budget, so processing many images
+ * in parallel never runs out of memory.
+ * <p>
+ * A decode bigger than the whole budget reserves all of it, so it runs alone instead of never.
+ * <p>
+ * This class is thread safe.
+ */
+final class DecodeBudget {
+
+    private long mMaxBytes;
+    private long mUsedBytes;
+
+    DecodeBudget(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Reserves memory for a decode, waiting until it fits the budget.
+     *
+     * @param bytes memory needed by the decode
+     * @return the bytes reserved, to give back with {@link #release(long)}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized long acquire(long bytes) throws InterruptedException {
+        long reserved = Math.min(bytes, mMaxBytes);
+        while (mUsedBytes > 0 && mUsedBytes + reserved > mMaxBytes) {
+            wait();
+        }
+        mUsedBytes += reserved;
+        return reserved;
+    }
+
+    synchronized void release(long reserved) {
+        mUsedBytes -= reserved;
+        notifyAll();
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        notifyAll();
+    }
+
+    synchronized long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    synchronized long getUsedBytes() {
+        return mUsedBytes;
+    }
+}
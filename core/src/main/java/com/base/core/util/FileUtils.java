@@ -47,7 +47,11 @@ public class FileUtils {
      *
      * @param fileUri A URI of a content provider pointing to an image resource
      * @return A path to the real file location, or null if it can't find it
+     * @deprecated it queries the content provider on the calling thread, and with scoped storage
+     * the path is unknown or unreadable. Read the content with {@link UriUtils} instead, or copy
+     * it with {@link UriUtils#copyToCacheFile(Uri)} if a {@link File} is needed.
      */
+    @Deprecated
     @Nullable
     public static String getRealPathFromUri(@NonNull Uri fileUri) {
         Cursor cursor = null;
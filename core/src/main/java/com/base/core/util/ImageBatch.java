@@ -0,0 +1,127 @@
+package com.base.core.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of {@link ImageRequest}s processed in parallel by the {@link ImagePipeline}, like the
+ * photos selected with {@link com.base.core.fragment.GetImageFragment}. Images are processed on
+ * every CPU core, and the memory budget of the pipeline bounds how many are decoded at the same
+ * time. The {@link ImageBatchCallback} is notified as each image finishes, so partial results can
+ * be shown or uploaded before the whole batch is done.
+ * <p>
+ * Created with {@link #process(List, ImageBatchCallback)}. Use it from the main thread.
+ */
+public class ImageBatch {
+
+    private final ImageBatchCallback mCallback;
+    private final List<ImagePipeline.ImageJob> mJobs = new ArrayList<>();
+    private final ImageResult[] mResults;
+    private int mCompleted;
+    private boolean mCancelled;
+
+    private ImageBatch(int size, @NonNull ImageBatchCallback callback) {
+        mCallback = callback;
+        mResults = new ImageResult[size];
+    }
+
+    /**
+     * Queues every request of a batch in the shared {@link ImagePipeline}.
+     *
+     * @param requests what to do with each image
+     * @param callback callback for the progress and the results, called on the main thread
+     * @return the batch, to cancel it
+     */
+    @NonNull
+    public static ImageBatch process(@NonNull List<ImageRequest> requests,
+                                     @NonNull ImageBatchCallback callback) {
+        return process(ImagePipeline.getInstance(), requests, callback);
+    }
+
+    /**
+     * Queues every request of a batch in the given pipeline.
+     *
+     * @param pipeline pipeline that processes the images
+     * @param requests what to do with each image
+     * @param callback callback for the progress and the results, called on the main thread
+     * @return the batch, to cancel it
+     */
+    @NonNull
+    public static ImageBatch process(@NonNull ImagePipeline pipeline,
+                                     @NonNull List<ImageRequest> requests,
+                                     @NonNull ImageBatchCallback callback) {
+        ImageBatch batch = new ImageBatch(requests.size(), callback);
+        if (requests.isEmpty()) {
+            callback.onBatchFinished(Collections.<ImageResult>emptyList());
+            return batch;
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            batch.mJobs.add(pipeline.process(requests.get(i), batch.new ItemCallback(i)));
+        }
+        return batch;
+    }
+
+    /**
+     * Cancels the images not finished yet. The callback is not notified anymore.
+     */
+    public void cancel() {
+        mCancelled = true;
+        for (ImagePipeline.ImageJob job : mJobs) {
+            job.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return amount of images finished so far, including failed ones
+     */
+    public int getCompleted() {
+        return mCompleted;
+    }
+
+    public int getTotal() {
+        return mResults.length;
+    }
+
+    private void finish(int index, @Nullable ImageResult result, @Nullable Exception error) {
+        if (mCancelled) return;
+        mResults[index] = result;
+        mCompleted++;
+        if (result != null) {
+            mCallback.onImageProcessed(index, result, mCompleted, mResults.length);
+        } else if (error != null) {
+            mCallback.onImageFailed(index, error, mCompleted, mResults.length);
+        }
+        if (mCompleted == mResults.length) {
+            List<ImageResult> results = new ArrayList<>(mResults.length);
+            Collections.addAll(results, mResults);
+            mCallback.onBatchFinished(results);
+        }
+    }
+
+    private class ItemCallback implements ImageCallback {
+
+        private final int mIndex;
+
+        ItemCallback(int index) {
+            mIndex = index;
+        }
+
+        @Override
+        public void onSuccess(@NonNull ImageResult result) {
+            finish(mIndex, result, null);
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            finish(mIndex, null, e);
+        }
+    }
+}
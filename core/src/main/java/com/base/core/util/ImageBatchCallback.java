@@ -0,0 +1,39 @@
+package com.base.core.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Callback for an {@link ImageBatch}, called on the main thread as each image finishes, in the
+ * order they finish.
+ */
+public interface ImageBatchCallback {
+
+    /**
+     * Called when an image of the batch was processed.
+     *
+     * @param index     position of the image in the batch
+     * @param result    the processed image
+     * @param completed amount of images finished so far, including failed ones
+     * @param total     amount of images in the batch
+     */
+    void onImageProcessed(int index, @NonNull ImageResult result, int completed, int total);
+
+    /**
+     * Called when an image of the batch couldn't be processed. The rest of the batch goes on.
+     *
+     * @param index     position of the image in the batch
+     * @param e         cause of the failure
+     * @param completed amount of images finished so far, including failed ones
+     * @param total     amount of images in the batch
+     */
+    void onImageFailed(int index, @NonNull Exception e, int completed, int total);
+
+    /**
+     * Called once every image of the batch finished.
+     *
+     * @param results the processed images, in the order of the batch, null for the failed ones
+     */
+    void onBatchFinished(@NonNull List<ImageResult> results);
+}
@@ -0,0 +1,23 @@
+package com.base.core.util;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Callback for the requests processed by the {@link ImagePipeline}, called on the main thread.
+ */
+public interface ImageCallback {
+
+    /**
+     * Called when the image was processed.
+     *
+     * @param result the processed image
+     */
+    void onSuccess(@NonNull ImageResult result);
+
+    /**
+     * Called when the image couldn't be processed.
+     *
+     * @param e cause of the failure
+     */
+    void onFailure(@NonNull Exception e);
+}
@@ -0,0 +1,170 @@
+package com.base.core.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Encoded images stored in a directory, one file per key, like their URL, bounded in bytes. When
+ * it's full, the least recently used files are deleted. The modification time of the files keeps
+ * their order across restarts.
+ * <p>
+ * The directory is scanned the first time the cache is used, so it must not be created nor used
+ * from the main thread. Files are written to a temporary file first, so a file of the cache is
+ * never half written.
+ * <p>
+ * This class is thread safe, but the same key must not be written by two threads at the same
+ * time, see {@link KeyLocks}.
+ */
+final class ImageDiskCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mBytes;
+    private boolean mLoaded;
+
+    ImageDiskCache(@NonNull File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the stored file of a key, marking it as recently used.
+     *
+     * @return the file, or null if the key is not stored
+     */
+    @Nullable
+    synchronized File get(@NonNull String key) {
+        load();
+        String name = getName(key);
+        Long bytes = mEntries.get(name);
+        if (bytes == null) return null;
+
+        File file = new File(mDirectory, name);
+        if (!file.exists()) {
+            mEntries.remove(name);
+            mBytes -= bytes;
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Stores the content of a key, replacing the previous one. The source is read to the end.
+     *
+     * @return the stored file
+     * @throws IOException if the source can't be read or the file can't be written
+     */
+    @NonNull
+    File put(@NonNull String key, @NonNull Source source) throws IOException {
+        synchronized (this) {
+            load();
+        }
+        String name = getName(key);
+        File file = new File(mDirectory, name);
+        File temp = new File(mDirectory, name + TEMP_SUFFIX);
+
+        boolean written = false;
+        BufferedSink sink = Okio.buffer(Okio.sink(temp));
+        try {
+            sink.writeAll(source);
+            written = true;
+        } finally {
+            sink.close();
+            if (!written) temp.delete();
+        }
+
+        synchronized (this) {
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Can't write " + file);
+            }
+            Long previous = mEntries.put(name, file.length());
+            if (previous != null) mBytes -= previous;
+            mBytes += file.length();
+            trimToSize(mMaxBytes, name);
+        }
+        return file;
+    }
+
+    /**
+     * Deletes every stored file.
+     */
+    synchronized void clear() {
+        load();
+        trimToSize(0, null);
+    }
+
+    synchronized long getSize() {
+        load();
+        return mBytes;
+    }
+
+    /**
+     * Deletes the least recently used files until the cache holds at most the given bytes.
+     *
+     * @param keep file that's not deleted even if it doesn't fit, like the one just written
+     */
+    private void trimToSize(long maxBytes, @Nullable String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().equals(keep)) continue;
+            new File(mDirectory, entry.getKey()).delete();
+            mBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Scans the directory the first time, from the least to the most recently used file.
+     * Temporary files left by a process that died while writing are deleted.
+     */
+    private void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+
+        mDirectory.mkdirs();
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            mEntries.put(file.getName(), file.length());
+            mBytes += file.length();
+        }
+        trimToSize(mMaxBytes, null);
+    }
+
+    @NonNull
+    private static String getName(@NonNull String key) {
+        return ByteString.encodeUtf8(key).md5().hex();
+    }
+}
@@ -0,0 +1,525 @@
+package com.base.core.util;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads remote images, like avatars and thumbnails, into {@link ImageView}s with two cache tiers:
+ * <li>
+ * <ul>Memory: decoded bitmaps, bounded in bytes, so scrolling back to an image shows it at
+ * once.</ul>
+ * <ul>Disk: the encoded images, bounded in bytes, so they're downloaded once.</ul>
+ * </li>
+ * Images are downloaded with the client set by {@link #setClient(OkHttpClient)}, and decoded
+ * subsampled, oriented and fitted to the size of the view in background threads. Loads of the
+ * same URL and size are merged, and downloads of the same URL are performed once.
+ * <p>
+ * A load into a view is cancelled when another image is loaded into the same view, like when a
+ * list recycles it. It's paused while the view is detached from the window, and resumed if it's
+ * attached again without loading another image, like the views cached by a RecyclerView or the
+ * pages of a ViewPager. A cancelled or paused load stops its download if no other load needs it.
+ * <p>
+ * Use it from the main thread.
+ */
+public class ImageLoader {
+
+    private static final String DISK_CACHE_DIRECTORY = "images";
+    private static final int DEFAULT_MEMORY_FRACTION = 8;
+    private static final long DEFAULT_DISK_CACHE_SIZE = 50 * 1024 * 1024;
+    private static final int DEFAULT_THREADS = 4;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    private static ImageLoader sInstance; // Singleton
+
+    private final BitmapLruCache mMemoryCache;
+    private final ImageDiskCache mDiskCache;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile OkHttpClient mClient;
+
+    // Guarded by this
+    private final Map<String, Work> mWorks = new HashMap<>();
+
+    private final KeyLocks mUrlLocks = new KeyLocks();
+
+    // Accessed only from the main thread
+    private final Map<ImageView, LoadJob> mViewJobs = new WeakHashMap<>();
+
+    /**
+     * Returns the shared loader, which keeps up to an eighth of the memory available to the app
+     * and 50 MB in the cache directory.
+     *
+     * @return the shared loader
+     */
+    public synchronized static ImageLoader getInstance() {
+        if (sInstance == null) {
+            sInstance = new ImageLoader(
+                    new File(ContextUtils.getAppContext().getCacheDir(), DISK_CACHE_DIRECTORY),
+                    Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION,
+                    DEFAULT_DISK_CACHE_SIZE,
+                    DEFAULT_THREADS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param diskDirectory  directory of the disk cache, used only by this loader
+     * @param maxMemoryBytes max bytes of the decoded bitmaps kept in memory
+     * @param maxDiskBytes   max bytes of the encoded images kept on disk
+     * @param threads        max amount of images downloaded or decoded at the same time
+     */
+    public ImageLoader(@NonNull File diskDirectory, long maxMemoryBytes, long maxDiskBytes,
+                       int threads) {
+        mMemoryCache = new BitmapLruCache(maxMemoryBytes);
+        mDiskCache = new ImageDiskCache(diskDirectory, maxDiskBytes);
+        final AtomicInteger count = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_S,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ImageLoader-" + count.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the client used to download the images, usually the one from
+     * {@link com.base.networking.retrofit.RetrofitServices#getClient()}. Done by
+     * {@link com.base.networking.retrofit.NetworkingApplication} on startup.
+     * <p>
+     * The loader shares its connections, dispatcher and DNS, but not its interceptors, which are
+     * meant for the API, like logging bodies or adding credentials, nor its response cache, since
+     * images have their own.
+     *
+     * @param client client to share
+     */
+    public void setClient(@NonNull OkHttpClient client) {
+        OkHttpClient.Builder builder = client.newBuilder().cache(null);
+        builder.interceptors().clear();
+        mClient = builder.build();
+    }
+
+    /**
+     * Loads an image into a view, fitted to its size.
+     *
+     * @param url  URL of the image
+     * @param view view to show the image in. It's cleared until the image is loaded.
+     * @return a handle to cancel the load
+     */
+    @NonNull
+    public LoadJob load(@NonNull String url, @NonNull ImageView view) {
+        return load(url, view, 0, 0);
+    }
+
+    /**
+     * Loads an image into a view, fitted to its size. Loading another image into the same view
+     * cancels this one.
+     *
+     * @param url              URL of the image
+     * @param view             view to show the image in
+     * @param placeholderResId drawable shown until the image is loaded, or 0 to clear the view
+     * @param errorResId       drawable shown if the image can't be loaded, or 0 to keep the
+     *                         placeholder
+     * @return a handle to cancel the load
+     */
+    @NonNull
+    public LoadJob load(@NonNull String url, @NonNull ImageView view,
+                        @DrawableRes int placeholderResId, @DrawableRes int errorResId) {
+        cancel(view);
+
+        int width = getTargetSize(view, true);
+        int height = getTargetSize(view, false);
+        LoadJob job = new LoadJob(url, width, height, view, errorResId, null);
+        Bitmap cached = mMemoryCache.get(getKey(url, width, height));
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return job;
+        }
+
+        if (placeholderResId != 0) {
+            view.setImageResource(placeholderResId);
+        } else {
+            view.setImageDrawable(null);
+        }
+        mViewJobs.put(view, job);
+        job.watchDetach(view);
+        enqueue(url, width, height, job);
+        return job;
+    }
+
+    /**
+     * Loads an image fitted to the given size, for targets that are not an {@link ImageView}.
+     *
+     * @param url       URL of the image
+     * @param maxWidth  max width of the image, or 0 to keep its width
+     * @param maxHeight max height of the image, or 0 to keep its height
+     * @param callback  callback for the result, with the bitmap in
+     *                  {@link ImageResult#getBitmap()}, called on the main thread. The bitmap is
+     *                  shared with the memory cache, so it must not be recycled nor modified.
+     * @return a handle to cancel the load
+     */
+    @NonNull
+    public LoadJob load(@NonNull String url, int maxWidth, int maxHeight,
+                        @NonNull ImageCallback callback) {
+        LoadJob job = new LoadJob(url, maxWidth, maxHeight, null, 0, callback);
+        Bitmap cached = mMemoryCache.get(getKey(url, maxWidth, maxHeight));
+        if (cached != null) {
+            callback.onSuccess(new ImageResult(
+                    cached, null, null, cached.getWidth(), cached.getHeight()));
+            return job;
+        }
+        enqueue(url, maxWidth, maxHeight, job);
+        return job;
+    }
+
+    /**
+     * Cancels the load into a view, if any.
+     *
+     * @param view the view
+     */
+    public void cancel(@NonNull ImageView view) {
+        LoadJob job = mViewJobs.get(view);
+        if (job != null) job.cancel();
+    }
+
+    /**
+     * Drops every decoded bitmap kept in memory. Call it when the system is low on memory.
+     */
+    public void clearMemory() {
+        mMemoryCache.trimToSize(0);
+    }
+
+    /**
+     * Deletes every image stored on disk. It does I/O, don't call it from the main thread.
+     */
+    public void clearDisk() {
+        mDiskCache.clear();
+    }
+
+    private void enqueue(@NonNull String url, int width, int height, @NonNull LoadJob job) {
+        synchronized (this) {
+            String key = getKey(url, width, height);
+            Work work = mWorks.get(key);
+            boolean created = work == null;
+            if (created) {
+                work = new Work(key, url, width, height);
+                mWorks.put(key, work);
+            }
+            job.mWork = work;
+            work.mJobs.add(job);
+            if (created) work.mFuture = mExecutor.submit(work);
+        }
+    }
+
+    private void cancel(@NonNull LoadJob job) {
+        synchronized (this) {
+            Work work = job.mWork;
+            if (work == null) return;
+            work.mJobs.remove(job);
+            if (!work.mJobs.isEmpty() || work.mCancelled) return;
+
+            work.mCancelled = true;
+            if (mWorks.get(work.mKey) == work) mWorks.remove(work.mKey);
+            Future<?> future = work.mFuture;
+            if (future != null) future.cancel(false);
+            Call call = work.mCall;
+            if (call != null) call.cancel();
+        }
+    }
+
+    /**
+     * Returns the stored file of a URL, downloading it first if needed. Works of the same URL
+     * with different sizes wait for each other, so it's downloaded once.
+     */
+    @NonNull
+    private File fetch(@NonNull Work work) throws IOException {
+        Object lock = mUrlLocks.acquire(work.mUrl);
+        try {
+            synchronized (lock) {
+                File file = mDiskCache.get(work.mUrl);
+                if (file != null) return file;
+                return download(work);
+            }
+        } finally {
+            mUrlLocks.release(work.mUrl, lock);
+        }
+    }
+
+    @NonNull
+    private File download(@NonNull Work work) throws IOException {
+        OkHttpClient client = mClient;
+        if (client == null) throw new IOException("No client set to download images");
+
+        Call call = client.newCall(new Request.Builder().url(work.mUrl).build());
+        work.mCall = call;
+        if (work.mCancelled) call.cancel();
+        Response response = call.execute();
+        try {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Can't download " + work.mUrl + ": " + response.code());
+            }
+            return mDiskCache.put(work.mUrl, body.source());
+        } finally {
+            response.close();
+        }
+    }
+
+    @NonNull
+    private static String getKey(@NonNull String url, int width, int height) {
+        return url + "|" + width + "x" + height;
+    }
+
+    /**
+     * Returns the size the image is fitted to: the one of the view if it's laid out, the one of
+     * its layout params if they're fixed, or else the one of the screen.
+     */
+    private static int getTargetSize(@NonNull View view, boolean width) {
+        int size = width ? view.getWidth() : view.getHeight();
+        if (size > 0) return size;
+
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null) {
+            size = width ? params.width : params.height;
+            if (size > 0) return size;
+        }
+
+        DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+        return width ? metrics.widthPixels : metrics.heightPixels;
+    }
+
+    /**
+     * Loading of an image of a URL and size, shared by the jobs of merged loads.
+     */
+    private final class Work implements Runnable {
+
+        private final String mKey;
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+        private final List<LoadJob> mJobs = new ArrayList<>();
+        private volatile boolean mCancelled;
+        private volatile Future<?> mFuture;
+        private volatile Call mCall;
+
+        private Work(@NonNull String key, @NonNull String url, int width, int height) {
+            mKey = key;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            Exception error = null;
+            try {
+                bitmap = load();
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+
+            final List<LoadJob> jobs;
+            synchronized (ImageLoader.this) {
+                if (mWorks.get(mKey) == this) mWorks.remove(mKey);
+                jobs = new ArrayList<>(mJobs);
+            }
+            final Bitmap finalBitmap = bitmap;
+            final Exception finalError = error;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (LoadJob job : jobs) {
+                        job.deliver(finalBitmap, finalError);
+                    }
+                }
+            });
+        }
+
+        @NonNull
+        private Bitmap load() throws IOException {
+            Bitmap bitmap = mMemoryCache.get(mKey);
+            if (bitmap != null) return bitmap;
+
+            if (mCancelled) throw new InterruptedIOException("Load cancelled");
+            File file = fetch(this);
+            if (mCancelled) throw new InterruptedIOException("Load cancelled");
+            bitmap = ImageUtils.decodeOrientedBitmap(file.getPath(), mWidth, mHeight);
+            if (bitmap == null) throw new IOException("Can't decode " + mUrl);
+
+            mMemoryCache.put(mKey, bitmap);
+            return bitmap;
+        }
+    }
+
+    /**
+     * A load into a view or a callback. Cancelling it stops the download only if no other merged
+     * load needs it.
+     */
+    public final class LoadJob {
+
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+        private final WeakReference<ImageView> mView;
+        private final int mErrorResId;
+        private final ImageCallback mCallback;
+        private View.OnAttachStateChangeListener mDetachListener;
+        private volatile Work mWork;
+        private volatile boolean mCancelled;
+
+        // Accessed only from the main thread
+        private boolean mPaused;
+        private boolean mDelivered;
+
+        private LoadJob(@NonNull String url, int width, int height, @Nullable ImageView view,
+                        @DrawableRes int errorResId, @Nullable ImageCallback callback) {
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+            mView = new WeakReference<>(view);
+            mErrorResId = errorResId;
+            mCallback = callback;
+        }
+
+        /**
+         * Cancels the load. The view is not updated, nor the callback notified, anymore.
+         */
+        public void cancel() {
+            if (mCancelled) return;
+            mCancelled = true;
+            release();
+            ImageLoader.this.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Pauses the load while the view is detached from the window, like when it's removed or
+         * its screen is destroyed, and resumes it if the view is attached again.
+         */
+        private void watchDetach(@NonNull ImageView view) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) return;
+            addDetachListener(view);
+        }
+
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+        private void addDetachListener(@NonNull ImageView view) {
+            mDetachListener = new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                    resume();
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    pause();
+                }
+            };
+            view.addOnAttachStateChangeListener(mDetachListener);
+        }
+
+        /**
+         * Stops the load, keeping the job bound to its view so it can be resumed.
+         */
+        private void pause() {
+            if (mCancelled || mDelivered || mPaused) return;
+            mPaused = true;
+            ImageLoader.this.cancel(this);
+        }
+
+        /**
+         * Loads the image again, merged with the work of its URL and size if it's still running.
+         */
+        private void resume() {
+            if (mCancelled || mDelivered || !mPaused) return;
+            mPaused = false;
+            Bitmap cached = mMemoryCache.get(getKey(mUrl, mWidth, mHeight));
+            if (cached != null) {
+                deliver(cached, null);
+            } else {
+                enqueue(mUrl, mWidth, mHeight, this);
+            }
+        }
+
+        /**
+         * Unbinds the job from its view, so it doesn't hold it nor its listener anymore.
+         */
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+        private void release() {
+            ImageView view = mView.get();
+            if (view == null) return;
+            if (mViewJobs.get(view) == this) mViewJobs.remove(view);
+            if (mDetachListener != null) {
+                view.removeOnAttachStateChangeListener(mDetachListener);
+                mDetachListener = null;
+            }
+        }
+
+        private void deliver(@Nullable Bitmap bitmap, @Nullable Exception error) {
+            // A work posted before the job was paused may deliver it after it was resumed
+            if (mCancelled || mDelivered) return;
+            mDelivered = true;
+            release();
+
+            ImageView view = mView.get();
+            if (view != null) {
+                if (bitmap != null) {
+                    view.setImageBitmap(bitmap);
+                } else if (mErrorResId != 0) {
+                    view.setImageResource(mErrorResId);
+                }
+            } else if (mCallback != null) {
+                if (bitmap != null) {
+                    mCallback.onSuccess(new ImageResult(
+                            bitmap, null, null, bitmap.getWidth(), bitmap.getHeight()));
+                } else if (error != null) {
+                    mCallback.onFailure(error);
+                }
+            }
+        }
+    }
+}
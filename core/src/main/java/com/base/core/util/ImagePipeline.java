@@ -0,0 +1,324 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes images in background, so decoding and compressing them never blocks the main thread.
+ * Each {@link ImageRequest} goes through these stages, in order:
+ * <li>
+ * <ul>Decode: the source is decoded subsampled, and then rotated as its EXIF orientation says
+ * and fitted to the max size of the request in a single pass.</ul>
+ * <ul>Transform: the {@link ImageTransformation} of the request is applied.</ul>
+ * <ul>Compress: the image is compressed to the format of the request, if any.</ul>
+ * <ul>Write: the image is compressed straight into the output file of the request, if any,
+ * instead of into memory.</ul>
+ * </li>
+ * Requests run on a dedicated pool with as many threads as CPU cores, at background priority,
+ * and the result is delivered on the main thread. Decoding waits while the images already being
+ * processed use the memory budget, see {@link #setDecodeMemoryBudget(long)}. A request submitted
+ * while another one with the same {@link ImageRequest#getKey()} is queued or running is merged
+ * into it: the image is processed once and every callback receives the same result.
+ * <p>
+ * {@link Uri}s are read through {@link UriUtils}, so they don't need a file path.
+ * <p>
+ * Intermediate bitmaps are given back to the {@link BitmapPool}.
+ */
+public class ImagePipeline {
+
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+    private static final int DEFAULT_DECODE_MEMORY_FRACTION = 4;
+
+    private static ImagePipeline sInstance; // Singleton
+
+    private static final DecodeBudget sDecodeBudget = new DecodeBudget(
+            Runtime.getRuntime().maxMemory() / DEFAULT_DECODE_MEMORY_FRACTION);
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by this
+    private final Map<String, Work> mWorks = new HashMap<>();
+
+    public synchronized static ImagePipeline getInstance() {
+        if (sInstance == null) {
+            sInstance = new ImagePipeline(Runtime.getRuntime().availableProcessors());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param threads max amount of images processed at the same time, the rest are queued
+     */
+    public ImagePipeline(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_S,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ImagePipeline-" + count.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the max memory used by the images being processed at the same time, by every pipeline.
+     * Requests wait for memory before being decoded, so processing many big images in parallel
+     * doesn't run out of it. By default, it's a quarter of the memory available to the app.
+     *
+     * @param maxBytes max bytes of the bitmaps being decoded and fitted at the same time
+     */
+    public static void setDecodeMemoryBudget(long maxBytes) {
+        sDecodeBudget.setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Queues a request to be processed in background.
+     *
+     * @param request  what to do with the image
+     * @param callback callback for the result, called on the main thread
+     * @return a handle to cancel the job
+     */
+    @NonNull
+    public ImageJob process(@NonNull ImageRequest request, @NonNull ImageCallback callback) {
+        synchronized (this) {
+            String key = request.getKey();
+            Work work = mWorks.get(key);
+            boolean created = work == null;
+            if (created) {
+                work = new Work(key, request);
+                mWorks.put(key, work);
+            }
+            ImageJob job = new ImageJob(work, callback);
+            work.mJobs.add(job);
+            if (created) work.mFuture = mExecutor.submit(work);
+            return job;
+        }
+    }
+
+    /**
+     * Runs a request in the calling thread, once the decode memory budget allows it.
+     *
+     * @param request what to do with the image
+     * @param work    work to check for cancellation between stages, or null
+     * @return the processed image
+     * @throws IOException if the image can't be decoded or written, or the work was cancelled
+     */
+    @NonNull
+    static ImageResult execute(@NonNull ImageRequest request, @Nullable Work work)
+            throws IOException {
+        Uri uri = request.getFile() != null ? Uri.fromFile(request.getFile()) : request.getUri();
+
+        long reserved;
+        try {
+            reserved = sDecodeBudget.acquire(ImageUtils.estimateDecodeBytes(
+                    uri, request.getMaxWidth(), request.getMaxHeight()));
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for memory");
+        }
+        try {
+            return execute(request, uri, work);
+        } finally {
+            sDecodeBudget.release(reserved);
+        }
+    }
+
+    @NonNull
+    private static ImageResult execute(@NonNull ImageRequest request, @NonNull Uri uri,
+                                       @Nullable Work work) throws IOException {
+        // Decode
+        checkCancelled(work);
+        Bitmap bitmap = ImageUtils.decodeOrientedBitmap(
+                uri, request.getMaxWidth(), request.getMaxHeight());
+        if (bitmap == null) throw new IOException("Can't decode " + uri);
+
+        try {
+            // Transform
+            ImageTransformation transformation = request.getTransformation();
+            if (transformation != null) {
+                checkCancelled(work);
+                bitmap = replace(bitmap, transformation.transform(bitmap));
+            }
+
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if (request.getFormat() == null) {
+                Bitmap result = bitmap;
+                bitmap = null;
+                return new ImageResult(result, null, null, width, height);
+            }
+
+            // Compress, and write straight to the output file if there's one
+            checkCancelled(work);
+            File output = request.getOutput();
+            if (output != null) {
+                write(bitmap, request, output);
+                return new ImageResult(null, null, output, width, height);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bitmap.compress(request.getFormat(),
+                    ImageUtils.sanitizeQuality(request.getQuality()), bytes);
+            return new ImageResult(null, bytes.toByteArray(), null, width, height);
+        } finally {
+            if (bitmap != null) BitmapPool.getInstance().put(bitmap);
+        }
+    }
+
+    /**
+     * Gives the previous bitmap of a stage back to the pool, if the stage created a new one.
+     */
+    @NonNull
+    private static Bitmap replace(@NonNull Bitmap previous, @NonNull Bitmap next) {
+        if (next != previous) BitmapPool.getInstance().put(previous);
+        return next;
+    }
+
+    private static void checkCancelled(@Nullable Work work) throws InterruptedIOException {
+        if (work != null && work.mCancelled) throw new InterruptedIOException("Job cancelled");
+    }
+
+    /**
+     * Compresses the image to a temporary file first, so the output is never left half written.
+     */
+    private static void write(@NonNull Bitmap bitmap, @NonNull ImageRequest request,
+                              @NonNull File output) throws IOException {
+        File temp = new File(output.getPath() + ".tmp");
+        boolean compressed;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+        try {
+            compressed = bitmap.compress(request.getFormat(),
+                    ImageUtils.sanitizeQuality(request.getQuality()), out);
+        } finally {
+            out.close();
+        }
+        if (!compressed || !temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Can't write " + output);
+        }
+    }
+
+    private void cancel(@NonNull ImageJob job) {
+        synchronized (this) {
+            Work work = job.mWork;
+            work.mJobs.remove(job);
+            if (!work.mJobs.isEmpty() || work.mCancelled) return;
+
+            work.mCancelled = true;
+            if (mWorks.get(work.mKey) == work) mWorks.remove(work.mKey);
+            Future<?> future = work.mFuture;
+            if (future != null) future.cancel(false);
+        }
+    }
+
+    /**
+     * Processing of a request, shared by the jobs of merged requests.
+     */
+    final class Work implements Runnable {
+
+        private final String mKey;
+        private final ImageRequest mRequest;
+        private final List<ImageJob> mJobs = new ArrayList<>();
+        private volatile boolean mCancelled;
+        private volatile Future<?> mFuture;
+
+        private Work(@NonNull String key, @NonNull ImageRequest request) {
+            mKey = key;
+            mRequest = request;
+        }
+
+        @Override
+        public void run() {
+            ImageResult result = null;
+            Exception error = null;
+            try {
+                result = execute(mRequest, this);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+
+            final List<ImageJob> jobs;
+            synchronized (ImagePipeline.this) {
+                if (mWorks.get(mKey) == this) mWorks.remove(mKey);
+                jobs = new ArrayList<>(mJobs);
+            }
+            final ImageResult finalResult = result;
+            final Exception finalError = error;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ImageJob job : jobs) {
+                        job.deliver(finalResult, finalError);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A queued or running request. Cancelling it stops the processing only if no other merged
+     * request needs it.
+     */
+    public final class ImageJob {
+
+        private final Work mWork;
+        private final ImageCallback mCallback;
+        private volatile boolean mCancelled;
+
+        private ImageJob(@NonNull Work work, @NonNull ImageCallback callback) {
+            mWork = work;
+            mCallback = callback;
+        }
+
+        /**
+         * Cancels the job. The callback is not notified anymore.
+         */
+        public void cancel() {
+            mCancelled = true;
+            ImagePipeline.this.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private void deliver(@Nullable ImageResult result, @Nullable Exception error) {
+            if (mCancelled) return;
+            if (result != null) {
+                mCallback.onSuccess(result);
+            } else if (error != null) {
+                mCallback.onFailure(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * Describes how the {@link ImagePipeline} must process an image: the source to decode, the max
+ * size to fit it to, an optional {@link ImageTransformation}, the format to compress it to and
+ * the file to write it to. Created with {@link ImageRequest.Builder}.
+ */
+public class ImageRequest {
+
+    private final File mFile;
+    private final Uri mUri;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final ImageTransformation mTransformation;
+    private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+    private final File mOutput;
+
+    private ImageRequest(@NonNull Builder builder) {
+        mFile = builder.mFile;
+        mUri = builder.mUri;
+        mMaxWidth = builder.mMaxWidth;
+        mMaxHeight = builder.mMaxHeight;
+        mTransformation = builder.mTransformation;
+        mFormat = builder.mFormat;
+        mQuality = builder.mQuality;
+        mOutput = builder.mOutput;
+    }
+
+    @Nullable
+    public File getFile() {
+        return mFile;
+    }
+
+    @Nullable
+    public Uri getUri() {
+        return mUri;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public int getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    @Nullable
+    public ImageTransformation getTransformation() {
+        return mTransformation;
+    }
+
+    @Nullable
+    public Bitmap.CompressFormat getFormat() {
+        return mFormat;
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    @Nullable
+    public File getOutput() {
+        return mOutput;
+    }
+
+    /**
+     * Returns a key that identifies the source and every parameter of the request. Requests with
+     * the same key produce the same result.
+     *
+     * @return key of the request
+     */
+    @NonNull
+    public String getKey() {
+        return (mFile != null ? mFile.getAbsolutePath() : String.valueOf(mUri))
+                + "|" + mMaxWidth + "x" + mMaxHeight
+                + "|" + (mTransformation != null ? mTransformation.getKey() : "")
+                + "|" + mFormat + ":" + mQuality
+                + "|" + (mOutput != null ? mOutput.getAbsolutePath() : "");
+    }
+
+    public static class Builder {
+
+        private File mFile;
+        private Uri mUri;
+        private int mMaxWidth;
+        private int mMaxHeight;
+        private ImageTransformation mTransformation;
+        private Bitmap.CompressFormat mFormat;
+        private int mQuality = 100;
+        private File mOutput;
+
+        /**
+         * @param file image file to process
+         */
+        public Builder(@NonNull File file) {
+            mFile = file;
+        }
+
+        /**
+         * @param uri {@link Uri} of the image to process
+         */
+        public Builder(@NonNull Uri uri) {
+            mUri = uri;
+        }
+
+        /**
+         * Sets the boundaries the image is fitted to, keeping its aspect ratio. By default, the
+         * image keeps its size.
+         *
+         * @param maxWidth  max width of the image
+         * @param maxHeight max height of the image
+         * @return this builder
+         */
+        public Builder setMaxSize(int maxWidth, int maxHeight) {
+            mMaxWidth = maxWidth;
+            mMaxHeight = maxHeight;
+            return this;
+        }
+
+        public Builder setTransformation(@Nullable ImageTransformation transformation) {
+            mTransformation = transformation;
+            return this;
+        }
+
+        /**
+         * Sets the format to compress the image to. Without it, the result is the
+         * {@link Bitmap} itself.
+         *
+         * @param format  image compress format
+         * @param quality compress quality, between 0 and 100
+         * @return this builder
+         */
+        public Builder setCompression(@NonNull Bitmap.CompressFormat format,
+                                      @IntRange(from = 0, to = 100) int quality) {
+            mFormat = format;
+            mQuality = quality;
+            return this;
+        }
+
+        /**
+         * Sets the file the compressed image is written to. It requires a compress format.
+         *
+         * @param output file to write, replaced if it exists
+         * @return this builder
+         */
+        public Builder setOutput(@Nullable File output) {
+            mOutput = output;
+            return this;
+        }
+
+        @NonNull
+        public ImageRequest build() {
+            if (mOutput != null && mFormat == null) {
+                throw new IllegalStateException("An output file requires a compress format");
+            }
+            return new ImageRequest(this);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * A {@link RequestBody} that compresses an image straight into the request as it's sent, so the
+ * encoded image is never held in memory. Its length is unknown, so it's sent chunked.
+ * <p>
+ * The image is compressed again every time the body is written, for instance on retries. Note
+ * that logging request bodies, as the default <i>RetrofitServices.initClient()</i> does, buffers
+ * the whole body in memory.
+ */
+class ImageRequestBody extends RequestBody {
+
+    private final File mFile;
+    private final Bitmap mBitmap;
+    private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final MediaType mContentType;
+
+    /**
+     * @param file   image file to decode on every write, or null to compress the bitmap
+     * @param bitmap image to compress, if there's no file
+     */
+    ImageRequestBody(@Nullable File file, @Nullable Bitmap bitmap,
+                     @NonNull Bitmap.CompressFormat format, int quality,
+                     int maxWidth, int maxHeight) {
+        mFile = file;
+        mBitmap = bitmap;
+        mFormat = format;
+        mQuality = quality;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mContentType = MediaType.parse(ImageUtils.getMimeType(format));
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mContentType;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        if (mFile != null) {
+            ImageUtils.compressImage(
+                    mFile, mFormat, mQuality, mMaxWidth, mMaxHeight, sink.outputStream());
+        } else if (!ImageUtils.compressImage(
+                mBitmap, mFormat, mQuality, mMaxWidth, mMaxHeight, sink.outputStream())) {
+            throw new IOException("Can't compress the image");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * The result of an {@link ImageRequest} processed by the {@link ImagePipeline}. Which values are
+ * present depends on the stages of the request:
+ * <li>
+ * <ul>Without a compress format, only the {@link Bitmap}.</ul>
+ * <ul>With a compress format, the compressed bytes.</ul>
+ * <ul>With an output file, only the file the image was compressed to.</ul>
+ * </li>
+ */
+public class ImageResult {
+
+    private final Bitmap mBitmap;
+    private final byte[] mBytes;
+    private final File mFile;
+    private final int mWidth;
+    private final int mHeight;
+
+    ImageResult(@Nullable Bitmap bitmap, @Nullable byte[] bytes, @Nullable File file,
+                int width, int height) {
+        mBitmap = bitmap;
+        mBytes = bytes;
+        mFile = file;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Returns the processed image, if the request has no compress format. It's shared by every
+     * callback of merged requests, so it must not be recycled nor modified.
+     *
+     * @return the bitmap, or null
+     */
+    @Nullable
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    @Nullable
+    public byte[] getBytes() {
+        return mBytes;
+    }
+
+    @Nullable
+    public File getFile() {
+        return mFile;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+}
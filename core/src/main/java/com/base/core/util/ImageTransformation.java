@@ -0,0 +1,32 @@
+package com.base.core.util;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A transformation applied to a decoded image by the {@link ImagePipeline}, like a crop or a
+ * rotation, after orienting it upright and fitting it to the max size of the
+ * {@link ImageRequest}.
+ */
+public interface ImageTransformation {
+
+    /**
+     * Transforms the image. Called from a background thread.
+     *
+     * @param bitmap image to transform. If a different bitmap is returned, this one is given back
+     *               to the {@link BitmapPool}, so it must not be kept.
+     * @return the transformed image, which can be the same bitmap
+     */
+    @NonNull
+    Bitmap transform(@NonNull Bitmap bitmap);
+
+    /**
+     * Returns a key that identifies the transformation and its parameters, so requests with the
+     * same transformation can be merged.
+     *
+     * @return key of the transformation
+     */
+    @NonNull
+    String getKey();
+}
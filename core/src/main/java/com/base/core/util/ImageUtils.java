@@ -1,9 +1,17 @@
 package com.base.core.util;
 
+import android.content.ClipData;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
 
 import androidx.annotation.IntRange;
@@ -12,12 +20,24 @@ import androidx.annotation.Nullable;
 import androidx.annotation.StringDef;
 import androidx.annotation.StringRes;
 import androidx.core.content.FileProvider;
+import androidx.exifinterface.media.ExifInterface;
 import androidx.fragment.app.Fragment;
 
+import com.base.networking.bandwidth.BandwidthEstimator;
+
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.RequestBody;
 
 import static java.lang.annotation.RetentionPolicy.SOURCE;
 
@@ -69,6 +89,61 @@ public class ImageUtils {
         }
     }
 
+    /**
+     * Triggers an intent to go to the device's image gallery, letting the user select several
+     * images.
+     * <p>
+     * Override the onActivityResult method in your fragment and specify behaviour
+     * for the provided request code. The selected images are returned in the clip data of the
+     * result, see {@link #getImageUris(Intent)}.
+     *
+     * @param fragment    A fragment where the get images intent is going to be called
+     * @param requestCode of the result call to be identified with
+     * @param errorResId  {@link StringRes} to be displayed in case of error
+     */
+    public static void getImagesFromGallery(
+            @NonNull Fragment fragment, int requestCode, @StringRes int errorResId) {
+        Intent i = new Intent(Intent.ACTION_GET_CONTENT);
+        i.setType("image/*");
+        i.addCategory(Intent.CATEGORY_OPENABLE);
+        // Ignored before Jelly Bean MR2, which return a single image
+        i.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        i.putExtra(Intent.EXTRA_LOCAL_ONLY, true);
+
+        // Ensure that there's a gallery app to handle the intent
+        if (i.resolveActivity(ContextUtils.getAppContext().getPackageManager()) != null) {
+            fragment.startActivityForResult(i, requestCode);
+        } else {
+            ToastUtils.show(errorResId);
+        }
+    }
+
+    /**
+     * Returns the {@link Uri}s of the images selected with
+     * {@link #getImagesFromGallery(Fragment, int, int)}. Galleries that don't support multiple
+     * selection return a single image.
+     *
+     * @param data data of the activity result
+     * @return the selected images, empty if there's none or any of them has no Uri, so a
+     * selection is never returned partially
+     */
+    @NonNull
+    public static List<Uri> getImageUris(@NonNull Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        ClipData clipData = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? data.getClipData() : null;
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                Uri uri = clipData.getItemAt(i).getUri();
+                if (uri == null) return new ArrayList<>();
+                uris.add(uri);
+            }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        }
+        return uris;
+    }
+
     /**
      * Adds a given picture to the device images gallery.
      *
@@ -138,7 +213,7 @@ public class ImageUtils {
      * @param maxHeight max height of the target image
      * @param maxWidth  max width of the target image
      * @return byte array with the formatted information of the Bitmap, if the image exceeded
-     * boundaries, it's re scaled.
+     * boundaries, it's re scaled. The re scaled bitmap is given back to the {@link BitmapPool}.
      */
     public static byte[] getImageAsByteArray(
             Bitmap bitmap,
@@ -147,11 +222,8 @@ public class ImageUtils {
             int maxWidth,
             int maxHeight) {
 
-        Bitmap targetBitmap = fit(bitmap, maxWidth, maxHeight);
-
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        targetBitmap.compress(format, sanitizeQuality(quality), bytes);
-
+        compressImage(bitmap, format, quality, maxWidth, maxHeight, bytes);
         return bytes.toByteArray();
     }
 
@@ -164,8 +236,9 @@ public class ImageUtils {
      * @param maxWidth     max width of the target image
      * @param maxHeight    max height of the target image
      * @return byte array with the formatted information of the image file, if the image exceeded
-     * boundaries, it's re scaled.
+     * boundaries, it's re scaled. Null if the image can't be read or decoded.
      */
+    @Nullable
     public static byte[] getImageAsByteArray(
             @NonNull Uri imageFileUri,
             @NonNull Bitmap.CompressFormat format,
@@ -173,8 +246,8 @@ public class ImageUtils {
             int maxWidth,
             int maxHeight) {
 
-        return getImageAsByteArray(
-                BitmapFactory.decodeFile(FileUtils.getRealPathFromUri(imageFileUri)),
+        return getImageAsByteArrayFromUri(
+                imageFileUri,
                 format,
                 quality,
                 maxWidth,
@@ -190,8 +263,9 @@ public class ImageUtils {
      * @param maxWidth  max width of the target image
      * @param maxHeight max height of the target image
      * @return byte array with the formatted information of the image file, if the image exceeded
-     * boundaries, it's re scaled.
+     * boundaries, it's re scaled. Null if the image can't be read or decoded.
      */
+    @Nullable
     public static byte[] getImageAsByteArray(
             @NonNull File file,
             @NonNull Bitmap.CompressFormat format,
@@ -199,21 +273,692 @@ public class ImageUtils {
             int maxWidth,
             int maxHeight) {
 
-        return getImageAsByteArray(
-                BitmapFactory.decodeFile(file.getPath()),
+        return getImageAsByteArrayFromUri(
+                Uri.fromFile(file),
                 format,
                 quality,
                 maxWidth,
                 maxHeight);
     }
 
+    /**
+     * Decodes the image subsampled, rotated and fitted to the boundaries, and compresses it. The
+     * decoded bitmap is given back to the {@link BitmapPool}, since nobody else references it.
+     *
+     * @return the compressed image, or null if it can't be read or decoded
+     */
+    @Nullable
+    private static byte[] getImageAsByteArrayFromUri(
+            Uri uri,
+            Bitmap.CompressFormat format,
+            int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        Bitmap decoded = decodeOrientedBitmap(uri, maxWidth, maxHeight);
+        if (decoded == null) return null;
+        try {
+            return getImageAsByteArray(decoded, format, quality, maxWidth, maxHeight);
+        } finally {
+            BitmapPool.getInstance().put(decoded);
+        }
+    }
+
+    /**
+     * Get {@link byte[]} representation from a {@link Bitmap}, with boundaries, compressed to the
+     * highest quality that fits the given size. If it doesn't fit even at a low quality, the image
+     * is downscaled too.
+     * <p>
+     * Several qualities are tried in parallel, one per CPU core, so this is expensive: don't call
+     * it from the main thread.
+     *
+     * @param bitmap    target Bitmap
+     * @param format    image compress format. PNG ignores the quality, so it's only downscaled.
+     * @param maxBytes  max size of the compressed image
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @return byte array with the formatted information of the Bitmap, or null if it can't fit the
+     * size
+     */
+    @Nullable
+    public static byte[] getImageAsByteArrayWithMaxSize(
+            @NonNull Bitmap bitmap,
+            @NonNull Bitmap.CompressFormat format,
+            long maxBytes,
+            int maxWidth,
+            int maxHeight) {
+
+        Bitmap targetBitmap = fit(bitmap, maxWidth, maxHeight);
+        try {
+            return CompressionSearch.compress(targetBitmap, format, maxBytes);
+        } finally {
+            if (targetBitmap != bitmap) BitmapPool.getInstance().put(targetBitmap);
+        }
+    }
+
+    /**
+     * Get {@link byte[]} from an image {@link File}, compressed to the highest quality that fits
+     * the given size. The image is decoded once, subsampled to the boundaries.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param maxBytes  max size of the compressed image
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @return byte array with the formatted information of the image file, or null if it can't be
+     * decoded or fit the size
+     * @see #getImageAsByteArrayWithMaxSize(Bitmap, Bitmap.CompressFormat, long, int, int)
+     */
+    @Nullable
+    public static byte[] getImageAsByteArrayWithMaxSize(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            long maxBytes,
+            int maxWidth,
+            int maxHeight) {
+
+        Bitmap decoded = decodeOrientedBitmap(file.getPath(), maxWidth, maxHeight);
+        if (decoded == null) return null;
+        try {
+            return getImageAsByteArrayWithMaxSize(decoded, format, maxBytes, maxWidth, maxHeight);
+        } finally {
+            BitmapPool.getInstance().put(decoded);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #getImageAsByteArray(File, Bitmap.CompressFormat, int, int,
+     * int)}, processed by the {@link ImagePipeline}. Use it from the main thread, like in
+     * <i>GetImageFragment.OnImageReturnCallback</i>.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @param callback  callback for the result, with the bytes in {@link ImageResult#getBytes()}
+     * @return a handle to cancel the job
+     */
+    @NonNull
+    public static ImagePipeline.ImageJob getImageAsByteArrayAsync(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight,
+            @NonNull ImageCallback callback) {
+
+        return ImagePipeline.getInstance().process(new ImageRequest.Builder(file)
+                .setMaxSize(maxWidth, maxHeight)
+                .setCompression(format, quality)
+                .build(), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #getImageAsByteArray(Uri, Bitmap.CompressFormat, int, int,
+     * int)}, processed by the {@link ImagePipeline}.
+     *
+     * @param imageFileUri target image file URI
+     * @param format       image compress format
+     * @param quality      compress quality, between 0 and 100
+     * @param maxWidth     max width of the target image
+     * @param maxHeight    max height of the target image
+     * @param callback     callback for the result, with the bytes in
+     *                     {@link ImageResult#getBytes()}
+     * @return a handle to cancel the job
+     */
+    @NonNull
+    public static ImagePipeline.ImageJob getImageAsByteArrayAsync(
+            @NonNull Uri imageFileUri,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight,
+            @NonNull ImageCallback callback) {
+
+        return ImagePipeline.getInstance().process(new ImageRequest.Builder(imageFileUri)
+                .setMaxSize(maxWidth, maxHeight)
+                .setCompression(format, quality)
+                .build(), callback);
+    }
+
+    /**
+     * Batch version of {@link #getImageAsByteArrayAsync(Uri, Bitmap.CompressFormat, int, int,
+     * int, ImageCallback)}, for the images selected with
+     * {@link #getImagesFromGallery(Fragment, int, int)}. The images are processed in parallel
+     * without exceeding the memory budget of the {@link ImagePipeline}, and the callback is
+     * notified as each one finishes. Use {@link Uri#fromFile(File)} for image files.
+     *
+     * @param imageUris target image URIs
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target images
+     * @param maxHeight max height of the target images
+     * @param callback  callback for the progress and the results, with the bytes in
+     *                  {@link ImageResult#getBytes()}
+     * @return the batch, to cancel it
+     */
+    @NonNull
+    public static ImageBatch getImagesAsByteArrayAsync(
+            @NonNull List<Uri> imageUris,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight,
+            @NonNull ImageBatchCallback callback) {
+
+        List<ImageRequest> requests = new ArrayList<>(imageUris.size());
+        for (Uri uri : imageUris) {
+            requests.add(new ImageRequest.Builder(uri)
+                    .setMaxSize(maxWidth, maxHeight)
+                    .setCompression(format, quality)
+                    .build());
+        }
+        return ImageBatch.process(requests, callback);
+    }
+
+    /**
+     * Compresses a {@link Bitmap}, with boundaries, straight into a stream, so the encoded image
+     * is never held in memory.
+     *
+     * @param bitmap    target Bitmap
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @param out       stream to write the compressed image to. It's not closed.
+     * @return <b>true</b> if the image was compressed. If it exceeded boundaries, it's re scaled
+     * first, and the re scaled bitmap is given back to the {@link BitmapPool}.
+     */
+    public static boolean compressImage(
+            @NonNull Bitmap bitmap,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight,
+            @NonNull OutputStream out) {
+
+        Bitmap targetBitmap = fit(bitmap, maxWidth, maxHeight);
+        try {
+            return targetBitmap.compress(format, sanitizeQuality(quality), out);
+        } finally {
+            if (targetBitmap != bitmap) BitmapPool.getInstance().put(targetBitmap);
+        }
+    }
+
+    /**
+     * Decodes an image {@link File} subsampled to the boundaries and compresses it straight into
+     * a stream, so neither the full resolution image nor the encoded one are held in memory.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @param out       stream to write the compressed image to. It's not closed.
+     * @throws IOException if the image can't be decoded or compressed
+     */
+    public static void compressImage(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight,
+            @NonNull OutputStream out) throws IOException {
+
+        Bitmap decoded = decodeOrientedBitmap(file.getPath(), maxWidth, maxHeight);
+        if (decoded == null) throw new IOException("Can't decode " + file);
+        try {
+            if (!compressImage(decoded, format, quality, maxWidth, maxHeight, out)) {
+                throw new IOException("Can't compress " + file);
+            }
+        } finally {
+            BitmapPool.getInstance().put(decoded);
+        }
+    }
+
+    /**
+     * Decodes an image {@link File} subsampled to the boundaries and compresses it into a new
+     * file in the app's cache directory, ready to be uploaded. Delete it once it's not needed.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @return the compressed file
+     * @throws IOException if the image can't be decoded, compressed or written
+     */
+    @NonNull
+    public static File compressImageToCacheFile(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) throws IOException {
+
+        File output = File.createTempFile("image", getExtension(format),
+                ContextUtils.getAppContext().getCacheDir());
+        boolean compressed = false;
+        OutputStream out = new FileOutputStream(output);
+        try {
+            compressImage(file, format, quality, maxWidth, maxHeight, out);
+            compressed = true;
+        } finally {
+            out.close();
+            if (!compressed) output.delete();
+        }
+        return output;
+    }
+
+    /**
+     * Returns a {@link RequestBody} that decodes an image {@link File} subsampled to the
+     * boundaries and compresses it straight into the request as it's sent, so the encoded image
+     * is never held in memory. Its length is unknown, so it's sent chunked.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @return a body to send the image
+     */
+    @NonNull
+    public static RequestBody getImageAsRequestBody(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        return new ImageRequestBody(file, null, format, quality, maxWidth, maxHeight);
+    }
+
+    /**
+     * Returns a {@link RequestBody} that compresses a {@link Bitmap}, with boundaries, straight
+     * into the request as it's sent. The bitmap must not be recycled until the request is done.
+     *
+     * @param bitmap    target Bitmap
+     * @param format    image compress format
+     * @param quality   compress quality, between 0 and 100
+     * @param maxWidth  max width of the target image
+     * @param maxHeight max height of the target image
+     * @return a body to send the image
+     */
+    @NonNull
+    public static RequestBody getImageAsRequestBody(
+            @NonNull Bitmap bitmap,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        return new ImageRequestBody(null, bitmap, format, quality, maxWidth, maxHeight);
+    }
+
+    /**
+     * Returns the MIME type of a compress format.
+     *
+     * @param format image compress format
+     * @return the MIME type, like <i>image/jpeg</i>
+     */
+    @NonNull
+    public static String getMimeType(@NonNull Bitmap.CompressFormat format) {
+        if (format == Bitmap.CompressFormat.PNG) return "image/png";
+        if (format == Bitmap.CompressFormat.JPEG) return "image/jpeg";
+        return "image/webp";
+    }
+
+    @NonNull
+    private static String getExtension(@NonNull Bitmap.CompressFormat format) {
+        if (format == Bitmap.CompressFormat.PNG) return "." + PNG;
+        if (format == Bitmap.CompressFormat.JPEG) return "." + JPG;
+        return ".webp";
+    }
+
+    /**
+     * Get {@link byte[]} representation from a {@link Bitmap}, adapting the quality and boundaries
+     * to the network link measured by the {@link BandwidthEstimator}. The given values are used
+     * on good links, and reduced on slow ones so the upload is smaller.
+     *
+     * @param bitmap    target Bitmap
+     * @param format    image compress format
+     * @param quality   compress quality on good links, between 0 and 100
+     * @param maxHeight max height of the target image on good links
+     * @param maxWidth  max width of the target image on good links
+     * @return byte array with the formatted information of the Bitmap, if the image exceeded
+     * the adapted boundaries, it's re scaled.
+     */
+    public static byte[] getAdaptiveImageAsByteArray(
+            Bitmap bitmap,
+            Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        BandwidthEstimator estimator = BandwidthEstimator.getInstance();
+        return getImageAsByteArray(
+                bitmap,
+                format,
+                estimator.adaptImageQuality(quality),
+                estimator.adaptImageDimension(maxWidth),
+                estimator.adaptImageDimension(maxHeight));
+    }
+
+    /**
+     * Get {@link byte[]} from an image file, represented by its {@link Uri}, adapting the quality
+     * and boundaries to the network link.
+     *
+     * @param imageFileUri target image file URI
+     * @param format       image compress format
+     * @param quality      compress quality on good links, between 0 and 100
+     * @param maxWidth     max width of the target image on good links
+     * @param maxHeight    max height of the target image on good links
+     * @return byte array with the formatted information of the image file, if the image exceeded
+     * the adapted boundaries, it's re scaled. Null if the image can't be read or decoded.
+     * @see #getAdaptiveImageAsByteArray(Bitmap, Bitmap.CompressFormat, int, int, int)
+     */
+    @Nullable
+    public static byte[] getAdaptiveImageAsByteArray(
+            @NonNull Uri imageFileUri,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        BandwidthEstimator estimator = BandwidthEstimator.getInstance();
+        return getImageAsByteArrayFromUri(
+                imageFileUri,
+                format,
+                estimator.adaptImageQuality(quality),
+                estimator.adaptImageDimension(maxWidth),
+                estimator.adaptImageDimension(maxHeight));
+    }
+
+    /**
+     * Get {@link byte[]} from an image {@link File}, adapting the quality and boundaries to the
+     * network link.
+     *
+     * @param file      target image file
+     * @param format    image compress format
+     * @param quality   compress quality on good links, between 0 and 100
+     * @param maxWidth  max width of the target image on good links
+     * @param maxHeight max height of the target image on good links
+     * @return byte array with the formatted information of the image file, if the image exceeded
+     * the adapted boundaries, it's re scaled. Null if the image can't be read or decoded.
+     * @see #getAdaptiveImageAsByteArray(Bitmap, Bitmap.CompressFormat, int, int, int)
+     */
+    @Nullable
+    public static byte[] getAdaptiveImageAsByteArray(
+            @NonNull File file,
+            @NonNull Bitmap.CompressFormat format,
+            @IntRange(from = 0, to = 100) int quality,
+            int maxWidth,
+            int maxHeight) {
+
+        BandwidthEstimator estimator = BandwidthEstimator.getInstance();
+        return getImageAsByteArrayFromUri(
+                Uri.fromFile(file),
+                format,
+                estimator.adaptImageQuality(quality),
+                estimator.adaptImageDimension(maxWidth),
+                estimator.adaptImageDimension(maxHeight));
+    }
+
+    /**
+     * Decodes an image file subsampled by the biggest power of two that keeps it, at least, as big
+     * as it would be after {@link #fit(Bitmap, int, int)}. The bounds are read first, so the full
+     * resolution image is never held in memory. The image is decoded into a bitmap of the
+     * {@link BitmapPool} when there's a suitable one.
+     *
+     * @param path      path of the image file
+     * @param maxWidth  max width the image will be fitted to
+     * @param maxHeight max height the image will be fitted to
+     * @return the decoded {@link Bitmap}, or null if it can't be decoded
+     */
+    @Nullable
+    public static Bitmap decodeSampledBitmap(@NonNull String path, int maxWidth, int maxHeight) {
+        return decodeSampledBitmap(Uri.fromFile(new File(path)), maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes an image, represented by its {@link Uri}, subsampled by the biggest power of two
+     * that keeps it, at least, as big as it would be after {@link #fit(Bitmap, int, int)}. The
+     * content is read through {@link UriUtils}, so it works with scoped storage, and the bounds
+     * come from the {@link UriMetadata} cache when the image was seen recently.
+     *
+     * @param uri       content or file Uri of the image
+     * @param maxWidth  max width the image will be fitted to
+     * @param maxHeight max height the image will be fitted to
+     * @return the decoded {@link Bitmap}, or null if it can't be read or decoded
+     */
+    @Nullable
+    public static Bitmap decodeSampledBitmap(@NonNull Uri uri, int maxWidth, int maxHeight) {
+        ParcelFileDescriptor descriptor = null;
+        try {
+            UriMetadata metadata = UriUtils.getMetadata(uri);
+            descriptor = UriUtils.openFileDescriptor(uri);
+            return decodeSampledBitmap(descriptor.getFileDescriptor(),
+                    metadata.getWidth(), metadata.getHeight(), maxWidth, maxHeight);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes an image of known bounds from a file descriptor, which BitmapFactory leaves at the
+     * same position, so it can be decoded again if the reusable bitmap doesn't fit.
+     */
+    @Nullable
+    private static Bitmap decodeSampledBitmap(@NonNull FileDescriptor descriptor,
+                                              int width, int height, int maxWidth, int maxHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(width, height, maxWidth, maxHeight);
+        options.inMutable = true;
+
+        // Before KitKat, a bitmap can only be reused to decode images that are not subsampled
+        Bitmap reusable = null;
+        if (width > 0 && height > 0 && (options.inSampleSize == 1
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)) {
+            int sampleSize = options.inSampleSize;
+            reusable = BitmapPool.getInstance().getForDecoding(
+                    (width + sampleSize - 1) / sampleSize,
+                    (height + sampleSize - 1) / sampleSize,
+                    options.inPreferredConfig);
+        }
+        if (reusable == null) return BitmapFactory.decodeFileDescriptor(descriptor, null, options);
+
+        options.inBitmap = reusable;
+        try {
+            Bitmap decoded = BitmapFactory.decodeFileDescriptor(descriptor, null, options);
+            if (decoded == null) BitmapPool.getInstance().put(reusable);
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            // The bitmap can't be reused for this image
+            BitmapPool.getInstance().put(reusable);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFileDescriptor(descriptor, null, options);
+        }
+    }
+
+    /**
+     * Decodes an image file upright and fitted to the boundaries, applying the rotation and
+     * mirroring of its EXIF orientation, like the pictures from
+     * {@link #getImageFromCamera(Fragment, int, String, String, int)}.
+     *
+     * @param path      path of the image file
+     * @param maxWidth  max width of the upright image
+     * @param maxHeight max height of the upright image
+     * @return the decoded {@link Bitmap}, or null if it can't be decoded
+     * @see #decodeOrientedBitmap(Uri, int, int)
+     */
+    @Nullable
+    public static Bitmap decodeOrientedBitmap(@NonNull String path, int maxWidth, int maxHeight) {
+        return decodeOrientedBitmap(Uri.fromFile(new File(path)), maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes an image, represented by its {@link Uri}, upright and fitted to the boundaries,
+     * applying the rotation and mirroring of its EXIF orientation. The image is subsampled while
+     * decoding, and then rotated and scaled in a single pass by
+     * {@link #fit(Bitmap, int, int, int)}, so there's at most one intermediate bitmap, which is
+     * given back to the {@link BitmapPool}.
+     *
+     * @param uri       content or file Uri of the image
+     * @param maxWidth  max width of the upright image
+     * @param maxHeight max height of the upright image
+     * @return the decoded {@link Bitmap}, or null if it can't be read or decoded
+     */
+    @Nullable
+    public static Bitmap decodeOrientedBitmap(@NonNull Uri uri, int maxWidth, int maxHeight) {
+        int orientation = getExifOrientation(uri);
+
+        // Subsampling happens before rotating, so the boundaries are rotated instead
+        Bitmap decoded = isTransposed(orientation)
+                ? decodeSampledBitmap(uri, maxHeight, maxWidth)
+                : decodeSampledBitmap(uri, maxWidth, maxHeight);
+        if (decoded == null) return null;
+
+        Bitmap oriented = fit(decoded, maxWidth, maxHeight, orientation);
+        if (oriented != decoded) BitmapPool.getInstance().put(decoded);
+        return oriented;
+    }
+
+    /**
+     * Reads the EXIF orientation of an image file. Only the metadata is parsed, the pixels are
+     * never decoded.
+     *
+     * @param path path of the image file
+     * @return one of the {@link ExifInterface} ORIENTATION constants,
+     * {@link ExifInterface#ORIENTATION_NORMAL} if the image has no orientation or can't be read
+     */
+    public static int getExifOrientation(@NonNull String path) {
+        return getExifOrientation(Uri.fromFile(new File(path)));
+    }
+
+    /**
+     * Reads the EXIF orientation of an image, represented by its {@link Uri}. Only the metadata
+     * is parsed, the pixels are never decoded.
+     *
+     * @param uri content or file Uri of the image
+     * @return one of the {@link ExifInterface} ORIENTATION constants,
+     * {@link ExifInterface#ORIENTATION_NORMAL} if the image has no orientation or can't be read
+     */
+    public static int getExifOrientation(@NonNull Uri uri) {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(UriUtils.openInputStream(uri));
+            return getExifOrientation(in);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the EXIF orientation of an image from a stream. Only the metadata is read, the pixels
+     * are never decoded.
+     *
+     * @param in stream of the image. It's not closed.
+     * @return one of the {@link ExifInterface} ORIENTATION constants,
+     * {@link ExifInterface#ORIENTATION_NORMAL} if the image has no orientation
+     * @throws IOException if the stream can't be read
+     */
+    public static int getExifOrientation(@NonNull InputStream in) throws IOException {
+        int orientation = new ExifInterface(in).getAttributeInt(
+                ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        return orientation == ExifInterface.ORIENTATION_UNDEFINED
+                ? ExifInterface.ORIENTATION_NORMAL : orientation;
+    }
+
+    /**
+     * Estimates the memory needed to decode an image with
+     * {@link #decodeOrientedBitmap(Uri, int, int)}, reading only its bounds and orientation.
+     *
+     * @return the bytes of the decoded bitmap plus the fitted one, or 0 if the bounds can't be read
+     */
+    static long estimateDecodeBytes(@NonNull Uri uri, int maxWidth, int maxHeight) {
+        UriMetadata metadata;
+        try {
+            metadata = UriUtils.getMetadata(uri);
+        } catch (IOException e) {
+            return 0;
+        }
+        if (metadata.getWidth() <= 0 || metadata.getHeight() <= 0) return 0;
+
+        if (isTransposed(getExifOrientation(uri))) {
+            int swap = maxWidth;
+            maxWidth = maxHeight;
+            maxHeight = swap;
+        }
+
+        int sampleSize = calculateInSampleSize(
+                metadata.getWidth(), metadata.getHeight(), maxWidth, maxHeight);
+        int width = (metadata.getWidth() + sampleSize - 1) / sampleSize;
+        int height = (metadata.getHeight() + sampleSize - 1) / sampleSize;
+        long bytes = (long) width * height * 4;
+        if (maxWidth > 0 && maxHeight > 0 && (width > maxWidth || height > maxHeight)) {
+            bytes += (long) maxWidth * maxHeight * 4;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the biggest power of two an image can be subsampled by while staying, at least, as
+     * big as it would be after {@link #fit(Bitmap, int, int)}.
+     *
+     * @param width     width of the image
+     * @param height    height of the image
+     * @param maxWidth  max width the image will be fitted to
+     * @param maxHeight max height the image will be fitted to
+     * @return the value for {@link BitmapFactory.Options#inSampleSize}, 1 if it can't be reduced
+     */
+    public static int calculateInSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        if (width <= 0 || height <= 0 || maxWidth <= 0 || maxHeight <= 0
+                || (width <= maxWidth && height <= maxHeight)) {
+            return 1;
+        }
+
+        // Same target size as fit()
+        float ratioImage = (float) width / (float) height;
+        int targetWidth = maxWidth;
+        int targetHeight = maxHeight;
+        if (ratioImage > 1) {
+            targetHeight = (int) ((float) targetWidth / ratioImage);
+        } else {
+            targetWidth = (int) ((float) targetHeight * ratioImage);
+        }
+
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth
+                && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
     /**
      * Prevents quality from being outside 0...100 range.
      *
      * @param quality target quality
      * @return if below 0, returns 0, if above 100, return 100, else returns {@code quality} param
      */
-    private static int sanitizeQuality(int quality) {
+    static int sanitizeQuality(int quality) {
         if (quality < 0) {
             return 0;
         } else if (quality > 100) {
@@ -230,8 +975,8 @@ public class ImageUtils {
      * @param image     {@link Bitmap} to scale
      * @param maxWidth  max width it can occupy
      * @param maxHeight max height it can occupy
-     * @return If the re-scaling was necessary, the scaled {@link Bitmap}. Else, it returns the
-     * target one.
+     * @return If the re-scaling was necessary, the scaled {@link Bitmap}, drawn into a bitmap of
+     * the {@link BitmapPool} when there's one of the same size. Else, it returns the target one.
      */
     public static Bitmap fit(@NonNull Bitmap image, int maxWidth, int maxHeight) {
         int width = image.getWidth();
@@ -251,7 +996,122 @@ public class ImageUtils {
             finalWidth = (int) ((float) finalHeight * ratioImage);
         }
 
-        return Bitmap.createScaledBitmap(image, finalWidth, finalHeight, true);
+        Bitmap scaled = obtainBitmap(image, finalWidth, finalHeight);
+        Canvas canvas = new Canvas(scaled);
+        canvas.drawBitmap(image, new Rect(0, 0, width, height),
+                new Rect(0, 0, finalWidth, finalHeight), new Paint(Paint.FILTER_BITMAP_FLAG));
+        return scaled;
+    }
+
+    /**
+     * Rotates or mirrors the image as its EXIF orientation says, and re-sizes it to fit the
+     * boundaries keeping its aspect ratio. Both are done by a single matrix transform, drawing
+     * into one bitmap, instead of creating a bitmap for each step.
+     *
+     * @param image       {@link Bitmap} to orient and scale
+     * @param maxWidth    max width the upright image can occupy
+     * @param maxHeight   max height the upright image can occupy
+     * @param orientation one of the {@link ExifInterface} ORIENTATION constants, see
+     *                    {@link #getExifOrientation(String)}
+     * @return If the image had to be oriented or re-scaled, the upright {@link Bitmap}, drawn into
+     * a bitmap of the {@link BitmapPool} when there's one of the same size. Else, it returns the
+     * target one.
+     */
+    public static Bitmap fit(@NonNull Bitmap image, int maxWidth, int maxHeight, int orientation) {
+        Matrix matrix = getOrientationMatrix(orientation);
+        if (matrix == null) return fit(image, maxWidth, maxHeight);
+
+        boolean transposed = isTransposed(orientation);
+        int width = transposed ? image.getHeight() : image.getWidth();
+        int height = transposed ? image.getWidth() : image.getHeight();
+
+        // Same target size as fit(), for the upright image
+        int finalWidth = width;
+        int finalHeight = height;
+        if (maxWidth > 0 && maxHeight > 0 && (width > maxWidth || height > maxHeight)) {
+            float ratioImage = (float) width / (float) height;
+            finalWidth = maxWidth;
+            finalHeight = maxHeight;
+            if (ratioImage > 1) {
+                finalHeight = (int) ((float) finalWidth / ratioImage);
+            } else {
+                finalWidth = (int) ((float) finalHeight * ratioImage);
+            }
+        }
+
+        // Orienting around the origin leaves the image out of the bitmap, so it's moved back
+        matrix.postScale((float) finalWidth / width, (float) finalHeight / height);
+        RectF bounds = new RectF(0, 0, image.getWidth(), image.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        Bitmap oriented = obtainBitmap(image, finalWidth, finalHeight);
+        Canvas canvas = new Canvas(oriented);
+        canvas.drawBitmap(image, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return oriented;
+    }
+
+    /**
+     * Returns the transform of an EXIF orientation, around the origin.
+     *
+     * @return the matrix, or null if the image is already upright
+     */
+    @Nullable
+    private static Matrix getOrientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                return matrix;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                return matrix;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                return matrix;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                return matrix;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                return matrix;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                return matrix;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                return matrix;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks if an EXIF orientation swaps the width and the height of the image.
+     */
+    private static boolean isTransposed(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+    }
+
+    /**
+     * Returns a bitmap of the given size to draw an image into, from the {@link BitmapPool} when
+     * there's one.
+     */
+    @NonNull
+    private static Bitmap obtainBitmap(@NonNull Bitmap image, int width, int height) {
+        Bitmap.Config config = image.getConfig() != null
+                ? image.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapPool.getInstance().get(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.setDensity(image.getDensity());
+        return bitmap;
     }
 
 }
@@ -0,0 +1,53 @@
+package com.base.core.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A lock for each key in use, so threads working on the same key, like downloading the same
+ * image, wait for each other while the rest run in parallel. Locks are removed once nobody uses
+ * them.
+ * <p>
+ * Usage:
+ * Object lock = locks.acquire(key);
+ * try {
+ * synchronized (lock) { ... }
+ * } finally {
+ * locks.release(key, lock);
+ * }
+ */
+final class KeyLocks {
+
+    // Guarded by itself
+    private final Map<String, Lock> mLocks = new HashMap<>();
+
+    /**
+     * @return the lock of the key, to synchronize on and then give to
+     * {@link #release(String, Object)}
+     */
+    @NonNull
+    Object acquire(@NonNull String key) {
+        synchronized (mLocks) {
+            Lock lock = mLocks.get(key);
+            if (lock == null) {
+                lock = new Lock();
+                mLocks.put(key, lock);
+            }
+            lock.mUsers++;
+            return lock;
+        }
+    }
+
+    void release(@NonNull String key, @NonNull Object lock) {
+        synchronized (mLocks) {
+            if (--((Lock) lock).mUsers == 0) mLocks.remove(key);
+        }
+    }
+
+    private static final class Lock {
+
+        private int mUsers;
+    }
+}
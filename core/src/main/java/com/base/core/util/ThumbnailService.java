@@ -0,0 +1,461 @@
+package com.base.core.util;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okio.Buffer;
+
+/**
+ * Small previews of local images, like the ones picked from the gallery or taken with the camera,
+ * so screens showing them don't decode the full image each time.
+ * <p>
+ * A thumbnail is taken from the MediaStore when the image is in it, since the system usually has
+ * it already, or else decoded subsampled from the image. Either way it's upright and fitted to the
+ * requested size. Thumbnails are kept in two cache tiers:
+ * <li>
+ * <ul>Memory: decoded thumbnails, bounded in bytes.</ul>
+ * <ul>Disk: the encoded thumbnails, bounded in bytes, kept across restarts.</ul>
+ * </li>
+ * Both are keyed by the Uri, the size and the size and modification time of the image, so a
+ * thumbnail is generated again when the image changes. Outdated thumbnails are deleted from disk
+ * as the least recently used ones.
+ * <p>
+ * Loads are done in background threads and delivered on the main thread. The last known size and
+ * modification time of each image are remembered, so a thumbnail in memory is served at once, on
+ * the main thread. Views are then checked again in background, and updated only if the image
+ * changed.
+ */
+public class ThumbnailService {
+
+    private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+    private static final int DEFAULT_MEMORY_FRACTION = 16;
+    private static final long DEFAULT_DISK_CACHE_SIZE = 20 * 1024 * 1024;
+    private static final int DEFAULT_THREADS = 2;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+    private static final int QUALITY = 85;
+
+    private static final int MAX_KNOWN_VERSIONS = 256;
+
+    // Smaller side of the MINI_KIND thumbnails of the MediaStore
+    private static final int MEDIA_STORE_THUMBNAIL_SIZE = 384;
+
+    private static final String[] VERSION_COLUMNS =
+            {OpenableColumns.SIZE, MediaStore.MediaColumns.DATE_MODIFIED};
+
+    private static ThumbnailService sInstance; // Singleton
+
+    private final BitmapLruCache mMemoryCache;
+    private final ImageDiskCache mDiskCache;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final KeyLocks mLocks = new KeyLocks();
+
+    // Guarded by itself
+    private final Map<Uri, String> mVersions =
+            new LinkedHashMap<Uri, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Uri, String> eldest) {
+                    return size() > MAX_KNOWN_VERSIONS;
+                }
+            };
+
+    // Accessed only from the main thread
+    private final Map<ImageView, Load> mViewLoads = new WeakHashMap<>();
+
+    /**
+     * Returns the shared service, which keeps up to a sixteenth of the memory available to the
+     * app and 20 MB in the cache directory.
+     *
+     * @return the shared service
+     */
+    public synchronized static ThumbnailService getInstance() {
+        if (sInstance == null) {
+            sInstance = new ThumbnailService(
+                    new File(ContextUtils.getAppContext().getCacheDir(), DISK_CACHE_DIRECTORY),
+                    Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION,
+                    DEFAULT_DISK_CACHE_SIZE,
+                    DEFAULT_THREADS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param diskDirectory  directory of the disk cache, used only by this service
+     * @param maxMemoryBytes max bytes of the decoded thumbnails kept in memory
+     * @param maxDiskBytes   max bytes of the encoded thumbnails kept on disk
+     * @param threads        max amount of thumbnails loaded at the same time
+     */
+    public ThumbnailService(@NonNull File diskDirectory, long maxMemoryBytes, long maxDiskBytes,
+                            int threads) {
+        mMemoryCache = new BitmapLruCache(maxMemoryBytes);
+        mDiskCache = new ImageDiskCache(diskDirectory, maxDiskBytes);
+        final AtomicInteger count = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_S,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ThumbnailService-" + count.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the thumbnail of an image into a view. Loading another thumbnail into the same view,
+     * like when a list recycles it, replaces this one.
+     *
+     * @param uri  content or file Uri of the image, see {@link Uri#fromFile(File)}
+     * @param size max width and height of the thumbnail, in pixels
+     * @param view view to show the thumbnail in. If the thumbnail is in memory it's shown at
+     *             once, else the view is cleared until the thumbnail is loaded.
+     */
+    public void load(@NonNull Uri uri, int size, @NonNull ImageView view) {
+        Load previous = mViewLoads.get(view);
+        if (previous != null) previous.mCancelled = true;
+
+        Bitmap cached = getCachedThumbnail(uri, size);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+        } else {
+            view.setImageDrawable(null);
+        }
+        Load load = new Load(uri, size, view, null, cached);
+        mViewLoads.put(view, load);
+        mExecutor.execute(load);
+    }
+
+    /**
+     * Loads the thumbnail of an image, for targets that are not an {@link ImageView}. If the
+     * thumbnail is in memory the callback is called at once, without checking if the image
+     * changed, see {@link #invalidate(Uri)}.
+     *
+     * @param uri      content or file Uri of the image, see {@link Uri#fromFile(File)}
+     * @param size     max width and height of the thumbnail, in pixels
+     * @param callback callback for the result, with the thumbnail in
+     *                 {@link ImageResult#getBitmap()}, called on the main thread. The bitmap is
+     *                 shared with the memory cache, so it must not be recycled nor modified.
+     */
+    public void load(@NonNull Uri uri, int size, @NonNull ImageCallback callback) {
+        Bitmap cached = getCachedThumbnail(uri, size);
+        if (cached != null) {
+            callback.onSuccess(new ImageResult(
+                    cached, null, null, cached.getWidth(), cached.getHeight()));
+            return;
+        }
+        mExecutor.execute(new Load(uri, size, null, callback, null));
+    }
+
+    /**
+     * Forgets the last known size and modification time of an image, so its next load checks
+     * them again. Call it when the image is known to have changed, like after editing it.
+     *
+     * @param uri content or file Uri of the image
+     */
+    public void invalidate(@NonNull Uri uri) {
+        synchronized (mVersions) {
+            mVersions.remove(uri);
+        }
+    }
+
+    /**
+     * Returns the thumbnail of an image, from the caches if it's there and the image didn't
+     * change, or else generating and storing it. It does I/O, don't call it from the main thread.
+     *
+     * @param uri  content or file Uri of the image, see {@link Uri#fromFile(File)}
+     * @param size max width and height of the thumbnail, in pixels
+     * @return the thumbnail, shared with the memory cache, so it must not be recycled nor modified
+     * @throws IOException if the image can't be read or decoded
+     */
+    @NonNull
+    public Bitmap getThumbnail(@NonNull Uri uri, int size) throws IOException {
+        String key = getKey(uri, size, getVersion(uri));
+        Bitmap thumbnail = mMemoryCache.get(key);
+        if (thumbnail != null) return thumbnail;
+
+        Object lock = mLocks.acquire(key);
+        try {
+            synchronized (lock) {
+                thumbnail = mMemoryCache.get(key);
+                if (thumbnail != null) return thumbnail;
+
+                File file = mDiskCache.get(key);
+                if (file != null) thumbnail = BitmapFactory.decodeFile(file.getPath());
+                if (thumbnail == null) {
+                    // The image is new or changed, so its cached bounds may be outdated too
+                    UriUtils.invalidate(uri);
+                    thumbnail = generate(uri, size);
+                    store(key, thumbnail);
+                }
+                mMemoryCache.put(key, thumbnail);
+                return thumbnail;
+            }
+        } finally {
+            mLocks.release(key, lock);
+        }
+    }
+
+    /**
+     * Drops every thumbnail kept in memory. Call it when the system is low on memory.
+     */
+    public void clearMemory() {
+        mMemoryCache.trimToSize(0);
+    }
+
+    /**
+     * Deletes every thumbnail stored on disk. It does I/O, don't call it from the main thread.
+     */
+    public void clearDisk() {
+        mDiskCache.clear();
+    }
+
+    /**
+     * Returns the thumbnail in memory for the last known version of the image, without any I/O.
+     */
+    @Nullable
+    private Bitmap getCachedThumbnail(@NonNull Uri uri, int size) {
+        String version;
+        synchronized (mVersions) {
+            version = mVersions.get(uri);
+        }
+        return version == null ? null : mMemoryCache.get(getKey(uri, size, version));
+    }
+
+    @NonNull
+    private static String getKey(@NonNull Uri uri, int size, @NonNull String version) {
+        return uri + "|" + size + "|" + version;
+    }
+
+    @NonNull
+    private static Bitmap generate(@NonNull Uri uri, int size) throws IOException {
+        Bitmap thumbnail = loadSystemThumbnail(uri, size);
+        if (thumbnail == null) thumbnail = ImageUtils.decodeOrientedBitmap(uri, size, size);
+        if (thumbnail == null) throw new IOException("Can't decode " + uri);
+        return thumbnail;
+    }
+
+    /**
+     * Returns the thumbnail the system keeps of an image of the MediaStore, upright and fitted.
+     *
+     * @return the thumbnail, or null if the system has none
+     */
+    @Nullable
+    private static Bitmap loadSystemThumbnail(@NonNull Uri uri, int size) {
+        if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) return null;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Bitmap thumbnail = loadThumbnail(uri, size);
+                Bitmap fitted = ImageUtils.fit(thumbnail, size, size);
+                if (fitted != thumbnail) BitmapPool.getInstance().put(thumbnail);
+                return fitted;
+            }
+
+            if (!MediaStore.AUTHORITY.equals(uri.getAuthority())
+                    || size > MEDIA_STORE_THUMBNAIL_SIZE) {
+                return null;
+            }
+            // These are not rotated, unlike the ones of loadThumbnail()
+            Bitmap thumbnail = getMediaStoreThumbnail(uri);
+            if (thumbnail == null) return null;
+            Bitmap oriented = ImageUtils.fit(thumbnail, size, size,
+                    ImageUtils.getExifOrientation(uri));
+            if (oriented != thumbnail) BitmapPool.getInstance().put(thumbnail);
+            return oriented;
+        } catch (IOException | RuntimeException e) {
+            // The thumbnail is decoded from the image instead
+            return null;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    @NonNull
+    private static Bitmap loadThumbnail(@NonNull Uri uri, int size) throws IOException {
+        return getContentResolver().loadThumbnail(uri, new Size(size, size), null);
+    }
+
+    /**
+     * Returns the MINI_KIND thumbnail of an image of the MediaStore, as stored.
+     */
+    @SuppressWarnings("deprecation")
+    @Nullable
+    private static Bitmap getMediaStoreThumbnail(@NonNull Uri uri) {
+        return MediaStore.Images.Thumbnails.getThumbnail(getContentResolver(),
+                ContentUris.parseId(uri), MediaStore.Images.Thumbnails.MINI_KIND, null);
+    }
+
+    private void store(@NonNull String key, @NonNull Bitmap thumbnail) {
+        Buffer buffer = new Buffer();
+        thumbnail.compress(thumbnail.hasAlpha() ? Bitmap.CompressFormat.PNG
+                : Bitmap.CompressFormat.JPEG, QUALITY, buffer.outputStream());
+        try {
+            mDiskCache.put(key, buffer);
+        } catch (IOException e) {
+            // It's generated again next time
+        }
+    }
+
+    /**
+     * Returns the size and modification time of an image, which change when it's edited, and
+     * remembers them as its last known version.
+     */
+    @NonNull
+    private String getVersion(@NonNull Uri uri) throws IOException {
+        String version = readVersion(uri);
+        synchronized (mVersions) {
+            mVersions.put(uri, version);
+        }
+        return version;
+    }
+
+    /**
+     * Reads the size and modification time of an image. They come from a stat of files and from
+     * the columns of content Uris, like the ones of the MediaStore, or the size of their content
+     * if the provider has no such columns.
+     */
+    @NonNull
+    private static String readVersion(@NonNull Uri uri) throws IOException {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            File file = new File(uri.getPath());
+            if (!file.exists()) throw new FileNotFoundException(uri.toString());
+            return file.length() + ":" + file.lastModified();
+        }
+
+        long size = -1;
+        long lastModified = -1;
+        Cursor cursor;
+        try {
+            cursor = getContentResolver().query(uri, VERSION_COLUMNS, null, null, null);
+        } catch (IllegalArgumentException e) {
+            // The provider doesn't know some of the columns
+            cursor = null;
+        }
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    int modifiedIndex =
+                            cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+                    if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                        size = cursor.getLong(sizeIndex);
+                    }
+                    if (modifiedIndex >= 0 && !cursor.isNull(modifiedIndex)) {
+                        lastModified = cursor.getLong(modifiedIndex);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        if (size < 0) {
+            ParcelFileDescriptor descriptor = UriUtils.openFileDescriptor(uri);
+            try {
+                size = descriptor.getStatSize();
+            } finally {
+                descriptor.close();
+            }
+        }
+        return size + ":" + lastModified;
+    }
+
+    @NonNull
+    private static ContentResolver getContentResolver() {
+        return ContextUtils.getAppContext().getContentResolver();
+    }
+
+    /**
+     * Load of a thumbnail into a view or a callback. A load into a view is skipped once another
+     * one replaced it.
+     */
+    private final class Load implements Runnable {
+
+        private final Uri mUri;
+        private final int mSize;
+        private final ImageView mView;
+        private final ImageCallback mCallback;
+        private final Bitmap mShown;
+        private volatile boolean mCancelled;
+
+        /**
+         * @param shown thumbnail already shown in the view from memory, only replaced if the
+         *              image changed
+         */
+        private Load(@NonNull Uri uri, int size, @Nullable ImageView view,
+                     @Nullable ImageCallback callback, @Nullable Bitmap shown) {
+            mUri = uri;
+            mSize = size;
+            mView = view;
+            mCallback = callback;
+            mShown = shown;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) return;
+            Bitmap thumbnail = null;
+            Exception error = null;
+            try {
+                thumbnail = getThumbnail(mUri, mSize);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+
+            final Bitmap finalThumbnail = thumbnail;
+            final Exception finalError = error;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(finalThumbnail, finalError);
+                }
+            });
+        }
+
+        private void deliver(@Nullable Bitmap thumbnail, @Nullable Exception error) {
+            if (mView != null) {
+                if (mCancelled || mViewLoads.get(mView) != this) return;
+                mViewLoads.remove(mView);
+                if (thumbnail != null && thumbnail != mShown) mView.setImageBitmap(thumbnail);
+            } else if (mCallback != null) {
+                if (thumbnail != null) {
+                    mCallback.onSuccess(new ImageResult(thumbnail, null, null,
+                            thumbnail.getWidth(), thumbnail.getHeight()));
+                } else {
+                    mCallback.onFailure(error);
+                }
+            }
+        }
+    }
+}
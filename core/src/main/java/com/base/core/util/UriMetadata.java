@@ -0,0 +1,59 @@
+package com.base.core.util;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Size, MIME type and, for images, dimensions of the content of a {@link android.net.Uri}.
+ * Obtained with {@link UriUtils#getMetadata(android.net.Uri)}.
+ */
+public class UriMetadata {
+
+    private final long mSize;
+    private final String mMimeType;
+    private final int mWidth;
+    private final int mHeight;
+    private final long mLastModified;
+
+    UriMetadata(long size, @Nullable String mimeType, int width, int height, long lastModified) {
+        mSize = size;
+        mMimeType = mimeType;
+        mWidth = width;
+        mHeight = height;
+        mLastModified = lastModified;
+    }
+
+    /**
+     * @return size of the content in bytes, or -1 if it's unknown
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    @Nullable
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    /**
+     * @return width of the image as stored, without its EXIF orientation, or 0 if it's not an
+     * image
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return height of the image as stored, without its EXIF orientation, or 0 if it's not an
+     * image
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return modification time of a file Uri when it was read, 0 for content Uris
+     */
+    long getLastModified() {
+        return mLastModified;
+    }
+}
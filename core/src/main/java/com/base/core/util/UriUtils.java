@@ -0,0 +1,304 @@
+package com.base.core.util;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.webkit.MimeTypeMap;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utils class to read the content of {@link Uri}s, like the ones returned by the gallery or by
+ * other apps. The content is read through the {@link ContentResolver} instead of a file path, so
+ * it works with scoped storage, where the path of the files of other apps is unknown or
+ * unreadable. <i>file</i> Uris are opened directly, without binder calls.
+ * <p>
+ * The size, MIME type and dimensions of the recently seen Uris are kept in a small LRU cache, so
+ * repeated access doesn't query the content provider again. See {@link #getMetadata(Uri)}.
+ * <p>
+ * These methods do I/O, don't call them from the main thread.
+ */
+public class UriUtils {
+
+    private static final int METADATA_CACHE_SIZE = 64;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Guarded by itself
+    private static final Map<Uri, UriMetadata> sMetadata =
+            new LinkedHashMap<Uri, UriMetadata>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Uri, UriMetadata> eldest) {
+                    return size() > METADATA_CACHE_SIZE;
+                }
+            };
+
+    private UriUtils() {
+    }
+
+    /**
+     * Opens a stream to read the content of a {@link Uri}.
+     *
+     * @param uri content or file Uri
+     * @return the stream, which must be closed
+     * @throws IOException if the content can't be opened
+     */
+    @NonNull
+    public static InputStream openInputStream(@NonNull Uri uri) throws IOException {
+        if (isFile(uri)) return new FileInputStream(uri.getPath());
+
+        InputStream in = getContentResolver().openInputStream(uri);
+        if (in == null) throw new FileNotFoundException("Can't open " + uri);
+        return in;
+    }
+
+    /**
+     * Opens a file descriptor to read the content of a {@link Uri}. Unlike a stream, it can be
+     * read more than once, like to read the bounds of an image and then decode it.
+     *
+     * @param uri content or file Uri
+     * @return the descriptor, which must be closed
+     * @throws IOException if the content can't be opened
+     */
+    @NonNull
+    public static ParcelFileDescriptor openFileDescriptor(@NonNull Uri uri) throws IOException {
+        if (isFile(uri)) {
+            return ParcelFileDescriptor.open(
+                    new File(uri.getPath()), ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+
+        ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "r");
+        if (descriptor == null) throw new FileNotFoundException("Can't open " + uri);
+        return descriptor;
+    }
+
+    /**
+     * Maps the content of a {@link Uri} into memory, read only. Its pages are loaded when read,
+     * and they're never copied into the heap.
+     * <p>
+     * Only content backed by a file can be mapped, like local files and most of the MediaStore
+     * ones. The mapping stays valid after the descriptor is closed.
+     *
+     * @param uri content or file Uri
+     * @return the mapped content
+     * @throws IOException if the content can't be opened or it's not backed by a file, like when
+     *                     the provider streams it through a pipe
+     */
+    @NonNull
+    public static MappedByteBuffer map(@NonNull Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor = openFileDescriptor(uri);
+        try {
+            return map(descriptor, uri);
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * Reads the whole content of a {@link Uri}. Content backed by a file is mapped instead of
+     * read through a stream, so it's copied only once.
+     *
+     * @param uri content or file Uri
+     * @return the content
+     * @throws IOException if the content can't be read
+     */
+    @NonNull
+    public static byte[] readBytes(@NonNull Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor = openFileDescriptor(uri);
+        try {
+            if (descriptor.getStatSize() >= 0) {
+                ByteBuffer buffer = map(descriptor, uri);
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+
+            InputStream in = new FileInputStream(descriptor.getFileDescriptor());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(in, out);
+            return out.toByteArray();
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * Copies the content of a {@link Uri} to a file of the app cache directory, for APIs that
+     * need a {@link File}. Content backed by a file is copied by the kernel, without going
+     * through the heap.
+     *
+     * @param uri content or file Uri
+     * @return the copy, which the caller must delete once it's not needed anymore
+     * @throws IOException if the content can't be read or the copy can't be written
+     */
+    @NonNull
+    public static File copyToCacheFile(@NonNull Uri uri) throws IOException {
+        String extension = null;
+        String mimeType = getMetadata(uri).getMimeType();
+        if (mimeType != null) {
+            extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
+        }
+        File output = File.createTempFile("content", extension != null ? "." + extension : null,
+                ContextUtils.getAppContext().getCacheDir());
+
+        boolean copied = false;
+        ParcelFileDescriptor descriptor = openFileDescriptor(uri);
+        try {
+            FileInputStream in = new FileInputStream(descriptor.getFileDescriptor());
+            FileOutputStream out = new FileOutputStream(output);
+            try {
+                if (descriptor.getStatSize() >= 0) {
+                    FileChannel source = in.getChannel();
+                    FileChannel target = out.getChannel();
+                    long size = source.size();
+                    long position = 0;
+                    while (position < size) {
+                        long transferred = source.transferTo(position, size - position, target);
+                        if (transferred <= 0) break;
+                        position += transferred;
+                    }
+                } else {
+                    copy(in, out);
+                }
+            } finally {
+                out.close();
+            }
+            copied = true;
+        } finally {
+            descriptor.close();
+            if (!copied) output.delete();
+        }
+        return output;
+    }
+
+    /**
+     * Returns the size, MIME type and, for images, dimensions of the content of a {@link Uri}.
+     * They're read with a single descriptor and, for content Uris, a MIME type query, and then
+     * cached, so asking again for a recently seen Uri doesn't query the provider again. Cached
+     * file Uris are checked against the modification time of the file; call
+     * {@link #invalidate(Uri)} when the content of a content Uri changes.
+     *
+     * @param uri content or file Uri
+     * @return the metadata
+     * @throws IOException if the content can't be opened
+     */
+    @NonNull
+    public static UriMetadata getMetadata(@NonNull Uri uri) throws IOException {
+        long lastModified = isFile(uri) ? new File(uri.getPath()).lastModified() : 0;
+        synchronized (sMetadata) {
+            UriMetadata metadata = sMetadata.get(uri);
+            if (metadata != null && metadata.getLastModified() == lastModified) return metadata;
+        }
+
+        String mimeType;
+        if (isFile(uri)) {
+            String extension = MimeTypeMap.getFileExtensionFromUrl(uri.toString());
+            mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+        } else {
+            mimeType = getContentResolver().getType(uri);
+        }
+
+        long size;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        ParcelFileDescriptor descriptor = openFileDescriptor(uri);
+        try {
+            size = descriptor.getStatSize();
+            if (mimeType == null || mimeType.startsWith("image/")) {
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFileDescriptor(descriptor.getFileDescriptor(), null, options);
+            }
+        } finally {
+            descriptor.close();
+        }
+        if (size < 0 && !isFile(uri)) size = querySize(uri);
+
+        UriMetadata metadata = new UriMetadata(size, mimeType,
+                Math.max(options.outWidth, 0), Math.max(options.outHeight, 0), lastModified);
+        synchronized (sMetadata) {
+            sMetadata.put(uri, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Discards the cached metadata of a {@link Uri}, like after its content changed.
+     *
+     * @param uri content or file Uri
+     */
+    public static void invalidate(@NonNull Uri uri) {
+        synchronized (sMetadata) {
+            sMetadata.remove(uri);
+        }
+    }
+
+    /**
+     * Discards every cached metadata.
+     */
+    public static void clearCache() {
+        synchronized (sMetadata) {
+            sMetadata.clear();
+        }
+    }
+
+    private static boolean isFile(@NonNull Uri uri) {
+        return ContentResolver.SCHEME_FILE.equals(uri.getScheme());
+    }
+
+    @NonNull
+    private static ContentResolver getContentResolver() {
+        return ContextUtils.getAppContext().getContentResolver();
+    }
+
+    @NonNull
+    private static MappedByteBuffer map(@NonNull ParcelFileDescriptor descriptor,
+                                        @NonNull Uri uri) throws IOException {
+        if (descriptor.getStatSize() < 0) throw new IOException(uri + " is not backed by a file");
+
+        FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /**
+     * Reads the size the provider declares, for content that's not backed by a file.
+     *
+     * @return the size, or -1 if it's unknown
+     */
+    private static long querySize(@NonNull Uri uri) {
+        Cursor cursor = null;
+        try {
+            cursor = getContentResolver().query(
+                    uri, new String[]{OpenableColumns.SIZE}, null, null, null);
+            if (cursor == null || !cursor.moveToFirst() || cursor.isNull(0)) return -1;
+            return cursor.getLong(0);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static void copy(@NonNull InputStream in, @NonNull OutputStream out)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.base.networking.bandwidth;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Estimates the throughput and latency of the current network link from the API calls performed
+ * by the shared OkHttpClient, and classifies it in a {@link LinkQuality}.
+ * <p>
+ * Every call measures the time between sending the request headers and receiving the response
+ * headers, as latency, and, for responses big enough, the download throughput of its body.
+ * Streaming responses, like Server-Sent Events, and bodies that took too long to be read, which
+ * is usually the time the caller took to consume them, are not used for the throughput. Both
+ * are smoothed with an exponentially weighted moving average, so the estimation follows changes
+ * of the link quickly without jumping on a single slow call.
+ * <p>
+ * The adapt methods scale payload parameters, like image quality or page sizes, to the current
+ * link: the values given are used as they are on good links and reduced on slow ones.
+ * <p>
+ * The {@link EventListener.Factory} returned by {@link #getEventListenerFactory()} must be
+ * installed in the {@link okhttp3.OkHttpClient}, which
+ * {@link com.base.networking.retrofit.RetrofitServices} does by default.
+ */
+public class BandwidthEstimator {
+
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MAX_SAMPLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final String[] STREAMING_TYPES = {"text/event-stream", "multipart/"};
+    private static final int MIN_SAMPLES = 3;
+    private static final double SMOOTHING = 0.25;
+
+    private static final double POOR_KBPS = 150;
+    private static final double MODERATE_KBPS = 550;
+    private static final double GOOD_KBPS = 2000;
+    private static final double POOR_LATENCY_MS = 2000;
+    private static final double MODERATE_LATENCY_MS = 800;
+
+    private static BandwidthEstimator sInstance; // Singleton
+
+    // Guarded by this
+    private double mKbps = -1;
+    private double mLatencyMs = -1;
+    private int mThroughputSamples;
+    private int mLatencySamples;
+
+    public synchronized static BandwidthEstimator getInstance() {
+        if (sInstance == null) {
+            sInstance = new BandwidthEstimator();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the factory of the {@link EventListener} that measures the calls.
+     *
+     * @return an {@link EventListener.Factory} to install in the {@link okhttp3.OkHttpClient}
+     */
+    @NonNull
+    public EventListener.Factory getEventListenerFactory() {
+        return new EventListener.Factory() {
+            @Override
+            public EventListener create(Call call) {
+                return new MeasuringListener();
+            }
+        };
+    }
+
+    /**
+     * Returns the quality of the link. It's based on the throughput once there are enough
+     * samples, and downgraded if the latency is high. It's never {@link LinkQuality#EXCELLENT}
+     * until a response big enough to measure the throughput is received.
+     *
+     * @return the current link quality
+     */
+    @NonNull
+    public synchronized LinkQuality getLinkQuality() {
+        if (mThroughputSamples + mLatencySamples < MIN_SAMPLES) return LinkQuality.UNKNOWN;
+
+        // Small responses alone don't prove the link is fast
+        LinkQuality quality = LinkQuality.GOOD;
+        if (mThroughputSamples > 0) {
+            quality = LinkQuality.EXCELLENT;
+            if (mKbps < POOR_KBPS) {
+                quality = LinkQuality.POOR;
+            } else if (mKbps < MODERATE_KBPS) {
+                quality = LinkQuality.MODERATE;
+            } else if (mKbps < GOOD_KBPS) {
+                quality = LinkQuality.GOOD;
+            }
+        }
+        if (mLatencySamples > 0) {
+            if (mLatencyMs > POOR_LATENCY_MS) {
+                quality = LinkQuality.POOR;
+            } else if (mLatencyMs > MODERATE_LATENCY_MS
+                    && quality.compareTo(LinkQuality.MODERATE) > 0) {
+                quality = LinkQuality.MODERATE;
+            }
+        }
+        return quality;
+    }
+
+    /**
+     * Returns the estimated download throughput.
+     *
+     * @return throughput in kilobits per second, or -1 if it wasn't measured yet
+     */
+    public synchronized double getThroughputKbps() {
+        return mKbps;
+    }
+
+    /**
+     * Returns the estimated latency of a request.
+     *
+     * @return latency in milliseconds, or -1 if it wasn't measured yet
+     */
+    public synchronized double getLatencyMs() {
+        return mLatencyMs;
+    }
+
+    /**
+     * Discards every sample, usually because the device changed networks.
+     */
+    public synchronized void reset() {
+        mKbps = -1;
+        mLatencyMs = -1;
+        mThroughputSamples = 0;
+        mLatencySamples = 0;
+    }
+
+    /**
+     * Adapts an image compression quality to the link.
+     *
+     * @param quality quality used on good links, between 0 and 100
+     * @return the quality to use
+     */
+    public int adaptImageQuality(int quality) {
+        switch (getLinkQuality()) {
+            case POOR:
+                return Math.min(quality, 60);
+            case MODERATE:
+                return Math.min(quality, 75);
+            default:
+                return quality;
+        }
+    }
+
+    /**
+     * Adapts a max image width or height to the link.
+     *
+     * @param dimension dimension used on good links, in pixels
+     * @return the dimension to use
+     */
+    public int adaptImageDimension(int dimension) {
+        switch (getLinkQuality()) {
+            case POOR:
+                return dimension / 2;
+            case MODERATE:
+                return dimension * 3 / 4;
+            default:
+                return dimension;
+        }
+    }
+
+    /**
+     * Adapts the amount of items requested per page to the link. Slow links get smaller pages so
+     * the first items show up sooner, and excellent ones get bigger pages to save round trips.
+     *
+     * @param pageSize page size used on good links
+     * @return the page size to use
+     */
+    public int adaptPageSize(int pageSize) {
+        switch (getLinkQuality()) {
+            case POOR:
+                return Math.max(1, pageSize / 2);
+            case MODERATE:
+                return Math.max(1, pageSize * 3 / 4);
+            case EXCELLENT:
+                return pageSize * 2;
+            default:
+                return pageSize;
+        }
+    }
+
+    private synchronized void addLatencySample(double latencyMs) {
+        mLatencyMs = mLatencySamples == 0 ? latencyMs : smooth(mLatencyMs, latencyMs);
+        mLatencySamples++;
+    }
+
+    private synchronized void addThroughputSample(double kbps) {
+        mKbps = mThroughputSamples == 0 ? kbps : smooth(mKbps, kbps);
+        mThroughputSamples++;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+
+    /**
+     * Measures the latency and download throughput of a call.
+     */
+    private class MeasuringListener extends EventListener {
+
+        private long mRequestSentAt;
+        private long mBodyStartedAt;
+        private boolean mStreaming;
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            mRequestSentAt = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            mRequestSentAt = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (mRequestSentAt == 0) return;
+            addLatencySample((System.nanoTime() - mRequestSentAt) / 1e6);
+            mRequestSentAt = 0;
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            mStreaming = isStreaming(response.header("Content-Type"));
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            mBodyStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            long elapsed = System.nanoTime() - mBodyStartedAt;
+            if (mStreaming || mBodyStartedAt == 0 || byteCount < MIN_SAMPLE_BYTES) return;
+            if (elapsed < MIN_SAMPLE_NANOS || elapsed > MAX_SAMPLE_NANOS) return;
+            addThroughputSample(byteCount * 8 / (elapsed / 1e6));
+        }
+
+        /**
+         * Checks if the body is a stream of events, which arrive when the server has them.
+         */
+        private boolean isStreaming(@Nullable String contentType) {
+            if (contentType == null) return false;
+            for (String type : STREAMING_TYPES) {
+                if (contentType.regionMatches(true, 0, type, 0, type.length())) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.base.networking.bandwidth;
+
+/**
+ * Quality of the current network link, as measured by the {@link BandwidthEstimator}.
+ */
+public enum LinkQuality {
+
+    /**
+     * Not enough requests were measured yet.
+     */
+    UNKNOWN,
+
+    /**
+     * Below 150 kbps or round trips above 2 seconds, like 2G or a weak signal.
+     */
+    POOR,
+
+    /**
+     * Between 150 and 550 kbps or round trips above 800 ms, like 3G.
+     */
+    MODERATE,
+
+    /**
+     * Between 550 and 2000 kbps.
+     */
+    GOOD,
+
+    /**
+     * Above 2000 kbps.
+     */
+    EXCELLENT
+}
@@ -0,0 +1,377 @@
+package com.base.networking.dns;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Dns;
+
+/**
+ * An implementation of OkHTTP's {@link Dns} that caches the addresses resolved by another one,
+ * usually {@link Dns#SYSTEM}.
+ * <p>
+ * Addresses are cached for a fixed TTL, since the system resolver doesn't expose the real one.
+ * Hosts looked up often are refreshed in background before their entry expires, so they never
+ * wait for a resolution. If resolving a host fails, its expired addresses are still returned for
+ * a while, since they are probably still valid. The cached addresses may be wrong for another
+ * network, so call {@link #clear()} when it changes, like from a
+ * {@link com.base.networking.utils.ConnectivityUtils.NetworkListener}.
+ * <p>
+ * Optionally, when a host resolves to both IPv4 and IPv6 addresses, a connection to the first
+ * address of each family is raced and the addresses of the winner are tried first, alternating
+ * with the other family. Those connections are only used to pick a family, so each resolution of
+ * a dual-stack host costs two extra TCP handshakes, and waits for them.
+ */
+public class CachingDns implements Dns {
+
+    private static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long DEFAULT_MAX_STALE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final float REFRESH_AHEAD_FACTOR = 0.75f;
+    private static final int HOT_HOST_HITS = 3;
+    private static final int RACE_THREADS = 4;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    // Shared by every instance, so racing never opens more than RACE_THREADS connections at once
+    private static ExecutorService sRaceExecutor;
+
+    private final Dns mUpstream;
+    private final long mTtlMs;
+    private final long mMaxStaleMs;
+    private final Map<String, CacheEntry> mCache;
+    private final Set<String> mRefreshing = new HashSet<>();
+    private ExecutorService mExecutor;
+    private int mRacePort = -1;
+    private int mRaceTimeoutMs;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mStaleHits = new AtomicLong();
+    private final AtomicLong mRefreshes = new AtomicLong();
+
+    /**
+     * Creates a cache over the system resolver with the default configuration.
+     */
+    public CachingDns() {
+        this(Dns.SYSTEM, DEFAULT_TTL_MS, DEFAULT_MAX_STALE_MS, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param upstream   resolver whose results are cached
+     * @param ttlMs      time the resolved addresses are considered valid
+     * @param maxStaleMs time after expiring that the addresses are still returned if resolving
+     *                   the host again fails
+     * @param maxEntries max amount of hosts cached, the least recently used are evicted
+     */
+    public CachingDns(@NonNull Dns upstream, long ttlMs, long maxStaleMs, final int maxEntries) {
+        mUpstream = upstream;
+        mTtlMs = ttlMs;
+        mMaxStaleMs = maxStaleMs;
+        mCache = new LinkedHashMap<String, CacheEntry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Enables racing connections to IPv4 and IPv6 addresses of hosts that resolve to both.
+     * <p>
+     * Every time such a host is resolved, a TCP connection is opened to an address of each family
+     * and closed right after, and the lookup waits up to the timeout for the first one. Only
+     * enable it if picking a broken family costs more than that, like in networks with a poor
+     * IPv6 connectivity.
+     *
+     * @param port      port used to race the connections, usually 443
+     * @param timeoutMs max time to wait for a connection
+     * @return this instance, to chain calls
+     */
+    @NonNull
+    public CachingDns setAddressRacing(int port, int timeoutMs) {
+        mRacePort = port;
+        mRaceTimeoutMs = timeoutMs;
+        return this;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = now();
+        CacheEntry entry;
+        synchronized (mCache) {
+            entry = mCache.get(hostname);
+        }
+
+        if (entry != null && now < entry.mResolvedAt + mTtlMs) {
+            mHits.incrementAndGet();
+            int hits = entry.hit();
+            if (hits >= HOT_HOST_HITS
+                    && now >= entry.mResolvedAt + mTtlMs * REFRESH_AHEAD_FACTOR) {
+                refreshAsync(hostname);
+            }
+            return entry.mAddresses;
+        }
+
+        mMisses.incrementAndGet();
+        try {
+            return resolve(hostname);
+        } catch (UnknownHostException e) {
+            if (entry != null && now < entry.mResolvedAt + mTtlMs + mMaxStaleMs) {
+                mStaleHits.incrementAndGet();
+                return entry.mAddresses;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes every cached address, usually because the default network changed, since the
+     * addresses resolved on a network, like a VPN or a captive Wi-Fi, may not be valid on the
+     * next one.
+     */
+    public void clear() {
+        synchronized (mCache) {
+            mCache.clear();
+        }
+    }
+
+    /**
+     * Returns the amount of lookups answered with valid cached addresses.
+     *
+     * @return cache hits
+     */
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    /**
+     * Returns the amount of lookups that weren't cached or had expired.
+     *
+     * @return cache misses
+     */
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * Returns the amount of lookups answered with expired addresses because resolving failed.
+     *
+     * @return stale answers
+     */
+    public long getStaleHitCount() {
+        return mStaleHits.get();
+    }
+
+    /**
+     * Returns the amount of hosts refreshed in background before expiring.
+     *
+     * @return background refreshes
+     */
+    public long getRefreshCount() {
+        return mRefreshes.get();
+    }
+
+    /**
+     * Returns the current time used for expiration. Override if needed, for tests.
+     *
+     * @return time in milliseconds
+     */
+    protected long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @NonNull
+    private List<InetAddress> resolve(@NonNull String hostname) throws UnknownHostException {
+        List<InetAddress> addresses = mUpstream.lookup(hostname);
+        if (mRacePort > 0) addresses = race(addresses);
+        addresses = Collections.unmodifiableList(new ArrayList<>(addresses));
+        synchronized (mCache) {
+            mCache.put(hostname, new CacheEntry(addresses, now()));
+        }
+        return addresses;
+    }
+
+    private void refreshAsync(@NonNull final String hostname) {
+        synchronized (mRefreshing) {
+            if (!mRefreshing.add(hostname)) return;
+            if (mExecutor == null) {
+                mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable, "CachingDns");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resolve(hostname);
+                    mRefreshes.incrementAndGet();
+                } catch (UnknownHostException e) {
+                    // Keep the current entry, it may still be served stale
+                } finally {
+                    synchronized (mRefreshing) {
+                        mRefreshing.remove(hostname);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Races a connection to the first IPv4 and IPv6 addresses and returns the addresses with the
+     * winner's family first, alternating both families.
+     *
+     * @param addresses resolved addresses
+     * @return the reordered addresses, or the same ones if there is only one family
+     */
+    @NonNull
+    private List<InetAddress> race(@NonNull List<InetAddress> addresses) {
+        List<InetAddress> ipv4 = new ArrayList<>();
+        List<InetAddress> ipv6 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) {
+                ipv6.add(address);
+            } else if (address instanceof Inet4Address) {
+                ipv4.add(address);
+            }
+        }
+        if (ipv4.isEmpty() || ipv6.isEmpty()) return addresses;
+
+        InetAddress winner = firstToConnect(ipv4.get(0), ipv6.get(0));
+        List<InetAddress> first = winner instanceof Inet4Address ? ipv4 : ipv6;
+        List<InetAddress> second = first == ipv4 ? ipv6 : ipv4;
+
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) ordered.add(first.get(i));
+            if (i < second.size()) ordered.add(second.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * Connects to both addresses at the same time. Connections still queued when the race is
+     * decided are skipped.
+     *
+     * @return the address that connected first, or the first one if none of them did
+     */
+    @NonNull
+    private InetAddress firstToConnect(@NonNull InetAddress first, @NonNull InetAddress second) {
+        final Object lock = new Object();
+        final InetAddress[] winner = new InetAddress[1];
+        final int[] finished = new int[1];
+        final boolean[] decided = new boolean[1];
+        final InetAddress[] candidates = {first, second};
+
+        ExecutorService executor = getRaceExecutor();
+        for (final InetAddress candidate : candidates) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (lock) {
+                        if (decided[0]) return;
+                    }
+                    boolean connected = connect(candidate);
+                    synchronized (lock) {
+                        finished[0]++;
+                        if (connected && winner[0] == null) winner[0] = candidate;
+                        lock.notifyAll();
+                    }
+                }
+            });
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mRaceTimeoutMs);
+        synchronized (lock) {
+            while (winner[0] == null && finished[0] < candidates.length) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) break;
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            decided[0] = true;
+            return winner[0] != null ? winner[0] : first;
+        }
+    }
+
+    @NonNull
+    private static synchronized ExecutorService getRaceExecutor() {
+        if (sRaceExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(RACE_THREADS, RACE_THREADS,
+                    IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            Thread thread = new Thread(runnable, "CachingDns-race");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sRaceExecutor = executor;
+        }
+        return sRaceExecutor;
+    }
+
+    private boolean connect(@NonNull InetAddress address) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(address, mRacePort), mRaceTimeoutMs);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final List<InetAddress> mAddresses;
+        private final long mResolvedAt;
+        private int mHits;
+
+        CacheEntry(@NonNull List<InetAddress> addresses, long resolvedAt) {
+            mAddresses = addresses;
+            mResolvedAt = resolvedAt;
+        }
+
+        synchronized int hit() {
+            return ++mHits;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.base.networking.download;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+
+/**
+ * Callback for downloads performed by the {@link DownloadManager}. Every method is called on the
+ * main thread.
+ */
+public interface DownloadListener {
+
+    /**
+     * Part of the content was stored.
+     *
+     * @param downloadedBytes amount of bytes stored
+     * @param totalBytes      size of the content, or -1 if the server didn't report it
+     */
+    void onProgress(long downloadedBytes, long totalBytes);
+
+    /**
+     * The whole content was stored and verified.
+     *
+     * @param file the downloaded file
+     */
+    void onDownloadSuccessful(@NonNull File file);
+
+    /**
+     * The download failed and retrying didn't fix it. Starting it again resumes from the bytes
+     * already stored, unless the content changed in the server or failed verification.
+     *
+     * @param t A Throwable with the cause of the failure
+     */
+    void onDownloadFailed(@NonNull Throwable t);
+}
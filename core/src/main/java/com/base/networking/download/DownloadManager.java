@@ -0,0 +1,554 @@
+package com.base.networking.download;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.NetworkCodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Downloads files splitting them in segments that are fetched in parallel with HTTP Range
+ * requests. Each segment is written straight to its position in the file through a
+ * {@link FileChannel}, using a direct buffer.
+ * <p>
+ * The progress of every segment is stored next to the file, so a download interrupted, even by
+ * the process dying, resumes where it stopped when started again with the same URL and
+ * destination. If the content changes in the server meanwhile, detected through its ETag, the
+ * download fails and starts from scratch next time.
+ * <p>
+ * Segments are performed by the {@link OkHttpClient}'s dispatcher, so no more segments than its
+ * max requests per host run at the same time. Reading the saved progress and preparing the file
+ * is done in a background thread, so downloads can be started from the main thread.
+ * <p>
+ * The given client is shared without its interceptors nor its response cache: interceptors
+ * meant for the API, like logging bodies, would buffer whole segments in memory.
+ */
+public class DownloadManager {
+
+    private static final String RANGE_HEADER = "Range";
+    private static final String IF_RANGE_HEADER = "If-Range";
+    private static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".state";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final int PARTIAL_CONTENT = 206;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final long SAVE_INTERVAL_BYTES = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETRIES = 3;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    private final OkHttpClient mClient;
+    private final int mMaxSegments;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param client      client whose connections, dispatcher and DNS are shared, usually the
+     *                    one from
+     *                    {@link com.base.networking.retrofit.RetrofitServices#getClient()}
+     * @param maxSegments max amount of segments a file is split into
+     */
+    public DownloadManager(@NonNull OkHttpClient client, int maxSegments) {
+        if (maxSegments <= 0) throw new IllegalArgumentException("Max segments must be > 0");
+        OkHttpClient.Builder builder = client.newBuilder().cache(null);
+        builder.interceptors().clear();
+        mClient = builder.build();
+        mMaxSegments = maxSegments;
+        mExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts, or resumes, downloading the content of the URL to the destination file.
+     *
+     * @param url          URL of the content
+     * @param destination  file where the content is stored once it's complete
+     * @param sha256       expected SHA-256 of the content, in hex, or null to only verify its
+     *                     length
+     * @param listener     callback for the download
+     * @return a handle to cancel the download
+     */
+    @NonNull
+    public DownloadTask download(@NonNull HttpUrl url, @NonNull File destination,
+                                 @Nullable String sha256, @NonNull DownloadListener listener) {
+        final DownloadTask task = new DownloadTask(url, destination, sha256, listener);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                task.start();
+            }
+        });
+        return task;
+    }
+
+    /**
+     * A running download.
+     */
+    public final class DownloadTask {
+
+        private final HttpUrl mUrl;
+        private final File mDestination;
+        private final File mPartialFile;
+        private final File mStateFile;
+        private final String mSha256;
+        private final DownloadListener mListener;
+        private final List<Call> mCalls = new ArrayList<>();
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+        private final AtomicInteger mRemainingSegments = new AtomicInteger();
+        private volatile boolean mCancelled;
+        private DownloadState mState;
+        private int[] mFailures;
+        private FileChannel mChannel;
+        private long mLastSavedBytes;
+        private long mReportedBytes = -1;
+
+        private DownloadTask(@NonNull HttpUrl url, @NonNull File destination,
+                             @Nullable String sha256, @NonNull DownloadListener listener) {
+            mUrl = url;
+            mDestination = destination;
+            mPartialFile = new File(destination.getPath() + PARTIAL_SUFFIX);
+            mStateFile = new File(destination.getPath() + STATE_SUFFIX);
+            mSha256 = sha256;
+            mListener = listener;
+        }
+
+        /**
+         * Cancels the download. The listener is not notified anymore. The bytes already stored
+         * are kept, so downloading the same URL to the same destination resumes it.
+         */
+        public void cancel() {
+            mCancelled = true;
+            cancelCalls();
+            if (mFinished.compareAndSet(false, true)) close(true);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private void start() {
+            if (mFinished.get()) return;
+            DownloadState state = DownloadState.load(mStateFile);
+            if (state != null && state.mUrl.equals(mUrl.toString()) && mPartialFile.exists()) {
+                begin(state);
+                return;
+            }
+
+            // Otherwise OkHttp asks for gzip and the length is the compressed one, while the
+            // Range requests get the identity bytes
+            Request request = new Request.Builder()
+                    .url(mUrl)
+                    .header(ACCEPT_ENCODING_HEADER, "identity")
+                    .head()
+                    .build();
+            enqueue(request, new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    fail(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    if (!response.isSuccessful()) {
+                        fail(new IOException("Download failed with code " + response.code()));
+                        return;
+                    }
+
+                    long length = parseLength(response.header(CONTENT_LENGTH_HEADER));
+                    boolean ranges = "bytes".equalsIgnoreCase(
+                            response.header(ACCEPT_RANGES_HEADER));
+                    if (length <= 0 || !ranges) {
+                        begin(null);
+                        return;
+                    }
+
+                    int segments = (int) Math.max(1,
+                            Math.min(mMaxSegments, length / MIN_SEGMENT_SIZE));
+                    begin(DownloadState.split(
+                            mUrl.toString(), response.header(ETAG_HEADER), length, segments));
+                }
+            });
+        }
+
+        /**
+         * Opens the partial file and requests every segment that isn't complete. It does I/O, so
+         * it runs in the executor or in the dispatcher.
+         *
+         * @param state progress of the download, or null if it can't be split nor resumed
+         */
+        private void begin(@Nullable DownloadState state) {
+            mState = state;
+            try {
+                RandomAccessFile file = new RandomAccessFile(mPartialFile, "rw");
+                if (state == null) {
+                    file.setLength(0);
+                } else if (file.length() != state.mLength) {
+                    file.setLength(state.mLength);
+                }
+                synchronized (this) {
+                    // Cancelled meanwhile
+                    if (mFinished.get()) {
+                        file.close();
+                        return;
+                    }
+                    mChannel = file.getChannel();
+                }
+                if (state != null) state.save(mStateFile);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+
+            if (state == null) {
+                mRemainingSegments.set(1);
+                requestSegment(-1);
+                return;
+            }
+
+            int segments = state.mStarts.length;
+            mFailures = new int[segments];
+            mLastSavedBytes = state.getDownloadedBytes();
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < segments; i++) {
+                if (state.mStarts[i] + state.getWritten(i) <= state.mEnds[i]) pending.add(i);
+            }
+
+            mRemainingSegments.set(pending.size());
+            if (pending.isEmpty()) {
+                complete();
+                return;
+            }
+            for (int segment : pending) {
+                requestSegment(segment);
+            }
+        }
+
+        /**
+         * Requests the remaining bytes of a segment.
+         *
+         * @param segment index of the segment, or -1 to request the whole content
+         */
+        private void requestSegment(final int segment) {
+            Request.Builder builder = new Request.Builder().url(mUrl);
+            if (segment >= 0) {
+                long from = mState.mStarts[segment] + mState.getWritten(segment);
+                builder.header(RANGE_HEADER, "bytes=" + from + "-" + mState.mEnds[segment]);
+                if (mState.mETag != null) builder.header(IF_RANGE_HEADER, mState.mETag);
+            }
+
+            enqueue(builder.build(), new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    retryOrFail(segment, e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        onSegmentResponse(segment, response);
+                    } catch (IOException e) {
+                        retryOrFail(segment, e);
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+        }
+
+        private void onSegmentResponse(int segment, @NonNull Response response)
+                throws IOException {
+            if (segment >= 0 && response.code() == NetworkCodes.OK) {
+                // The server ignored the range, the content changed since the download started
+                discard();
+                fail(new IOException("The content changed in the server, download it again"));
+                return;
+            }
+            if (!response.isSuccessful()) {
+                if (response.code() >= NetworkCodes.ERROR_INTERNAL) {
+                    throw new IOException("Download failed with code " + response.code());
+                }
+                fail(new IOException("Download failed with code " + response.code()));
+                return;
+            }
+            if (segment >= 0 && response.code() != PARTIAL_CONTENT) {
+                fail(new IOException("Unexpected response code " + response.code()));
+                return;
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) throw new IOException("Empty response body");
+            write(segment, body.source());
+
+            if (segment >= 0) {
+                long expected = mState.mEnds[segment] - mState.mStarts[segment] + 1;
+                if (mState.getWritten(segment) != expected) {
+                    throw new IOException("Segment " + segment + " ended before expected");
+                }
+            }
+            if (mRemainingSegments.decrementAndGet() == 0) complete();
+        }
+
+        /**
+         * Writes the response body to the position of the segment in the file.
+         *
+         * @param segment index of the segment, or -1 for the whole content
+         * @param source  response body
+         * @throws IOException if the body can't be read or written
+         */
+        private void write(int segment, @NonNull BufferedSource source) throws IOException {
+            FileChannel channel;
+            synchronized (this) {
+                channel = mChannel;
+            }
+            if (channel == null) throw new IOException("The download is closed");
+            long start = segment >= 0 ? mState.mStarts[segment] : 0;
+            long position = start + (segment >= 0 ? mState.getWritten(segment) : 0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            while (!mCancelled && source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+
+                if (segment >= 0) {
+                    mState.setWritten(segment, position - start);
+                    onBytesWritten(channel, mState.getDownloadedBytes(), mState.mLength);
+                } else {
+                    onBytesWritten(channel, position, -1);
+                }
+            }
+        }
+
+        /**
+         * Reports the progress and saves the state of the download every
+         * {@link #SAVE_INTERVAL_BYTES}. Bytes are forced to disk before the state, so the state
+         * never claims bytes that could be lost.
+         *
+         * @param channel the channel the bytes were written to
+         * @throws IOException if the download finished or was closed meanwhile, or the state
+         *                     can't be saved
+         */
+        private synchronized void onBytesWritten(@NonNull FileChannel channel,
+                                                 final long downloadedBytes, final long totalBytes)
+                throws IOException {
+            // Other segments may have failed, or the download cancelled, closing the channel
+            if (mFinished.get() || mChannel != channel) {
+                throw new IOException("The download is closed");
+            }
+            if (mState != null && downloadedBytes - mLastSavedBytes >= SAVE_INTERVAL_BYTES) {
+                channel.force(false);
+                mState.save(mStateFile);
+                mLastSavedBytes = downloadedBytes;
+            }
+
+            long step = totalBytes > 0 ? Math.max(1, totalBytes / 100) : BUFFER_SIZE;
+            if (downloadedBytes != totalBytes && downloadedBytes - mReportedBytes < step) return;
+            mReportedBytes = downloadedBytes;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onProgress(downloadedBytes, totalBytes);
+                }
+            });
+        }
+
+        private void retryOrFail(int segment, @NonNull IOException e) {
+            if (mCancelled || mFinished.get()) return;
+            boolean retry;
+            synchronized (this) {
+                retry = segment >= 0 && ++mFailures[segment] <= MAX_RETRIES;
+            }
+            if (retry) {
+                requestSegment(segment);
+            } else {
+                fail(e);
+            }
+        }
+
+        /**
+         * Verifies the content and moves it to the destination.
+         */
+        private void complete() {
+            if (!mFinished.compareAndSet(false, true)) return;
+            FileChannel channel;
+            synchronized (this) {
+                // Taken from the task, so nothing else closes it while it's verified
+                channel = mChannel;
+                mChannel = null;
+            }
+            try {
+                if (channel == null) throw new IOException("The download is closed");
+                try {
+                    channel.force(true);
+                    verify(channel);
+                } finally {
+                    channel.close();
+                }
+                if (mDestination.exists() && !mDestination.delete()) {
+                    throw new IOException("Couldn't replace " + mDestination);
+                }
+                if (!mPartialFile.renameTo(mDestination)) {
+                    throw new IOException("Couldn't move the download to " + mDestination);
+                }
+                mStateFile.delete();
+            } catch (IOException e) {
+                discard();
+                notifyFailure(e);
+                return;
+            }
+
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onDownloadSuccessful(mDestination);
+                }
+            });
+        }
+
+        private void verify(@NonNull FileChannel channel) throws IOException {
+            long size = channel.size();
+            if (mState != null && size != mState.mLength) {
+                throw new IOException("Expected " + mState.mLength + " bytes, got " + size);
+            }
+            if (mSha256 == null) return;
+
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = 0;
+            int read;
+            while ((read = channel.read(buffer, position)) != -1) {
+                position += read;
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            if (!hex.toString().equalsIgnoreCase(mSha256)) {
+                throw new IOException("Downloaded content doesn't match the expected SHA-256");
+            }
+        }
+
+        private void fail(@NonNull IOException e) {
+            if (!mFinished.compareAndSet(false, true)) return;
+            cancelCalls();
+            close(true);
+            notifyFailure(e);
+        }
+
+        private void notifyFailure(@NonNull final IOException e) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onDownloadFailed(e);
+                }
+            });
+        }
+
+        /**
+         * Closes the partial file.
+         *
+         * @param saveState <b>true</b> to save the progress before closing
+         */
+        private synchronized void close(boolean saveState) {
+            if (mChannel == null) return;
+            try {
+                if (saveState && mState != null) {
+                    mChannel.force(false);
+                    mState.save(mStateFile);
+                }
+                mChannel.close();
+            } catch (IOException e) {
+                // The download will start from the last saved state
+            }
+            mChannel = null;
+        }
+
+        private void discard() {
+            close(false);
+            mPartialFile.delete();
+            mStateFile.delete();
+        }
+
+        private void enqueue(@NonNull Request request, @NonNull Callback callback) {
+            Call call = mClient.newCall(request);
+            synchronized (mCalls) {
+                if (mCancelled) return;
+                mCalls.add(call);
+            }
+            call.enqueue(callback);
+        }
+
+        private void cancelCalls() {
+            synchronized (mCalls) {
+                for (Call call : mCalls) {
+                    call.cancel();
+                }
+                mCalls.clear();
+            }
+        }
+
+        private void post(@NonNull final Runnable runnable) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) runnable.run();
+                }
+            });
+        }
+    }
+
+    private static long parseLength(@Nullable String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
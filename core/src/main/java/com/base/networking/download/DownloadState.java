@@ -0,0 +1,163 @@
+package com.base.networking.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The progress of a download, stored next to the partial file so it can be resumed after the
+ * process is restarted.
+ */
+class DownloadState {
+
+    private static final int VERSION = 1;
+
+    final String mUrl;
+    final String mETag;
+    final long mLength;
+    final long[] mStarts;
+    final long[] mEnds;
+    final long[] mWritten;
+
+    /**
+     * @param url    URL of the content
+     * @param eTag   entity tag of the content, if the server sent one
+     * @param length size of the content
+     * @param starts first byte of each segment
+     * @param ends   last byte, inclusive, of each segment
+     */
+    DownloadState(@NonNull String url, @Nullable String eTag, long length,
+                  @NonNull long[] starts, @NonNull long[] ends) {
+        mUrl = url;
+        mETag = eTag;
+        mLength = length;
+        mStarts = starts;
+        mEnds = ends;
+        mWritten = new long[starts.length];
+    }
+
+    /**
+     * Splits the content in segments of the same size.
+     *
+     * @param url      URL of the content
+     * @param eTag     entity tag of the content, if the server sent one
+     * @param length   size of the content
+     * @param segments amount of segments
+     * @return the state of a download that didn't start yet
+     */
+    @NonNull
+    static DownloadState split(@NonNull String url, @Nullable String eTag, long length,
+                               int segments) {
+        long[] starts = new long[segments];
+        long[] ends = new long[segments];
+        long segmentLength = length / segments;
+        for (int i = 0; i < segments; i++) {
+            starts[i] = i * segmentLength;
+            ends[i] = i == segments - 1 ? length - 1 : (i + 1) * segmentLength - 1;
+        }
+        return new DownloadState(url, eTag, length, starts, ends);
+    }
+
+    /**
+     * Returns the amount of bytes stored across every segment.
+     *
+     * @return bytes stored
+     */
+    synchronized long getDownloadedBytes() {
+        long downloaded = 0;
+        for (long written : mWritten) {
+            downloaded += written;
+        }
+        return downloaded;
+    }
+
+    synchronized long getWritten(int segment) {
+        return mWritten[segment];
+    }
+
+    synchronized void setWritten(int segment, long written) {
+        mWritten[segment] = written;
+    }
+
+    /**
+     * Writes the state to a temporary file and renames it, so a crash never leaves a partially
+     * written state.
+     *
+     * @param file file to write to
+     * @throws IOException if the state can't be written
+     */
+    synchronized void save(@NonNull File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fileStream = new FileOutputStream(tempFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(mUrl);
+            out.writeBoolean(mETag != null);
+            if (mETag != null) out.writeUTF(mETag);
+            out.writeLong(mLength);
+            out.writeInt(mStarts.length);
+            for (int i = 0; i < mStarts.length; i++) {
+                out.writeLong(mStarts[i]);
+                out.writeLong(mEnds[i]);
+                out.writeLong(mWritten[i]);
+            }
+            out.flush();
+            fileStream.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) throw new IOException("Couldn't write " + file);
+    }
+
+    /**
+     * Reads a state previously saved.
+     *
+     * @param file file to read from
+     * @return the state, or null if the file doesn't exist or can't be read
+     */
+    @Nullable
+    static DownloadState load(@NonNull File file) {
+        if (!file.exists()) return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) return null;
+            String url = in.readUTF();
+            String eTag = in.readBoolean() ? in.readUTF() : null;
+            long length = in.readLong();
+            int segments = in.readInt();
+            long[] starts = new long[segments];
+            long[] ends = new long[segments];
+            long[] written = new long[segments];
+            for (int i = 0; i < segments; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+                written[i] = in.readLong();
+            }
+
+            DownloadState state = new DownloadState(url, eTag, length, starts, ends);
+            System.arraycopy(written, 0, state.mWritten, 0, segments);
+            return state;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.base.networking.outbox;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.ConnectivityUtils;
+import com.base.networking.utils.NetworkCodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+
+/**
+ * A durable queue for mutating API calls that must reach the server even if the device is
+ * offline when they are made.
+ * <p>
+ * Requests are stored in an append-only journal inside the app's files dir and sent, in the order
+ * they were enqueued, as soon as there is connectivity. Enqueuing a request whose idempotency key
+ * is already pending has no effect. The result of each request is delivered, on the main thread,
+ * to the {@link CompletionHandler} registered under the name given when enqueuing it. Handlers
+ * must be registered every time the process starts, usually from
+ * {@link com.base.core.BaseApplication#onInit()}.
+ * <p>
+ * The result of a request is stored in the journal until its handler receives it, so results
+ * of requests answered while no handler was registered, or right before the process died, are
+ * delivered once the handler is registered. A result may be delivered again if the process dies
+ * right after delivering it, so handlers must tolerate duplicates.
+ * <p>
+ * Journal writes are synced to disk in batches: a request enqueued less than
+ * {@value #SYNC_DELAY_MS} ms before the process dies may be lost.
+ * <p>
+ * Usage:
+ * Outbox outbox = new Outbox(context, retrofitServices.getClient(), "outbox");
+ * outbox.registerHandler("comments", commentsHandler);
+ * outbox.start();
+ * outbox.enqueue(retrofitServices.getService(CommentService.class).post(comment),
+ * comment.getUuid(), "comments");
+ */
+public class Outbox {
+
+    private static final String TAG = "Outbox";
+
+    private static final int SYNC_BATCH_SIZE = 16;
+    private static final long SYNC_DELAY_MS = 200;
+    private static final int REPLAY_BATCH_SIZE = 10;
+    private static final long RETRY_DELAY_MS = 30000;
+
+    private final Context mContext;
+    private final OkHttpClient mClient;
+    private final OutboxJournal mJournal;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, CompletionHandler> mHandlers = new HashMap<>();
+    private volatile boolean mStarted;
+
+    // Only accessed from mExecutor
+    private LinkedHashMap<String, OutboxRequest> mPending;
+    private final Set<String> mDelivering = new HashSet<>();
+    private boolean mSyncScheduled;
+    private boolean mRetryScheduled;
+
+    // Only accessed from start() and stop()
+    private Object mNetworkListener;
+
+    /**
+     * Callback for the requests sent by the {@link Outbox}.
+     */
+    public interface CompletionHandler {
+
+        /**
+         * The server received the request and answered it successfully.
+         *
+         * @param idempotencyKey key of the request
+         * @param responseBody   body of the response, if any
+         */
+        void onRequestSuccessful(@NonNull String idempotencyKey, @Nullable String responseBody);
+
+        /**
+         * The server received the request and reported an error that retrying won't fix.
+         *
+         * @param idempotencyKey key of the request
+         * @param errorBody      body of the response, if any
+         * @param code           the error code
+         */
+        void onRequestFailed(@NonNull String idempotencyKey, @Nullable String errorBody, int code);
+    }
+
+    /**
+     * @param context any {@link Context}
+     * @param client  client used to send the requests, usually the one from
+     *                {@link com.base.networking.retrofit.RetrofitServices#getClient()}
+     * @param name    name of the journal file, must be unique for each outbox
+     */
+    public Outbox(@NonNull Context context, @NonNull OkHttpClient client, @NonNull String name) {
+        mContext = context.getApplicationContext();
+        mClient = client;
+        mJournal = new OutboxJournal(new File(mContext.getFilesDir(), name + ".journal"));
+    }
+
+    /**
+     * Registers the handler notified of the results of the requests enqueued with the given name.
+     * If the outbox is started, results stored while it wasn't registered are delivered to it.
+     *
+     * @param name    name used when enqueuing requests
+     * @param handler handler to notify
+     */
+    public void registerHandler(@NonNull String name, @NonNull CompletionHandler handler) {
+        synchronized (mHandlers) {
+            mHandlers.put(name, handler);
+        }
+        if (!mStarted) return;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliverResults();
+            }
+        });
+    }
+
+    /**
+     * Loads the pending requests from the journal, delivers the stored results and starts
+     * sending the requests whenever there is connectivity. Does nothing if it's already started.
+     */
+    public void start() {
+        if (mStarted) return;
+        mStarted = true;
+        mNetworkListener = ConnectivityUtils.registerNetworkListener(mContext,
+                new ConnectivityUtils.NetworkListener() {
+                    @Override
+                    public void onNetworkChanged() {
+                        if (ConnectivityUtils.isConnected(mContext)) replay();
+                    }
+                });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                openJournal();
+                deliverResults();
+                replayBatch();
+            }
+        });
+    }
+
+    /**
+     * Stops sending requests and closes the journal. Pending requests and undelivered results
+     * are kept for the next time the outbox is started. Does nothing if it's not started.
+     */
+    public void stop() {
+        if (!mStarted) return;
+        mStarted = false;
+        ConnectivityUtils.unregisterNetworkListener(mContext, mNetworkListener);
+        mNetworkListener = null;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mJournal.sync();
+                    mJournal.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Couldn't close the outbox journal", e);
+                }
+                mPending = null;
+                mDelivering.clear();
+            }
+        });
+    }
+
+    /**
+     * Stores the request of a Retrofit {@link Call} to send it when possible. The call itself is
+     * not executed.
+     *
+     * @param call           the call to store
+     * @param idempotencyKey key that identifies the request, also sent to the server in the
+     *                       "Idempotency-Key" header
+     * @param handlerName    name of the {@link CompletionHandler} to notify
+     * @throws IOException if the body of the request can't be read
+     */
+    public void enqueue(@NonNull Call<?> call, @NonNull String idempotencyKey,
+                        @NonNull String handlerName) throws IOException {
+        enqueue(call.request(), idempotencyKey, handlerName);
+    }
+
+    /**
+     * Stores the request to send it when possible.
+     *
+     * @param request        the request to store
+     * @param idempotencyKey key that identifies the request, also sent to the server in the
+     *                       "Idempotency-Key" header
+     * @param handlerName    name of the {@link CompletionHandler} to notify
+     * @throws IOException if the body of the request can't be read
+     */
+    public void enqueue(@NonNull Request request, @NonNull String idempotencyKey,
+                        @NonNull String handlerName) throws IOException {
+        final OutboxRequest outboxRequest =
+                OutboxRequest.from(request, idempotencyKey, handlerName);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                openJournal();
+                if (mPending.containsKey(outboxRequest.getIdempotencyKey())) return;
+
+                mPending.put(outboxRequest.getIdempotencyKey(), outboxRequest);
+                try {
+                    mJournal.append(outboxRequest);
+                } catch (IOException e) {
+                    Log.e(TAG, "Couldn't store request " + outboxRequest.getIdempotencyKey(), e);
+                }
+                syncJournal(false);
+                replayBatch();
+            }
+        });
+    }
+
+    /**
+     * Sends the pending requests if there is connectivity.
+     */
+    public void replay() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayBatch();
+            }
+        });
+    }
+
+    private void openJournal() {
+        if (mPending != null) return;
+        try {
+            mPending = mJournal.open();
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't open the outbox journal", e);
+            mPending = new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Sends, in order, the next batch of pending requests not answered yet. If every request is
+     * answered, the next batch is scheduled right away. Otherwise, it's retried later.
+     */
+    private void replayBatch() {
+        if (mPending == null || mPending.isEmpty()) return;
+        if (!ConnectivityUtils.isConnected(mContext)) return;
+
+        List<OutboxRequest> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+        for (OutboxRequest request : mPending.values()) {
+            if (batch.size() == REPLAY_BATCH_SIZE) break;
+            if (!request.isAnswered()) batch.add(request);
+        }
+        if (batch.isEmpty()) return;
+
+        boolean interrupted = false;
+        for (OutboxRequest request : batch) {
+            if (!send(request)) {
+                interrupted = true;
+                break;
+            }
+        }
+
+        syncJournal(true);
+        compactJournal();
+
+        if (interrupted) {
+            scheduleRetry();
+        } else if (batch.size() == REPLAY_BATCH_SIZE) {
+            replay();
+        }
+    }
+
+    /**
+     * Sends a request and stores its result if the server answered it with a response that
+     * retrying won't change. The request is done once its handler receives the result.
+     *
+     * @param request request to send
+     * @return <b>true</b> if the request is answered, <b>false</b> if it must be retried
+     */
+    private boolean send(@NonNull OutboxRequest request) {
+        int code;
+        String body;
+        try {
+            Response response = mClient.newCall(request.toRequest()).execute();
+            code = response.code();
+            if (isRetryable(code)) {
+                response.close();
+                return false;
+            }
+            body = readBody(response.body());
+        } catch (IOException e) {
+            return false;
+        }
+
+        request.setResult(code, body);
+        try {
+            mJournal.markAnswered(request);
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't store the result of " + request.getIdempotencyKey(), e);
+        }
+        notifyHandler(request);
+        return true;
+    }
+
+    /**
+     * Delivers the stored results of the answered requests to their handlers, if registered.
+     */
+    private void deliverResults() {
+        if (mPending == null) return;
+        for (OutboxRequest request : mPending.values()) {
+            if (request.isAnswered()) notifyHandler(request);
+        }
+    }
+
+    /**
+     * Posts the result of an answered request to its handler, unless it's being posted already.
+     * The request is marked as done only once the handler received it. If there's no handler
+     * registered, the result is kept until there's one.
+     */
+    private void notifyHandler(@NonNull final OutboxRequest request) {
+        if (!mDelivering.add(request.getIdempotencyKey())) return;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                CompletionHandler handler;
+                synchronized (mHandlers) {
+                    handler = mHandlers.get(request.getHandlerName());
+                }
+                if (handler == null) {
+                    Log.w(TAG, "No handler registered with name " + request.getHandlerName()
+                            + ", keeping the result of " + request.getIdempotencyKey());
+                } else if (request.getResultCode() >= 200 && request.getResultCode() < 300) {
+                    handler.onRequestSuccessful(request.getIdempotencyKey(),
+                            request.getResultBody());
+                } else {
+                    handler.onRequestFailed(request.getIdempotencyKey(), request.getResultBody(),
+                            request.getResultCode());
+                }
+                onNotified(request, handler != null);
+            }
+        });
+    }
+
+    private void onNotified(@NonNull final OutboxRequest request, final boolean delivered) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // After stop(), the result is delivered again on the next start()
+                if (mPending == null) return;
+                String key = request.getIdempotencyKey();
+                mDelivering.remove(key);
+                if (!delivered || mPending.get(key) != request) return;
+
+                mPending.remove(key);
+                try {
+                    mJournal.markDone(key);
+                } catch (IOException e) {
+                    Log.e(TAG, "Couldn't mark request " + key + " as done", e);
+                }
+                syncJournal(false);
+                compactJournal();
+            }
+        });
+    }
+
+    /**
+     * Syncs the journal if enough records were written or if forced to. Otherwise, it schedules
+     * a sync so records written close in time share it.
+     *
+     * @param force <b>true</b> to sync right away
+     */
+    private void syncJournal(boolean force) {
+        if (force || mJournal.getUnsyncedRecords() >= SYNC_BATCH_SIZE) {
+            try {
+                mJournal.sync();
+            } catch (IOException e) {
+                Log.e(TAG, "Couldn't sync the outbox journal", e);
+            }
+        } else if (!mSyncScheduled) {
+            mSyncScheduled = true;
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mSyncScheduled = false;
+                    if (mPending != null) syncJournal(true);
+                }
+            }, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void compactJournal() {
+        if (!mJournal.shouldCompact(mPending.size())) return;
+        try {
+            mJournal.compact(mPending.values());
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't compact the outbox journal", e);
+        }
+    }
+
+    private void scheduleRetry() {
+        if (mRetryScheduled) return;
+        mRetryScheduled = true;
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mRetryScheduled = false;
+                replayBatch();
+            }
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isRetryable(int code) {
+        return code >= NetworkCodes.ERROR_INTERNAL
+                || code == NetworkCodes.ERROR_REQUEST_TIMEOUT
+                || code == NetworkCodes.ERROR_TOO_MANY_REQUESTS;
+    }
+
+    @Nullable
+    private static String readBody(@Nullable ResponseBody body) {
+        if (body == null) return null;
+        try {
+            return body.string();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            body.close();
+        }
+    }
+}
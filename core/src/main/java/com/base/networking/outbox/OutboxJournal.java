@@ -0,0 +1,302 @@
+package com.base.networking.outbox;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file that stores the requests of an {@link Outbox}.
+ * <p>
+ * Every change is appended as a record framed by its length and a CRC32 checksum, so a record
+ * torn by a crash is detected and dropped when loading. Records are not synced to disk one by
+ * one, the owner decides when to call {@link #sync()} to batch them. Once enough requests are
+ * done the file is compacted, rewriting only the pending ones.
+ * <p>
+ * A request goes through three records: added, answered by the server, with its result, and
+ * done, once the result was delivered. Answered requests are still returned as pending, with
+ * their result, so it's delivered after a restart.
+ * <p>
+ * This class is not thread safe.
+ */
+class OutboxJournal {
+
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DONE = 2;
+    private static final byte RECORD_RESULT = 3;
+
+    private static final int MIN_DONE_RECORDS_TO_COMPACT = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    private FileOutputStream mFileStream;
+    private DataOutputStream mOut;
+    private int mUnsyncedRecords;
+    private int mDoneRecords;
+
+    OutboxJournal(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Reads the journal and opens it to append new records. Records after a torn or corrupted
+     * one are discarded.
+     *
+     * @return the pending requests, by idempotency key, in the order they were added
+     * @throws IOException if the journal can't be read or opened
+     */
+    @NonNull
+    LinkedHashMap<String, OutboxRequest> open() throws IOException {
+        LinkedHashMap<String, OutboxRequest> pending = new LinkedHashMap<>();
+        long validLength = 0;
+        mDoneRecords = 0;
+
+        if (mFile.exists()) {
+            long fileLength = mFile.length();
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                while (true) {
+                    int length = in.readInt();
+                    if (length <= 0 || validLength + length + 8 > fileLength) break;
+
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    if (in.readInt() != checksum(payload)) break;
+
+                    if (!readRecord(payload, pending)) break;
+                    validLength += length + 8;
+                }
+            } catch (EOFException e) {
+                // Torn record at the end of the file
+            } finally {
+                in.close();
+            }
+
+            if (validLength < fileLength) truncate(validLength);
+        }
+
+        openForAppend();
+        return pending;
+    }
+
+    /**
+     * Appends a new pending request.
+     *
+     * @param request request to add
+     * @throws IOException if the record can't be written
+     */
+    void append(@NonNull OutboxRequest request) throws IOException {
+        checkOpen();
+        writeRecord(mOut, addPayload(request));
+        mUnsyncedRecords++;
+    }
+
+    /**
+     * Appends the result of a request answered by the server, set with
+     * {@link OutboxRequest#setResult(int, String)}.
+     *
+     * @param request the answered request
+     * @throws IOException if the record can't be written
+     */
+    void markAnswered(@NonNull OutboxRequest request) throws IOException {
+        checkOpen();
+        writeRecord(mOut, resultPayload(request));
+        mUnsyncedRecords++;
+    }
+
+    /**
+     * Appends a record marking a request as done.
+     *
+     * @param idempotencyKey key of the request
+     * @throws IOException if the record can't be written
+     */
+    void markDone(@NonNull String idempotencyKey) throws IOException {
+        checkOpen();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(RECORD_DONE);
+        payload.writeUTF(idempotencyKey);
+        writeRecord(mOut, bytes.toByteArray());
+        mUnsyncedRecords++;
+        mDoneRecords++;
+    }
+
+    /**
+     * Returns the amount of records written since the last {@link #sync()}.
+     *
+     * @return unsynced records
+     */
+    int getUnsyncedRecords() {
+        return mUnsyncedRecords;
+    }
+
+    /**
+     * Flushes the written records and forces them to be stored on disk.
+     *
+     * @throws IOException if the records can't be synced
+     */
+    void sync() throws IOException {
+        if (mUnsyncedRecords == 0) return;
+        mOut.flush();
+        mFileStream.getFD().sync();
+        mUnsyncedRecords = 0;
+    }
+
+    /**
+     * Checks if there are enough done records for a compaction to be worth it.
+     *
+     * @param pendingCount amount of pending requests
+     * @return <b>true</b> if the journal should be compacted, <b>false</b> otherwise.
+     */
+    boolean shouldCompact(int pendingCount) {
+        return mDoneRecords >= MIN_DONE_RECORDS_TO_COMPACT && mDoneRecords > pendingCount;
+    }
+
+    /**
+     * Rewrites the journal with only the given pending requests. The new journal is written to a
+     * temporary file and then renamed, so a crash in between keeps the previous one.
+     * Unsynced records are expected to be included in the pending requests.
+     *
+     * @param pending pending requests, in order
+     * @throws IOException if the journal can't be rewritten
+     */
+    void compact(@NonNull Collection<OutboxRequest> pending) throws IOException {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        FileOutputStream tempStream = new FileOutputStream(tempFile, false);
+        DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(tempStream));
+        try {
+            for (OutboxRequest request : pending) {
+                writeRecord(tempOut, addPayload(request));
+                if (request.isAnswered()) writeRecord(tempOut, resultPayload(request));
+            }
+            tempOut.flush();
+            tempStream.getFD().sync();
+        } finally {
+            tempOut.close();
+        }
+
+        close();
+        if (!tempFile.renameTo(mFile)) {
+            throw new IOException("Couldn't replace " + mFile + " with its compacted version");
+        }
+
+        mDoneRecords = 0;
+        mUnsyncedRecords = 0;
+        openForAppend();
+    }
+
+    /**
+     * Flushes and closes the journal file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    void close() throws IOException {
+        if (mOut != null) {
+            mOut.close();
+            mOut = null;
+            mFileStream = null;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (mOut == null) throw new IOException("The journal " + mFile + " is not open");
+    }
+
+    private void openForAppend() throws IOException {
+        mFileStream = new FileOutputStream(mFile, true);
+        mOut = new DataOutputStream(new BufferedOutputStream(mFileStream));
+    }
+
+    @NonNull
+    private static byte[] addPayload(@NonNull OutboxRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(RECORD_ADD);
+        request.write(payload);
+        return bytes.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] resultPayload(@NonNull OutboxRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(RECORD_RESULT);
+        payload.writeUTF(request.getIdempotencyKey());
+        payload.writeInt(request.getResultCode());
+        // writeUTF() is limited to 64 KB, too little for a response body
+        String body = request.getResultBody();
+        byte[] bodyBytes = body == null ? null : body.getBytes(UTF_8);
+        payload.writeInt(bodyBytes == null ? -1 : bodyBytes.length);
+        if (bodyBytes != null) payload.write(bodyBytes);
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(@NonNull DataOutputStream out, @NonNull byte[] payload)
+            throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt(checksum(payload));
+    }
+
+    private boolean readRecord(@NonNull byte[] payload,
+                               @NonNull LinkedHashMap<String, OutboxRequest> pending) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            byte type = in.readByte();
+            if (type == RECORD_ADD) {
+                OutboxRequest request = OutboxRequest.read(in);
+                pending.put(request.getIdempotencyKey(), request);
+            } else if (type == RECORD_RESULT) {
+                OutboxRequest request = pending.get(in.readUTF());
+                int code = in.readInt();
+                String body = null;
+                int bodyLength = in.readInt();
+                if (bodyLength >= 0) {
+                    byte[] bodyBytes = new byte[bodyLength];
+                    in.readFully(bodyBytes);
+                    body = new String(bodyBytes, UTF_8);
+                }
+                if (request != null) request.setResult(code, body);
+            } else if (type == RECORD_DONE) {
+                pending.remove(in.readUTF());
+                mDoneRecords++;
+            } else {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static int checksum(@NonNull byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,200 @@
+package com.base.networking.outbox;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+/**
+ * A snapshot of a request stored in the {@link Outbox}, with everything needed to send it again
+ * after the process is restarted.
+ */
+public class OutboxRequest {
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final String mIdempotencyKey;
+    private final String mHandlerName;
+    private final String mMethod;
+    private final String mUrl;
+    private final Headers mHeaders;
+    private final String mContentType;
+    private final byte[] mBody;
+
+    // Answer of the server, kept until a handler receives it
+    private int mResultCode;
+    private String mResultBody;
+
+    private OutboxRequest(@NonNull String idempotencyKey, @NonNull String handlerName,
+                          @NonNull String method, @NonNull String url, @NonNull Headers headers,
+                          @Nullable String contentType, @Nullable byte[] body) {
+        mIdempotencyKey = idempotencyKey;
+        mHandlerName = handlerName;
+        mMethod = method;
+        mUrl = url;
+        mHeaders = headers;
+        mContentType = contentType;
+        mBody = body;
+    }
+
+    /**
+     * Takes a snapshot of the request, reading its body.
+     *
+     * @param request        request to store
+     * @param idempotencyKey key that identifies the request, also sent as the "Idempotency-Key"
+     *                       header
+     * @param handlerName    name of the {@link Outbox.CompletionHandler} to notify
+     * @return the snapshot of the request
+     * @throws IOException if the body can't be read
+     */
+    @NonNull
+    static OutboxRequest from(@NonNull Request request, @NonNull String idempotencyKey,
+                              @NonNull String handlerName) throws IOException {
+        RequestBody body = request.body();
+        String contentType = null;
+        byte[] bytes = null;
+        if (body != null) {
+            MediaType mediaType = body.contentType();
+            if (mediaType != null) contentType = mediaType.toString();
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            bytes = buffer.readByteArray();
+        }
+
+        return new OutboxRequest(idempotencyKey, handlerName, request.method(),
+                request.url().toString(), request.headers(), contentType, bytes);
+    }
+
+    /**
+     * Reads a request written by {@link #write(DataOutputStream)}.
+     *
+     * @param in stream to read from
+     * @return the request read
+     * @throws IOException if the stream can't be read
+     */
+    @NonNull
+    static OutboxRequest read(@NonNull DataInputStream in) throws IOException {
+        String idempotencyKey = in.readUTF();
+        String handlerName = in.readUTF();
+        String method = in.readUTF();
+        String url = in.readUTF();
+
+        Headers.Builder headers = new Headers.Builder();
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(in.readUTF(), in.readUTF());
+        }
+
+        String contentType = in.readBoolean() ? in.readUTF() : null;
+        byte[] body = null;
+        int bodyLength = in.readInt();
+        if (bodyLength >= 0) {
+            body = new byte[bodyLength];
+            in.readFully(body);
+        }
+
+        return new OutboxRequest(idempotencyKey, handlerName, method, url, headers.build(),
+                contentType, body);
+    }
+
+    /**
+     * Writes the request so it can be read with {@link #read(DataInputStream)}.
+     *
+     * @param out stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    void write(@NonNull DataOutputStream out) throws IOException {
+        out.writeUTF(mIdempotencyKey);
+        out.writeUTF(mHandlerName);
+        out.writeUTF(mMethod);
+        out.writeUTF(mUrl);
+
+        out.writeInt(mHeaders.size());
+        for (int i = 0; i < mHeaders.size(); i++) {
+            out.writeUTF(mHeaders.name(i));
+            out.writeUTF(mHeaders.value(i));
+        }
+
+        out.writeBoolean(mContentType != null);
+        if (mContentType != null) out.writeUTF(mContentType);
+        out.writeInt(mBody == null ? -1 : mBody.length);
+        if (mBody != null) out.write(mBody);
+    }
+
+    /**
+     * Builds the OkHttp request to send, including the "Idempotency-Key" header.
+     *
+     * @return a new {@link Request}
+     */
+    @NonNull
+    Request toRequest() {
+        RequestBody body = null;
+        if (mBody != null) {
+            MediaType mediaType = mContentType == null ? null : MediaType.parse(mContentType);
+            body = RequestBody.create(mediaType, mBody);
+        }
+
+        return new Request.Builder()
+                .url(mUrl)
+                .headers(mHeaders)
+                .header(IDEMPOTENCY_KEY_HEADER, mIdempotencyKey)
+                .method(mMethod, body)
+                .build();
+    }
+
+    /**
+     * Stores the answer of the server, which isn't retried anymore.
+     *
+     * @param code code of the response
+     * @param body body of the response, if any
+     */
+    void setResult(int code, @Nullable String body) {
+        mResultCode = code;
+        mResultBody = body;
+    }
+
+    /**
+     * @return <b>true</b> if the server answered the request and its result is waiting to be
+     * delivered, <b>false</b> if it must be sent
+     */
+    boolean isAnswered() {
+        return mResultCode != 0;
+    }
+
+    int getResultCode() {
+        return mResultCode;
+    }
+
+    @Nullable
+    String getResultBody() {
+        return mResultBody;
+    }
+
+    @NonNull
+    public String getIdempotencyKey() {
+        return mIdempotencyKey;
+    }
+
+    @NonNull
+    public String getHandlerName() {
+        return mHandlerName;
+    }
+
+    @NonNull
+    public String getMethod() {
+        return mMethod;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return mUrl;
+    }
+}
@@ -0,0 +1,41 @@
+package com.base.networking.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+import retrofit2.Response;
+
+/**
+ * A {@link Pager} for APIs that return, with each page, an opaque cursor to request the next
+ * one. The list ends when the API doesn't return a cursor.
+ *
+ * @param <R> type of the API response
+ * @param <T> type of the items of the list
+ */
+public abstract class CursorPager<R, T> extends Pager<String, R, T> {
+
+    protected CursorPager(int pageSize, int prefetchDistance, int maxPages) {
+        super(pageSize, prefetchDistance, maxPages);
+    }
+
+    /**
+     * Returns the cursor of the next page from the API response.
+     *
+     * @param body API response
+     * @return the cursor, or null if it was the last page
+     */
+    @Nullable
+    protected abstract String getNextCursor(@NonNull R body);
+
+    @Nullable
+    @Override
+    protected String getNextKey(@Nullable String key, @NonNull Response<R> response,
+                                @NonNull List<T> items) {
+        R body = response.body();
+        if (body == null) return null;
+        String cursor = getNextCursor(body);
+        return cursor == null || cursor.isEmpty() ? null : cursor;
+    }
+}
@@ -0,0 +1,47 @@
+package com.base.networking.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+import retrofit2.Response;
+
+/**
+ * A {@link Pager} for APIs that return the URL of the next page in a "Link" header
+ * (<a href="https://tools.ietf.org/html/rfc8288">RFC 8288</a>), with the "next" relation.
+ * The key of every page but the first one is its absolute URL, so the Retrofit service should
+ * receive it with an {@link retrofit2.http.Url} parameter.
+ *
+ * @param <R> type of the API response
+ * @param <T> type of the items of the list
+ */
+public abstract class LinkHeaderPager<R, T> extends Pager<String, R, T> {
+
+    private static final String LINK_HEADER = "Link";
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>([^,]*)");
+    private static final Pattern NEXT_REL_PATTERN =
+            Pattern.compile(";\\s*rel\\s*=\\s*\"?([^\";]*\\s)?next(\\s[^\";]*)?\"?");
+
+    protected LinkHeaderPager(int pageSize, int prefetchDistance, int maxPages) {
+        super(pageSize, prefetchDistance, maxPages);
+    }
+
+    @Nullable
+    @Override
+    protected String getNextKey(@Nullable String key, @NonNull Response<R> response,
+                                @NonNull List<T> items) {
+        for (String header : response.headers().values(LINK_HEADER)) {
+            Matcher link = LINK_PATTERN.matcher(header);
+            while (link.find()) {
+                if (!NEXT_REL_PATTERN.matcher(link.group(2)).find()) continue;
+                HttpUrl next = response.raw().request().url().resolve(link.group(1));
+                return next == null ? null : next.toString();
+            }
+        }
+        return null;
+    }
+}
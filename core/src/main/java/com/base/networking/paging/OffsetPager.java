@@ -0,0 +1,64 @@
+package com.base.networking.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * A {@link Pager} for APIs that receive the offset of the first item to return. The list ends
+ * when a page has fewer items than requested.
+ *
+ * @param <R> type of the API response
+ * @param <T> type of the items of the list
+ */
+public abstract class OffsetPager<R, T> extends Pager<Integer, R, T> {
+
+    // Page size requested for each offset, since it may change between pages. Entries are
+    // removed once the page after them is known, so only the pages loading are kept.
+    private final TreeMap<Integer, Integer> mRequestedSizes = new TreeMap<>();
+
+    protected OffsetPager(int pageSize, int prefetchDistance, int maxPages) {
+        super(pageSize, prefetchDistance, maxPages);
+    }
+
+    /**
+     * Creates the call that requests a page.
+     *
+     * @param offset   position of the first item to request
+     * @param pageSize amount of items to request
+     * @return the call to request the page
+     */
+    @NonNull
+    protected abstract Call<R> createCall(int offset, int pageSize);
+
+    @NonNull
+    @Override
+    protected final Call<R> createCall(@Nullable Integer key, int pageSize) {
+        int offset = key == null ? 0 : key;
+        mRequestedSizes.put(offset, pageSize);
+        return createCall(offset, pageSize);
+    }
+
+    @Override
+    public void refresh() {
+        mRequestedSizes.clear();
+        super.refresh();
+    }
+
+    @Nullable
+    @Override
+    protected Integer getNextKey(@Nullable Integer key, @NonNull Response<R> response,
+                                 @NonNull List<T> items) {
+        int offset = key == null ? 0 : key;
+        Integer requestedSize = mRequestedSizes.get(offset);
+        // Pages loaded again after being dropped never get here, their offsets are all before
+        mRequestedSizes.headMap(offset, true).clear();
+        if (requestedSize != null && items.size() < requestedSize) return null;
+        return offset + items.size();
+    }
+}
@@ -0,0 +1,355 @@
+package com.base.networking.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.bandwidth.BandwidthEstimator;
+import com.base.networking.retrofit.call.CallScope;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * Loads a paged list from the API, page by page, keeping track of the key of each page.
+ * <p>
+ * Call {@link #onItemAccessed(int)} every time an item is shown, usually when binding it in an
+ * adapter: the next page is requested as soon as the user gets closer than the prefetch distance
+ * to the end of the loaded items, so it's ready before the user reaches it. Only the given
+ * amount of pages is kept in memory. The pages farthest from the last one accessed are dropped,
+ * and loaded again with their key if the user scrolls back to them. While a page is loading,
+ * its items are returned as null.
+ * <p>
+ * Requesting a page that is already loading has no effect. This class is meant to be used from
+ * the main thread, where Retrofit delivers its callbacks.
+ *
+ * @param <K> type of the key that identifies a page
+ * @param <R> type of the API response
+ * @param <T> type of the items of the list
+ */
+public abstract class Pager<K, R, T> {
+
+    private final int mPageSize;
+    private final int mPrefetchDistance;
+    private final int mMaxPages;
+    private final List<PageEntry<K, T>> mPages = new ArrayList<>();
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    private final CallScope mCallScope = new CallScope();
+    private PagerListener<T> mListener;
+    private K mNextKey;
+    private boolean mStarted;
+    private boolean mEnded;
+    private boolean mAdaptivePageSize;
+
+    /**
+     * Callback for the pages loaded by a {@link Pager}.
+     *
+     * @param <T> type of the items of the list
+     */
+    public interface PagerListener<T> {
+
+        /**
+         * A page was loaded, or loaded again after being dropped from memory.
+         *
+         * @param page      index of the page
+         * @param firstItem position of the first item of the page in the whole list
+         * @param items     items of the page
+         */
+        void onPageLoaded(int page, int firstItem, @NonNull List<T> items);
+
+        /**
+         * A page couldn't be loaded.
+         *
+         * @param page index of the page
+         * @param t    the cause of the failure, a {@link HttpException} if the API answered with
+         *             an error
+         */
+        void onPageFailed(int page, @NonNull Throwable t);
+    }
+
+    /**
+     * @param pageSize         amount of items requested per page
+     * @param prefetchDistance amount of items from the end of the loaded ones at which the next
+     *                         page is requested
+     * @param maxPages         max amount of pages kept in memory
+     */
+    protected Pager(int pageSize, int prefetchDistance, int maxPages) {
+        if (pageSize <= 0 || maxPages < 2) {
+            throw new IllegalArgumentException("Page size must be > 0 and max pages >= 2");
+        }
+        mPageSize = pageSize;
+        mPrefetchDistance = prefetchDistance;
+        mMaxPages = maxPages;
+    }
+
+    /**
+     * Creates the call that requests a page.
+     *
+     * @param key      key of the page, the one returned by {@link #getFirstKey()} for the first
+     *                 page
+     * @param pageSize amount of items to request
+     * @return the call to request the page
+     */
+    @NonNull
+    protected abstract Call<R> createCall(@Nullable K key, int pageSize);
+
+    /**
+     * Returns the items of a page from the API response.
+     *
+     * @param body API response
+     * @return items of the page
+     */
+    @NonNull
+    protected abstract List<T> getItems(@NonNull R body);
+
+    /**
+     * Returns the key of the page after the one received.
+     *
+     * @param key      key of the page received
+     * @param response API response
+     * @param items    items of the page received
+     * @return the key of the next page, or null if it was the last one
+     */
+    @Nullable
+    protected abstract K getNextKey(@Nullable K key, @NonNull Response<R> response,
+                                    @NonNull List<T> items);
+
+    /**
+     * Override if needed.
+     * Returns the key of the first page. By default, it's null.
+     *
+     * @return key of the first page
+     */
+    @Nullable
+    protected K getFirstKey() {
+        return null;
+    }
+
+    /**
+     * Override if needed.
+     * Returns the amount of items to request in the next page. By default, it's the page size
+     * given in the constructor, adapted by the {@link BandwidthEstimator} to the current link if
+     * {@link #setAdaptivePageSize(boolean)} was enabled.
+     *
+     * @return amount of items to request
+     */
+    protected int getPageSize() {
+        if (mAdaptivePageSize) return BandwidthEstimator.getInstance().adaptPageSize(mPageSize);
+        return mPageSize;
+    }
+
+    /**
+     * Makes the pages smaller on slow links and bigger on fast ones. The page size given in the
+     * constructor is used for good links. It's disabled by default.
+     *
+     * @param adaptive <b>true</b> to adapt the page size to the link
+     */
+    public void setAdaptivePageSize(boolean adaptive) {
+        mAdaptivePageSize = adaptive;
+    }
+
+    public void setListener(@Nullable PagerListener<T> listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Drops every page and loads the first one again.
+     */
+    public void refresh() {
+        cancel();
+        mPages.clear();
+        mNextKey = getFirstKey();
+        mEnded = false;
+        mStarted = true;
+        loadNextPage();
+    }
+
+    /**
+     * Requests the page after the last one loaded, if there is one and it's not loading.
+     */
+    public void loadNextPage() {
+        if (!mStarted) {
+            refresh();
+            return;
+        }
+        if (mEnded) return;
+        load(mPages.size(), mNextKey, getPageSize());
+    }
+
+    /**
+     * Cancels every page that is loading.
+     */
+    public void cancel() {
+        mCallScope.cancelAll();
+        mLoadingPages.clear();
+    }
+
+    /**
+     * Notifies that the item in the given position was shown. It loads the next page if the
+     * position is closer to the end than the prefetch distance, and loads again the page of the
+     * item if it was dropped from memory.
+     *
+     * @param position position of the item
+     */
+    public void onItemAccessed(int position) {
+        int page = getPageOf(position);
+        if (page >= 0 && mPages.get(page).mItems == null) {
+            // Request the same amount of items, so the positions of the next pages don't change
+            PageEntry<K, T> entry = mPages.get(page);
+            load(page, entry.mKey, Math.max(1, entry.mItemCount));
+        }
+        if (getItemCount() - 1 - position < mPrefetchDistance) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Returns the item in the given position.
+     *
+     * @param position position of the item
+     * @return the item, or null if its page is not in memory
+     */
+    @Nullable
+    public T getItem(int position) {
+        int page = getPageOf(position);
+        if (page < 0) return null;
+        PageEntry<K, T> entry = mPages.get(page);
+        int index = position - getFirstItemOf(page);
+        if (entry.mItems == null || index >= entry.mItems.size()) return null;
+        return entry.mItems.get(index);
+    }
+
+    /**
+     * Returns the amount of items of the pages received, including the ones dropped from memory.
+     *
+     * @return amount of items
+     */
+    public int getItemCount() {
+        int count = 0;
+        for (PageEntry<K, T> page : mPages) {
+            count += page.mItemCount;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if every page was received.
+     *
+     * @return <b>true</b> if the last page was received, <b>false</b> otherwise
+     */
+    public boolean isEnded() {
+        return mEnded;
+    }
+
+    /**
+     * Checks if any page is loading.
+     *
+     * @return <b>true</b> if a page is loading, <b>false</b> otherwise
+     */
+    public boolean isLoading() {
+        return !mLoadingPages.isEmpty();
+    }
+
+    private void load(final int page, @Nullable final K key, int pageSize) {
+        if (!mLoadingPages.add(page)) return;
+
+        mCallScope.enqueue(createCall(key, pageSize), new Callback<R>() {
+            @Override
+            public void onResponse(Call<R> call, Response<R> response) {
+                if (!mLoadingPages.remove(page)) return;
+                R body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    notifyFailure(page, new HttpException(response));
+                    return;
+                }
+
+                List<T> items = getItems(body);
+                if (page == mPages.size()) {
+                    mPages.add(new PageEntry<>(key, items));
+                    mNextKey = getNextKey(key, response, items);
+                    mEnded = mNextKey == null || items.isEmpty();
+                } else if (page < mPages.size()) {
+                    mPages.get(page).mItems = items;
+                } else {
+                    return;
+                }
+
+                dropFarthestPages(page);
+                if (mListener != null) {
+                    mListener.onPageLoaded(page, getFirstItemOf(page), items);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<R> call, Throwable t) {
+                if (mLoadingPages.remove(page)) notifyFailure(page, t);
+            }
+        });
+    }
+
+    private void notifyFailure(int page, @NonNull Throwable t) {
+        if (mListener != null) mListener.onPageFailed(page, t);
+    }
+
+    /**
+     * Drops from memory the pages farthest from the given one until there are at most
+     * mMaxPages loaded.
+     *
+     * @param current page to keep
+     */
+    private void dropFarthestPages(int current) {
+        int loaded = 0;
+        for (PageEntry<K, T> page : mPages) {
+            if (page.mItems != null) loaded++;
+        }
+
+        while (loaded > mMaxPages) {
+            int farthest = -1;
+            for (int i = 0; i < mPages.size(); i++) {
+                if (mPages.get(i).mItems == null) continue;
+                if (farthest < 0 || Math.abs(i - current) > Math.abs(farthest - current)) {
+                    farthest = i;
+                }
+            }
+            mPages.get(farthest).mItems = null;
+            loaded--;
+        }
+    }
+
+    private int getPageOf(int position) {
+        if (position < 0) return -1;
+        int first = 0;
+        for (int i = 0; i < mPages.size(); i++) {
+            first += mPages.get(i).mItemCount;
+            if (position < first) return i;
+        }
+        return -1;
+    }
+
+    private int getFirstItemOf(int page) {
+        int first = 0;
+        for (int i = 0; i < page; i++) {
+            first += mPages.get(i).mItemCount;
+        }
+        return first;
+    }
+
+    private static class PageEntry<K, T> {
+
+        private final K mKey;
+        private final int mItemCount;
+        private List<T> mItems;
+
+        PageEntry(@Nullable K key, @NonNull List<T> items) {
+            mKey = key;
+            mItemCount = items.size();
+            mItems = items;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.base.networking.prefetch;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Performs requests whose responses are likely to be needed soon, like the detail of the first
+ * rows of a list, so they are stored in the response cache of the client before the user asks
+ * for them.
+ * <p>
+ * Prefetches never compete with the work the user is waiting for: hints are queued and started
+ * only when the main thread is idle and the client has no other call running or queued, besides
+ * open streams. The amount of prefetches running at the same time and the bytes downloaded in
+ * each time window are limited by a global budget. Hints that don't fit the remaining budget are
+ * dropped.
+ * <p>
+ * The client must have a {@link okhttp3.Cache}, see
+ * {@link com.base.networking.retrofit.RetrofitServices#getCache()}. Without it, hints are ignored.
+ * Responses already fresh in the cache don't use the network nor the budget.
+ * <p>
+ * Hints are usually submitted through
+ * {@link com.base.core.presenter.BasePresenter#prefetch(retrofit2.Call)}.
+ */
+public class PrefetchScheduler {
+
+    private static final Object PREFETCH_TAG = new Object();
+
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    private static final long DEFAULT_WINDOW_MS = 10 * 60 * 1000;
+    private static final int DEFAULT_MAX_CONCURRENT = 2;
+    private static final int MAX_PENDING = 32;
+    private static final long BUSY_RETRY_DELAY_MS = 500;
+
+    private static PrefetchScheduler sInstance; // Singleton
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Accessed only from the main thread
+    private final ArrayDeque<Hint> mPending = new ArrayDeque<>();
+    private final Set<String> mScheduledUrls = new HashSet<>();
+    private boolean mIdleHandlerAdded;
+    private boolean mRetryPosted;
+    private int mRunning;
+    private long mWindowStart;
+    private long mWindowBytes;
+
+    private volatile OkHttpClient mClient;
+    private volatile long mMaxBytes = DEFAULT_MAX_BYTES;
+    private volatile long mWindowMs = DEFAULT_WINDOW_MS;
+    private volatile int mMaxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            startPending();
+            mIdleHandlerAdded = !mPending.isEmpty();
+            return mIdleHandlerAdded;
+        }
+    };
+
+    private final Runnable mRetry = new Runnable() {
+        @Override
+        public void run() {
+            // Nothing to do: it only wakes up the main thread so it becomes idle again
+            mRetryPosted = false;
+        }
+    };
+
+    public synchronized static PrefetchScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new PrefetchScheduler();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Sets the client used to prefetch, usually the one from
+     * {@link com.base.networking.retrofit.RetrofitServices#getClient()}, so the responses are
+     * stored in the cache used by the API calls. Done by
+     * {@link com.base.networking.retrofit.NetworkingApplication} on startup.
+     *
+     * @param client client with a response cache
+     */
+    public void setClient(@NonNull OkHttpClient client) {
+        mClient = client;
+    }
+
+    /**
+     * Sets the global budget of the prefetches. By default, 2 prefetches can run at the same time,
+     * downloading up to 1 MB every 10 minutes.
+     *
+     * @param maxBytes      max bytes downloaded by prefetches in each window
+     * @param windowMs      duration of the window, in milliseconds
+     * @param maxConcurrent max amount of prefetches running at the same time
+     */
+    public void setBudget(long maxBytes, long windowMs, int maxConcurrent) {
+        mMaxBytes = maxBytes;
+        mWindowMs = windowMs;
+        mMaxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Queues a request to be performed when the app is idle. Requests already queued or running
+     * are ignored, and the oldest hints are dropped if too many are waiting.
+     *
+     * @param owner   object that submits the hint, to cancel it with {@link #cancel(Object)}
+     * @param request GET request to prefetch
+     */
+    public void submit(@NonNull final Object owner, @NonNull final Request request) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    submit(owner, request);
+                }
+            });
+            return;
+        }
+
+        OkHttpClient client = mClient;
+        if (client == null || client.cache() == null || !request.method().equals("GET")) return;
+
+        String url = request.url().toString();
+        if (!mScheduledUrls.add(url)) return;
+        mPending.addLast(new Hint(owner, request));
+        if (mPending.size() > MAX_PENDING) {
+            mScheduledUrls.remove(mPending.removeFirst().mUrl);
+        }
+
+        if (!mIdleHandlerAdded) {
+            mIdleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(mIdleHandler);
+        }
+    }
+
+    /**
+     * Discards the hints of an owner that haven't started yet. The running ones are left to
+     * finish, since their responses will still be cached.
+     *
+     * @param owner object that submitted the hints
+     */
+    public void cancel(@NonNull final Object owner) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    cancel(owner);
+                }
+            });
+            return;
+        }
+
+        Iterator<Hint> iterator = mPending.iterator();
+        while (iterator.hasNext()) {
+            Hint hint = iterator.next();
+            if (hint.mOwner == owner) {
+                iterator.remove();
+                mScheduledUrls.remove(hint.mUrl);
+            }
+        }
+    }
+
+    /**
+     * Checks if a call is a prefetch, for interceptors or event listeners that must treat them
+     * differently.
+     *
+     * @param call the call
+     * @return <b>true</b> if the call was started by this scheduler
+     */
+    public static boolean isPrefetch(@NonNull Call call) {
+        return call.request().tag() == PREFETCH_TAG;
+    }
+
+    /**
+     * Starts as many pending hints as the budget allows, if the client is not busy.
+     * Called from the main thread when it's idle.
+     */
+    private void startPending() {
+        OkHttpClient client = mClient;
+        if (client == null) return;
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - mWindowStart >= mWindowMs) {
+            mWindowStart = now;
+            mWindowBytes = 0;
+        }
+
+        while (!mPending.isEmpty() && mRunning < mMaxConcurrent) {
+            if (mWindowBytes >= mMaxBytes) {
+                // Out of budget, the hints would be stale by the next window
+                for (Hint hint : mPending) {
+                    mScheduledUrls.remove(hint.mUrl);
+                }
+                mPending.clear();
+                return;
+            }
+            if (isBusy(client)) {
+                scheduleRetry();
+                return;
+            }
+            start(client, mPending.removeFirst());
+        }
+    }
+
+    /**
+     * Checks if the client is running or waiting to run calls other than prefetches. Streams,
+     * which keep their call running while connected, don't count.
+     */
+    private boolean isBusy(@NonNull OkHttpClient client) {
+        return hasForegroundCalls(client.dispatcher().runningCalls())
+                || hasForegroundCalls(client.dispatcher().queuedCalls());
+    }
+
+    private static boolean hasForegroundCalls(@NonNull List<Call> calls) {
+        for (Call call : calls) {
+            Request request = call.request();
+            if (request.tag() == PREFETCH_TAG) continue;
+            if ("websocket".equalsIgnoreCase(request.header("Upgrade"))) continue;
+            String accept = request.header("Accept");
+            if (accept != null && accept.startsWith("text/event-stream")) continue;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The main thread becomes idle only after handling a message, so one is posted to check
+     * again later if the client is still busy.
+     */
+    private void scheduleRetry() {
+        if (mRetryPosted) return;
+        mRetryPosted = true;
+        mMainHandler.postDelayed(mRetry, BUSY_RETRY_DELAY_MS);
+    }
+
+    private void start(@NonNull OkHttpClient client, @NonNull final Hint hint) {
+        mRunning++;
+        final long remainingBytes = mMaxBytes - mWindowBytes;
+        Request request = hint.mRequest.newBuilder().tag(PREFETCH_TAG).build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                finish(hint, 0);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                long bytes = 0;
+                try {
+                    if (response.networkResponse() != null) {
+                        bytes = consume(response.body(), remainingBytes);
+                    }
+                } catch (IOException e) {
+                    // The response won't be cached
+                } finally {
+                    response.close();
+                    finish(hint, bytes);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a body to the end, which is what stores it in the cache, unless it's bigger than the
+     * remaining budget. In that case it's abandoned and not cached.
+     *
+     * @return the bytes read
+     */
+    private static long consume(@Nullable ResponseBody body, long maxBytes) throws IOException {
+        if (body == null) return 0;
+        if (body.contentLength() > maxBytes) return 0;
+
+        BufferedSource source = body.source();
+        Buffer buffer = new Buffer();
+        long total = 0;
+        long read;
+        while ((read = source.read(buffer, 8192)) != -1) {
+            total += read;
+            buffer.clear();
+            if (total > maxBytes) break;
+        }
+        return total;
+    }
+
+    private void finish(@NonNull final Hint hint, final long bytes) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRunning--;
+                mWindowBytes += bytes;
+                mScheduledUrls.remove(hint.mUrl);
+                if (!mPending.isEmpty() && !mIdleHandlerAdded) {
+                    mIdleHandlerAdded = true;
+                    Looper.myQueue().addIdleHandler(mIdleHandler);
+                }
+            }
+        });
+    }
+
+    private static class Hint {
+
+        private final Object mOwner;
+        private final Request mRequest;
+        private final String mUrl;
+
+        Hint(@NonNull Object owner, @NonNull Request request) {
+            mOwner = owner;
+            mRequest = request;
+            mUrl = request.url().toString();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.base.networking.recording;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.Headers;
+
+/**
+ * A request and its response, as captured by the {@link TrafficRecorder}. Bodies are stored
+ * gzipped, since they are mostly JSON.
+ */
+public class TrafficRecord {
+
+    private final long mTimestampMs;
+    private final long mDurationMs;
+    private final String mMethod;
+    private final String mUrl;
+    private final Headers mRequestHeaders;
+    private final byte[] mRequestBody;
+    private final int mCode;
+    private final Headers mResponseHeaders;
+    private final byte[] mResponseBody;
+
+    TrafficRecord(long timestampMs, long durationMs, @NonNull String method, @NonNull String url,
+                  @NonNull Headers requestHeaders, @Nullable byte[] requestBody, int code,
+                  @NonNull Headers responseHeaders, @Nullable byte[] responseBody) {
+        mTimestampMs = timestampMs;
+        mDurationMs = durationMs;
+        mMethod = method;
+        mUrl = url;
+        mRequestHeaders = requestHeaders;
+        mRequestBody = requestBody;
+        mCode = code;
+        mResponseHeaders = responseHeaders;
+        mResponseBody = responseBody;
+    }
+
+    /**
+     * Reads a record written by {@link #write(DataOutputStream)}.
+     *
+     * @param in stream to read from
+     * @return the record read
+     * @throws IOException if the stream can't be read
+     */
+    @NonNull
+    static TrafficRecord read(@NonNull DataInputStream in) throws IOException {
+        long timestampMs = in.readLong();
+        long durationMs = in.readLong();
+        String method = in.readUTF();
+        String url = in.readUTF();
+        Headers requestHeaders = readHeaders(in);
+        byte[] requestBody = readBody(in);
+        int code = in.readShort();
+        Headers responseHeaders = readHeaders(in);
+        byte[] responseBody = readBody(in);
+        return new TrafficRecord(timestampMs, durationMs, method, url, requestHeaders, requestBody,
+                code, responseHeaders, responseBody);
+    }
+
+    /**
+     * Writes the record so it can be read with {@link #read(DataInputStream)}.
+     *
+     * @param out stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    void write(@NonNull DataOutputStream out) throws IOException {
+        out.writeLong(mTimestampMs);
+        out.writeLong(mDurationMs);
+        out.writeUTF(mMethod);
+        out.writeUTF(mUrl);
+        writeHeaders(out, mRequestHeaders);
+        writeBody(out, mRequestBody);
+        out.writeShort(mCode);
+        writeHeaders(out, mResponseHeaders);
+        writeBody(out, mResponseBody);
+    }
+
+    @NonNull
+    private static Headers readHeaders(@NonNull DataInputStream in) throws IOException {
+        Headers.Builder headers = new Headers.Builder();
+        int count = in.readShort();
+        for (int i = 0; i < count; i++) {
+            headers.add(in.readUTF(), in.readUTF());
+        }
+        return headers.build();
+    }
+
+    private static void writeHeaders(@NonNull DataOutputStream out, @NonNull Headers headers)
+            throws IOException {
+        out.writeShort(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            out.writeUTF(headers.name(i));
+            out.writeUTF(headers.value(i));
+        }
+    }
+
+    @Nullable
+    private static byte[] readBody(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] compressed = new byte[length];
+        in.readFully(compressed);
+
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toByteArray();
+        } finally {
+            gzip.close();
+        }
+    }
+
+    private static void writeBody(@NonNull DataOutputStream out, @Nullable byte[] body)
+            throws IOException {
+        if (body == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        try {
+            gzip.write(body);
+        } finally {
+            gzip.close();
+        }
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+
+    /**
+     * Returns the time the request was sent.
+     *
+     * @return time in milliseconds since the epoch
+     */
+    public long getTimestampMs() {
+        return mTimestampMs;
+    }
+
+    /**
+     * Returns the time the server took to answer, including the network.
+     *
+     * @return duration in milliseconds
+     */
+    public long getDurationMs() {
+        return mDurationMs;
+    }
+
+    @NonNull
+    public String getMethod() {
+        return mMethod;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return mUrl;
+    }
+
+    @NonNull
+    public Headers getRequestHeaders() {
+        return mRequestHeaders;
+    }
+
+    /**
+     * Returns the body of the request.
+     *
+     * @return the body, or null if it had none or it was too big to record
+     */
+    @Nullable
+    public byte[] getRequestBody() {
+        return mRequestBody;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    @NonNull
+    public Headers getResponseHeaders() {
+        return mResponseHeaders;
+    }
+
+    /**
+     * Returns the body of the response, truncated to the max size given to the recorder.
+     *
+     * @return the body, or null if it had none
+     */
+    @Nullable
+    public byte[] getResponseBody() {
+        return mResponseBody;
+    }
+}
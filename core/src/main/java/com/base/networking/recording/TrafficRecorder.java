@@ -0,0 +1,231 @@
+package com.base.networking.recording;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * An implementation of OkHTTP's {@link Interceptor} that records every request and its response
+ * to a file, so real traffic can be replayed later to load test the client.
+ * <p>
+ * Records are appended to a compact binary file, with gzipped bodies. Bodies bigger than the
+ * given max are truncated (responses) or left out (requests), and credentials headers are never
+ * recorded. Bodies of streamed responses, like server-sent events, are left out too, since
+ * reading them would hold the response until the stream ends. Recording stops once the file
+ * reaches its max size.
+ * <p>
+ * Usage, only in debug or internal builds:
+ * protected void initClient(OkHttpClient.Builder builder) {
+ * builder.addInterceptor(new TrafficRecorder(new File(context.getFilesDir(), "traffic.rec")));
+ * }
+ */
+public class TrafficRecorder implements Interceptor, Closeable {
+
+    private static final int MAGIC = 0x54524543; // "TREC"
+    private static final int VERSION = 1;
+    private static final long DEFAULT_MAX_BODY_BYTES = 256 * 1024;
+    private static final long DEFAULT_MAX_FILE_BYTES = 64 * 1024 * 1024;
+    private static final Set<String> SENSITIVE_HEADERS = new HashSet<>(Arrays.asList(
+            "authorization", "proxy-authorization", "cookie", "set-cookie"));
+    private static final Set<String> STREAMING_CONTENT_TYPES = new HashSet<>(Arrays.asList(
+            "text/event-stream", "multipart/x-mixed-replace", "application/x-ndjson",
+            "application/stream+json"));
+
+    private final File mFile;
+    private final long mMaxBodyBytes;
+    private final long mMaxFileBytes;
+    private DataOutputStream mOut;
+
+    /**
+     * Creates a recorder with a max body size of 256 KB and a max file size of 64 MB.
+     *
+     * @param file file to append the records to
+     */
+    public TrafficRecorder(@NonNull File file) {
+        this(file, DEFAULT_MAX_BODY_BYTES, DEFAULT_MAX_FILE_BYTES);
+    }
+
+    /**
+     * @param file         file to append the records to
+     * @param maxBodyBytes max size of the bodies recorded
+     * @param maxFileBytes size of the file at which recording stops
+     */
+    public TrafficRecorder(@NonNull File file, long maxBodyBytes, long maxFileBytes) {
+        mFile = file;
+        mMaxBodyBytes = maxBodyBytes;
+        mMaxFileBytes = maxFileBytes;
+    }
+
+    /**
+     * Reads every record of a file written by a {@link TrafficRecorder}. A record partially
+     * written, because the process died while writing it, is ignored.
+     *
+     * @param file file to read
+     * @return the records, in the order they were written
+     * @throws IOException if the file can't be read or is not a recording
+     */
+    @NonNull
+    public static List<TrafficRecord> readRecording(@NonNull File file) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a recording");
+            }
+            while (true) {
+                try {
+                    records.add(TrafficRecord.read(in));
+                } catch (EOFException e) {
+                    return records;
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Override if needed.
+     * Checks if a request must be recorded. By default, every request is.
+     *
+     * @param request the request
+     * @return <b>true</b> to record the request
+     */
+    protected boolean shouldRecord(@NonNull Request request) {
+        return true;
+    }
+
+    /**
+     * Override if needed.
+     * Checks if a header must be recorded. By default, every header but the ones with
+     * credentials is.
+     *
+     * @param name name of the header
+     * @return <b>true</b> to record the header
+     */
+    protected boolean shouldRecordHeader(@NonNull String name) {
+        return !SENSITIVE_HEADERS.contains(name.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Override if needed.
+     * Checks if the body of a response must be recorded. By default, every body but the ones of
+     * streamed responses, which stay open, is.
+     *
+     * @param response the response
+     * @return <b>true</b> to record the body
+     */
+    protected boolean shouldRecordBody(@NonNull Response response) {
+        ResponseBody body = response.body();
+        if (body == null) return false;
+        MediaType contentType = body.contentType();
+        return contentType == null || !STREAMING_CONTENT_TYPES.contains(
+                (contentType.type() + "/" + contentType.subtype()).toLowerCase(Locale.US));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!shouldRecord(request)) return chain.proceed(request);
+
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        long durationMs = (System.nanoTime() - start) / 1000000;
+
+        try {
+            byte[] responseBytes = null;
+            if (shouldRecordBody(response)) {
+                responseBytes = response.peekBody(mMaxBodyBytes).bytes();
+            }
+            write(new TrafficRecord(timestamp, durationMs, request.method(),
+                    request.url().toString(), filter(request.headers()), readBody(request.body()),
+                    response.code(), filter(response.headers()), responseBytes));
+        } catch (IOException e) {
+            // Recording must never make the request fail
+        }
+        return response;
+    }
+
+    /**
+     * Flushes and closes the file. Requests intercepted afterwards open it again.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mOut == null) return;
+        try {
+            mOut.close();
+        } finally {
+            mOut = null;
+        }
+    }
+
+    private synchronized void write(@NonNull TrafficRecord record) throws IOException {
+        if (mOut == null) {
+            boolean empty = mFile.length() == 0;
+            mOut = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(mFile, true)));
+            if (empty) {
+                mOut.writeInt(MAGIC);
+                mOut.writeInt(VERSION);
+            }
+        }
+        if (mFile.length() >= mMaxFileBytes) return;
+
+        record.write(mOut);
+        mOut.flush();
+    }
+
+    @NonNull
+    private Headers filter(@NonNull Headers headers) {
+        Headers.Builder filtered = new Headers.Builder();
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            if (shouldRecordHeader(name)) filtered.add(name, headers.value(i));
+        }
+        return filtered.build();
+    }
+
+    /**
+     * Reads a request body, unless it's too big or its length is unknown, since it may be a
+     * stream that can only be read once.
+     */
+    @Nullable
+    private byte[] readBody(@Nullable RequestBody body) throws IOException {
+        if (body == null) return null;
+        long length = body.contentLength();
+        if (length < 0 || length > mMaxBodyBytes) return null;
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readByteArray();
+    }
+}
@@ -0,0 +1,198 @@
+package com.base.networking.retrofit;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * An {@link EventListener.Factory} that notifies the events of each call to the listeners
+ * created by several factories, since an {@link okhttp3.OkHttpClient} accepts only one.
+ */
+public class CompositeEventListenerFactory implements EventListener.Factory {
+
+    private final List<EventListener.Factory> mFactories;
+
+    /**
+     * @param factories factories whose listeners are notified, in this order
+     */
+    public CompositeEventListenerFactory(@NonNull EventListener.Factory... factories) {
+        mFactories = new ArrayList<>(Arrays.asList(factories));
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        List<EventListener> listeners = new ArrayList<>(mFactories.size());
+        for (EventListener.Factory factory : mFactories) {
+            EventListener listener = factory.create(call);
+            if (listener != EventListener.NONE) listeners.add(listener);
+        }
+        if (listeners.isEmpty()) return EventListener.NONE;
+        if (listeners.size() == 1) return listeners.get(0);
+        return new CompositeEventListener(listeners);
+    }
+
+    private static class CompositeEventListener extends EventListener {
+
+        private final List<EventListener> mListeners;
+
+        CompositeEventListener(@NonNull List<EventListener> listeners) {
+            mListeners = listeners;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.callStart(call);
+            }
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            for (EventListener listener : mListeners) {
+                listener.dnsStart(call, domainName);
+            }
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            for (EventListener listener : mListeners) {
+                listener.dnsEnd(call, domainName, inetAddressList);
+            }
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            for (EventListener listener : mListeners) {
+                listener.connectStart(call, inetSocketAddress, proxy);
+            }
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.secureConnectStart(call);
+            }
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            for (EventListener listener : mListeners) {
+                listener.secureConnectEnd(call, handshake);
+            }
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                               Protocol protocol) {
+            for (EventListener listener : mListeners) {
+                listener.connectEnd(call, inetSocketAddress, proxy, protocol);
+            }
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            for (EventListener listener : mListeners) {
+                listener.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+            }
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            for (EventListener listener : mListeners) {
+                listener.connectionAcquired(call, connection);
+            }
+        }
+
+        @Override
+        public void connectionReleased(Call call, Connection connection) {
+            for (EventListener listener : mListeners) {
+                listener.connectionReleased(call, connection);
+            }
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.requestHeadersStart(call);
+            }
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            for (EventListener listener : mListeners) {
+                listener.requestHeadersEnd(call, request);
+            }
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.requestBodyStart(call);
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            for (EventListener listener : mListeners) {
+                listener.requestBodyEnd(call, byteCount);
+            }
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.responseHeadersStart(call);
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            for (EventListener listener : mListeners) {
+                listener.responseHeadersEnd(call, response);
+            }
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.responseBodyStart(call);
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            for (EventListener listener : mListeners) {
+                listener.responseBodyEnd(call, byteCount);
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            for (EventListener listener : mListeners) {
+                listener.callEnd(call);
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            for (EventListener listener : mListeners) {
+                listener.callFailed(call, ioe);
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.base.networking.retrofit;
 import androidx.annotation.CallSuper;
 
 import com.base.core.BaseApplication;
+import com.base.core.util.ImageLoader;
+import com.base.networking.prefetch.PrefetchScheduler;
 
 
 /**
@@ -15,7 +17,8 @@ public abstract class NetworkingApplication extends BaseApplication {
 
     /**
      * Overrides the {@link android.app.Application} onCreate() method to initialize retrofit
-     * services provided by the subclass.
+     * services provided by the subclass, and the {@link PrefetchScheduler} and the
+     * {@link ImageLoader} with their client.
      */
     @CallSuper
     @Override
@@ -23,6 +26,34 @@ public abstract class NetworkingApplication extends BaseApplication {
         super.onCreate();
         sRetrofitServices = getRetrofitServices();
         sRetrofitServices.init();
+        PrefetchScheduler.getInstance().setClient(sRetrofitServices.getClient());
+        ImageLoader.getInstance().setClient(sRetrofitServices.getClient());
+        if (shouldPreconnectOnStartup()) {
+            sRetrofitServices.preconnect();
+        }
+    }
+
+    /**
+     * Override if needed.
+     * Defines if connections to the API should be opened as soon as the application starts, so
+     * the first API call doesn't need to wait for them. By default, it returns <b>true</b>.
+     *
+     * @return <b>true</b> to preconnect on startup, <b>false</b> otherwise
+     */
+    protected boolean shouldPreconnectOnStartup() {
+        return true;
+    }
+
+    /**
+     * Opens connections to the API in background.
+     * Call it when a screen that performs API calls is about to be opened.
+     *
+     * @see RetrofitServices#preconnect()
+     */
+    public static void preconnect() {
+        if (sRetrofitServices != null) {
+            sRetrofitServices.preconnect();
+        }
     }
 
     /**
@@ -0,0 +1,158 @@
+package com.base.networking.retrofit;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Opens connections ahead of time so the first API call to an endpoint doesn't pay DNS, TCP and
+ * TLS setup. Connections are kept in the shared {@link okhttp3.ConnectionPool} for as long as it
+ * keeps idle connections alive.
+ * <p>
+ * It also reports how many of the first calls made after a preconnect reused a warm connection.
+ * To do so, the {@link EventListener.Factory} returned by {@link #getEventListenerFactory()} must
+ * be installed in the {@link OkHttpClient}.
+ */
+public class Preconnector {
+
+    private static final Object PRECONNECT_TAG = new Object();
+
+    private final Set<String> mWarmHosts = new HashSet<>();
+    private final AtomicInteger mPreconnects = new AtomicInteger();
+    private final AtomicInteger mWarmFirstCalls = new AtomicInteger();
+    private final AtomicInteger mColdFirstCalls = new AtomicInteger();
+    private OkHttpClient mClient;
+
+    /**
+     * Sets the client whose connection pool will be warmed. Interceptors are not used for
+     * preconnect requests.
+     *
+     * @param client the client used to perform API calls
+     */
+    void setClient(@NonNull OkHttpClient client) {
+        OkHttpClient.Builder builder = client.newBuilder();
+        builder.interceptors().clear();
+        builder.networkInterceptors().clear();
+        mClient = builder.build();
+    }
+
+    /**
+     * Opens a connection to each of the given URLs in background.
+     *
+     * @param urls URLs to connect to
+     */
+    public void preconnect(@NonNull List<HttpUrl> urls) {
+        if (mClient == null) throw new IllegalStateException("Preconnector has no client");
+
+        for (final HttpUrl url : urls) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .head()
+                    .tag(PRECONNECT_TAG)
+                    .build();
+            mPreconnects.incrementAndGet();
+            mClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    synchronized (mWarmHosts) {
+                        mWarmHosts.add(url.host());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the amount of preconnect requests issued.
+     *
+     * @return preconnects issued
+     */
+    public int getPreconnectCount() {
+        return mPreconnects.get();
+    }
+
+    /**
+     * Returns the amount of first calls made to a preconnected host that reused a warm connection.
+     *
+     * @return first calls that reused a connection
+     */
+    public int getWarmFirstCallCount() {
+        return mWarmFirstCalls.get();
+    }
+
+    /**
+     * Returns the amount of first calls made to a preconnected host that had to open a new
+     * connection anyway, usually because the warm one was evicted or in use.
+     *
+     * @return first calls that opened a new connection
+     */
+    public int getColdFirstCallCount() {
+        return mColdFirstCalls.get();
+    }
+
+    /**
+     * Returns the factory of the {@link EventListener} that tracks connection reuse.
+     *
+     * @return an {@link EventListener.Factory} to install in the {@link OkHttpClient}
+     */
+    @NonNull
+    public EventListener.Factory getEventListenerFactory() {
+        return new EventListener.Factory() {
+            @Override
+            public EventListener create(Call call) {
+                if (call.request().tag() == PRECONNECT_TAG) return EventListener.NONE;
+                return new ReuseListener();
+            }
+        };
+    }
+
+    private boolean consumeWarmHost(@NonNull String host) {
+        synchronized (mWarmHosts) {
+            return mWarmHosts.remove(host);
+        }
+    }
+
+    /**
+     * Checks, for the first call made to a preconnected host, if a new connection was opened.
+     */
+    private class ReuseListener extends EventListener {
+
+        private boolean mConnected;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            mConnected = true;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (!consumeWarmHost(call.request().url().host())) return;
+
+            if (mConnected) {
+                mColdFirstCalls.incrementAndGet();
+            } else {
+                mWarmFirstCalls.incrementAndGet();
+            }
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.base.networking.retrofit;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.base.networking.bandwidth.BandwidthEstimator;
+import com.base.networking.dns.CachingDns;
+import com.base.networking.retrofit.converter.PooledBodyInterceptor;
+import com.base.networking.retrofit.converter.PooledGsonConverterFactory;
+import com.base.networking.retrofit.interceptor.RateLimitInterceptor;
 import com.base.networking.retrofit.serializer.BaseGsonBuilder;
 import com.google.gson.Gson;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import okhttp3.Cache;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * This class handles {@link Retrofit} main class initialization and services instances to perform
@@ -20,6 +31,9 @@ import retrofit2.converter.gson.GsonConverterFactory;
 public abstract class RetrofitServices {
 
     private Retrofit mRetrofit;
+    private OkHttpClient mOkHttpClient;
+    private Gson mGson;
+    private Preconnector mPreconnector;
     private Map<Class, Object> mServices;
 
     /**
@@ -30,10 +44,14 @@ public abstract class RetrofitServices {
      */
     public void init() {
         mServices = new HashMap<>();
+        mPreconnector = new Preconnector();
+        mOkHttpClient = getOkHttpClient();
+        mPreconnector.setClient(mOkHttpClient);
+        mGson = getGson();
         mRetrofit = new Retrofit.Builder()
                 .baseUrl(getApiEndpoint())
-                .addConverterFactory(GsonConverterFactory.create(getGson()))
-                .client(getOkHttpClient())
+                .addConverterFactory(PooledGsonConverterFactory.create(mGson))
+                .client(mOkHttpClient)
                 .build();
     }
 
@@ -70,16 +88,88 @@ public abstract class RetrofitServices {
     /**
      * Returns an OkHttpClient.
      * This method calls <i>initClient(builder)</i> to configure the builder for OkHttpClient.
+     * The first interceptor is a {@link PooledBodyInterceptor}, which recycles the request bodies
+     * serialized by the {@link PooledGsonConverterFactory}.
+     * If <i>getRateLimitInterceptor()</i> provides a limiter, it's added right after it.
+     * Host names are resolved by the {@link Dns} returned by <i>getDns()</i>, and responses are
+     * cached in the {@link Cache} returned by <i>getCache()</i>.
+     * The event listeners that track preconnect effectiveness and feed the
+     * {@link BandwidthEstimator} are installed before calling <i>initClient(builder)</i>, setting
+     * a different one there disables those metrics.
      *
      * @return A configured instance of OkHttpClient.
      */
     @NonNull
     protected OkHttpClient getOkHttpClient() {
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.dns(getDns());
+        builder.cache(getCache());
+        EventListener.Factory estimatorFactory =
+                BandwidthEstimator.getInstance().getEventListenerFactory();
+        if (mPreconnector != null) {
+            builder.eventListenerFactory(new CompositeEventListenerFactory(
+                    mPreconnector.getEventListenerFactory(), estimatorFactory));
+        } else {
+            builder.eventListenerFactory(estimatorFactory);
+        }
+        builder.addInterceptor(new PooledBodyInterceptor());
+        RateLimitInterceptor rateLimitInterceptor = getRateLimitInterceptor();
+        if (rateLimitInterceptor != null) {
+            builder.addInterceptor(rateLimitInterceptor);
+        }
         initClient(builder);
         return builder.build();
     }
 
+    /**
+     * Override if needed to change how host names are resolved.
+     * By default, it returns the system resolver. Return a {@link CachingDns} to skip lookups of
+     * recently resolved hosts.
+     * <p>
+     * Usage:
+     * protected Dns getDns() {
+     * final CachingDns dns = new CachingDns();
+     * ConnectivityUtils.registerNetworkListener(context, new NetworkListener() {
+     * public void onNetworkChanged() { dns.clear(); }
+     * });
+     * return dns;
+     * }
+     *
+     * @return the {@link Dns} used by the OkHttpClient
+     */
+    @NonNull
+    protected Dns getDns() {
+        return Dns.SYSTEM;
+    }
+
+    /**
+     * Override if needed to cache responses, which also lets
+     * {@link com.base.networking.prefetch.PrefetchScheduler} prefetch them. By default, responses
+     * are not cached.
+     * <p>
+     * Usage:
+     * protected Cache getCache() {
+     * return new Cache(new File(context.getCacheDir(), "http"), 10 * 1024 * 1024);
+     * }
+     *
+     * @return the response {@link Cache} of the OkHttpClient, or null to disable caching
+     */
+    @Nullable
+    protected Cache getCache() {
+        return null;
+    }
+
+    /**
+     * Override if needed to limit the rate of requests sent to the API.
+     * By default, requests are not limited.
+     *
+     * @return A configured {@link RateLimitInterceptor}, or null to disable rate limiting
+     */
+    @Nullable
+    protected RateLimitInterceptor getRateLimitInterceptor() {
+        return null;
+    }
+
     /**
      * Configures an <i>OkHttpClient.Builder</i>.
      * You must add interceptors and configure the builder inside this method.
@@ -91,6 +181,63 @@ public abstract class RetrofitServices {
         builder.addInterceptor(loggerInterceptor);
     }
 
+    /**
+     * Returns the URLs to open connections to when calling <i>preconnect()</i>.
+     * Override if the API calls go to more hosts than the one in <i>getApiEndpoint()</i>.
+     *
+     * @return URLs to preconnect to
+     */
+    @NonNull
+    protected List<HttpUrl> getPreconnectUrls() {
+        return Collections.singletonList(HttpUrl.parse(getApiEndpoint()));
+    }
+
+    /**
+     * Opens, in background, connections to the URLs returned by <i>getPreconnectUrls()</i> so the
+     * next API calls don't have to wait for them. Call it when a screen that performs API calls is
+     * about to be opened.
+     */
+    public void preconnect() {
+        checkInitialized();
+        mPreconnector.preconnect(getPreconnectUrls());
+    }
+
+    /**
+     * Returns the {@link Preconnector} used by <i>preconnect()</i>, which reports how often
+     * preconnected connections were reused.
+     *
+     * @return the preconnector of this instance
+     */
+    @NonNull
+    public Preconnector getPreconnector() {
+        checkInitialized();
+        return mPreconnector;
+    }
+
+    /**
+     * Returns the {@link OkHttpClient} used by Retrofit. Use it to perform requests that are not
+     * API calls so they share its connections and configuration.
+     *
+     * @return the client built during <i>init()</i>
+     */
+    @NonNull
+    public OkHttpClient getClient() {
+        checkInitialized();
+        return mOkHttpClient;
+    }
+
+    /**
+     * Returns the {@link Gson} used by Retrofit's converter. Use it to serialize or parse
+     * outside of API calls, so the same adapters are applied.
+     *
+     * @return the Gson built during <i>init()</i>
+     */
+    @NonNull
+    public Gson getConverterGson() {
+        checkInitialized();
+        return mGson;
+    }
+
     /**
      * Checks if the {@link Retrofit} client has been initialized at least once.
      *
@@ -117,8 +264,7 @@ public abstract class RetrofitServices {
      * @return service
      */
     public <T> T getService(@NonNull Class<T> clazz) {
-        if (!isInitialized()) throw new RuntimeException("RetrofitServices is not initialized! " +
-                "Must call init() at least once before calling getService(clazz)");
+        checkInitialized();
 
         T service = (T) mServices.get(clazz);
         if (service != null) return service;
@@ -126,4 +272,9 @@ public abstract class RetrofitServices {
         mServices.put(clazz, service);
         return service;
     }
+
+    private void checkInitialized() {
+        if (!isInitialized()) throw new RuntimeException("RetrofitServices is not initialized! " +
+                "Must call init() at least once before using it");
+    }
 }
\ No newline at end of file
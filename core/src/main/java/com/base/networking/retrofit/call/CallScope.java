@@ -0,0 +1,131 @@
+package com.base.networking.retrofit.call;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Keeps track of every Retrofit {@link Call} enqueued through it, so all of them can be cancelled
+ * at once when their owner (usually a {@link com.base.core.presenter.BasePresenter}) goes away.
+ * <p>
+ * Calls cancelled by the scope don't notify their {@link Callback}, the owner is not interested
+ * in their results anymore.
+ */
+public class CallScope {
+
+    /**
+     * Defines when the calls tracked by a {@link CallScope} owned by a presenter are cancelled.
+     * <li>
+     * <ul>{@link CancelPolicy#ON_VIEW_DESTROYED}: Cancel when the view is destroyed or
+     * detached.</ul>
+     * <ul>{@link CancelPolicy#ON_DETACH}: Cancel only when the view is detached.</ul>
+     * <ul>{@link CancelPolicy#NEVER}: Calls are tracked but never cancelled automatically.</ul>
+     * </li>
+     */
+    public enum CancelPolicy {
+        ON_VIEW_DESTROYED,
+        ON_DETACH,
+        NEVER
+    }
+
+    private static final AtomicLong sCancelledCalls = new AtomicLong();
+
+    private final Set<Call<?>> mCalls = new HashSet<>();
+
+    /**
+     * Enqueues the call and tracks it until it finishes or the scope is cancelled.
+     *
+     * @param call     Retrofit call to enqueue
+     * @param callback callback to notify the result of the call
+     * @param <T>      the type of object expected to be returned from the API call
+     */
+    public <T> void enqueue(@NonNull Call<T> call, @NonNull Callback<T> callback) {
+        synchronized (mCalls) {
+            mCalls.add(call);
+        }
+        call.enqueue(new ScopedCallback<>(callback));
+    }
+
+    /**
+     * Cancels every call that is still in flight. The scope can keep being used afterwards.
+     *
+     * @return the amount of calls cancelled
+     */
+    public int cancelAll() {
+        List<Call<?>> calls;
+        synchronized (mCalls) {
+            calls = new ArrayList<>(mCalls);
+            mCalls.clear();
+        }
+
+        int cancelled = 0;
+        for (Call<?> call : calls) {
+            if (!call.isCanceled()) {
+                call.cancel();
+                cancelled++;
+            }
+        }
+        sCancelledCalls.addAndGet(cancelled);
+        return cancelled;
+    }
+
+    /**
+     * Returns the amount of calls currently tracked by this scope.
+     *
+     * @return in flight calls
+     */
+    public int getActiveCallCount() {
+        synchronized (mCalls) {
+            return mCalls.size();
+        }
+    }
+
+    /**
+     * Returns the amount of calls cancelled by every {@link CallScope} since the process started.
+     *
+     * @return cancelled calls
+     */
+    public static long getCancelledCallCount() {
+        return sCancelledCalls.get();
+    }
+
+    private boolean untrack(@NonNull Call<?> call) {
+        synchronized (mCalls) {
+            return mCalls.remove(call);
+        }
+    }
+
+    /**
+     * Forwards the results to the wrapped callback unless the scope cancelled the call.
+     */
+    private class ScopedCallback<T> implements Callback<T> {
+
+        private final Callback<T> mCallback;
+
+        ScopedCallback(@NonNull Callback<T> callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onResponse(Call<T> call, Response<T> response) {
+            if (untrack(call) || !call.isCanceled()) {
+                mCallback.onResponse(call, response);
+            }
+        }
+
+        @Override
+        public void onFailure(Call<T> call, Throwable t) {
+            if (untrack(call) || !call.isCanceled()) {
+                mCallback.onFailure(call, t);
+            }
+        }
+    }
+}
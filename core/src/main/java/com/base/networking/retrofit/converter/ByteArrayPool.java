@@ -0,0 +1,119 @@
+package com.base.networking.retrofit.converter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * A bounded, thread-safe pool of byte arrays, grouped in size classes of 1, 4, 16, 64 and 256 KB.
+ * <p>
+ * Arrays are handed out with the size of the smallest class that fits the requested size, so
+ * they can be reused by any request of that class. Each class keeps at most a fixed amount of
+ * arrays, and sizes over the biggest class are allocated without being pooled, so the memory
+ * retained is bounded.
+ */
+public class ByteArrayPool {
+
+    private static final int[] SIZE_CLASSES = {1024, 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024};
+    private static final int DEFAULT_ARRAYS_PER_CLASS = 4;
+
+    private static ByteArrayPool sInstance; // Singleton
+
+    private final ArrayDeque<byte[]>[] mFree;
+    private final int mArraysPerClass;
+
+    // Guarded by this
+    private long mHits;
+    private long mMisses;
+
+    public synchronized static ByteArrayPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new ByteArrayPool(DEFAULT_ARRAYS_PER_CLASS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param arraysPerClass max amount of free arrays kept in each size class
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ByteArrayPool(int arraysPerClass) {
+        mArraysPerClass = arraysPerClass;
+        mFree = new ArrayDeque[SIZE_CLASSES.length];
+        for (int i = 0; i < mFree.length; i++) {
+            mFree[i] = new ArrayDeque<>(arraysPerClass);
+        }
+    }
+
+    /**
+     * Returns an array of at least the given size, reusing a free one if possible. It must be
+     * given back with {@link #release(byte[])} once it's no longer used.
+     *
+     * @param minSize min size of the array
+     * @return an array of, at least, <i>minSize</i> bytes. Its content is undefined.
+     */
+    @NonNull
+    public byte[] acquire(int minSize) {
+        int sizeClass = getSizeClass(minSize);
+        if (sizeClass < 0) return new byte[minSize];
+
+        synchronized (this) {
+            byte[] array = mFree[sizeClass].pollLast();
+            if (array != null) {
+                mHits++;
+                return array;
+            }
+            mMisses++;
+        }
+        return new byte[SIZE_CLASSES[sizeClass]];
+    }
+
+    /**
+     * Gives back an array obtained from {@link #acquire(int)}. It's dropped if its class is full
+     * or its size is not one of the pooled classes.
+     *
+     * @param array array no longer used
+     */
+    public void release(@NonNull byte[] array) {
+        int sizeClass = getSizeClass(array.length);
+        if (sizeClass < 0 || SIZE_CLASSES[sizeClass] != array.length) return;
+
+        synchronized (this) {
+            if (mFree[sizeClass].size() < mArraysPerClass) mFree[sizeClass].addLast(array);
+        }
+    }
+
+    /**
+     * Returns the size of the biggest pooled class. Bigger arrays are never reused.
+     *
+     * @return max size of a pooled array
+     */
+    public int getMaxPooledSize() {
+        return SIZE_CLASSES[SIZE_CLASSES.length - 1];
+    }
+
+    /**
+     * Returns the amount of pooled requests served with a free array.
+     *
+     * @return the amount of hits
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the amount of pooled requests that had to allocate a new array.
+     *
+     * @return the amount of misses
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    private static int getSizeClass(int size) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (size <= SIZE_CLASSES[i]) return i;
+        }
+        return -1;
+    }
+}
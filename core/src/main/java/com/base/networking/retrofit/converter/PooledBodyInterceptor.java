@@ -0,0 +1,41 @@
+package com.base.networking.retrofit.converter;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * An implementation of OkHTTP's {@link Interceptor} that gives the arrays of the request bodies
+ * created by a {@link PooledGsonConverterFactory} back to their pool once the call is done, so
+ * the next request reuses them.
+ * <p>
+ * It must be the first interceptor added, so retries performed by other interceptors happen
+ * before the body is released. Without it, the arrays are just garbage collected.
+ */
+public class PooledBodyInterceptor implements Interceptor {
+
+    /**
+     * Gives the array of a body created by a {@link PooledGsonConverterFactory} back to its pool.
+     * Use it for bodies written outside of an OkHttp call. The body can't be written afterwards.
+     *
+     * @param body the body, ignored if it's not pooled
+     */
+    public static void release(@Nullable RequestBody body) {
+        if (body instanceof PooledRequestBody) ((PooledRequestBody) body).release();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        try {
+            return chain.proceed(request);
+        } finally {
+            release(request.body());
+        }
+    }
+}
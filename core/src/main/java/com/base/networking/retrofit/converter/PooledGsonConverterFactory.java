@@ -0,0 +1,102 @@
+package com.base.networking.retrofit.converter;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * A {@link Converter.Factory} that serializes request bodies with Gson straight into arrays of a
+ * {@link ByteArrayPool}, instead of going through an intermediate buffer and copying it as
+ * {@link GsonConverterFactory} does. Responses are parsed by a {@link GsonConverterFactory}.
+ * <p>
+ * The arrays are reused only if a {@link PooledBodyInterceptor} is installed in the client, which
+ * {@link com.base.networking.retrofit.RetrofitServices} does by default. Payloads bigger than the
+ * biggest class of the pool are still serialized without copies, but not reused.
+ */
+public class PooledGsonConverterFactory extends Converter.Factory {
+
+    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
+
+    private final Gson mGson;
+    private final ByteArrayPool mPool;
+    private final GsonConverterFactory mResponseFactory;
+
+    /**
+     * Creates a factory that uses the shared {@link ByteArrayPool}.
+     *
+     * @param gson Gson used for conversion
+     * @return the factory
+     */
+    @NonNull
+    public static PooledGsonConverterFactory create(@NonNull Gson gson) {
+        return create(gson, ByteArrayPool.getInstance());
+    }
+
+    /**
+     * @param gson Gson used for conversion
+     * @param pool pool of the arrays the request bodies are serialized into
+     * @return the factory
+     */
+    @NonNull
+    public static PooledGsonConverterFactory create(@NonNull Gson gson,
+                                                    @NonNull ByteArrayPool pool) {
+        return new PooledGsonConverterFactory(gson, pool);
+    }
+
+    private PooledGsonConverterFactory(@NonNull Gson gson, @NonNull ByteArrayPool pool) {
+        mGson = gson;
+        mPool = pool;
+        mResponseFactory = GsonConverterFactory.create(gson);
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(
+            Type type, Annotation[] annotations, Retrofit retrofit) {
+        return mResponseFactory.responseBodyConverter(type, annotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(
+            Type type, Annotation[] parameterAnnotations, Annotation[] methodAnnotations,
+            Retrofit retrofit) {
+        return new RequestBodyConverter<>(mGson.getAdapter(TypeToken.get(type)));
+    }
+
+    private class RequestBodyConverter<T> implements Converter<T, RequestBody> {
+
+        private final TypeAdapter<T> mAdapter;
+
+        RequestBodyConverter(@NonNull TypeAdapter<T> adapter) {
+            mAdapter = adapter;
+        }
+
+        @Override
+        public RequestBody convert(T value) throws IOException {
+            PooledUtf8Writer writer = new PooledUtf8Writer(mPool);
+            boolean serialized = false;
+            try {
+                JsonWriter jsonWriter = mGson.newJsonWriter(writer);
+                mAdapter.write(jsonWriter, value);
+                jsonWriter.close();
+                serialized = true;
+            } finally {
+                if (!serialized) writer.release();
+            }
+            return new PooledRequestBody(MEDIA_TYPE, mPool, writer.getBytes(), writer.size());
+        }
+    }
+}
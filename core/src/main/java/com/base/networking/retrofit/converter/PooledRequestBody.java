@@ -0,0 +1,62 @@
+package com.base.networking.retrofit.converter;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * A {@link RequestBody} over an array of a {@link ByteArrayPool}. The array is given back to the
+ * pool by the {@link PooledBodyInterceptor} once the call that sent it is done, after which the
+ * body can't be written anymore.
+ */
+class PooledRequestBody extends RequestBody {
+
+    private final MediaType mContentType;
+    private final ByteArrayPool mPool;
+    private final byte[] mBytes;
+    private final int mLength;
+
+    // Guarded by this
+    private boolean mReleased;
+
+    PooledRequestBody(@NonNull MediaType contentType, @NonNull ByteArrayPool pool,
+                      @NonNull byte[] bytes, int length) {
+        mContentType = contentType;
+        mPool = pool;
+        mBytes = bytes;
+        mLength = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mContentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return mLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        synchronized (this) {
+            if (mReleased) throw new IOException("The request body was already released");
+        }
+        sink.write(mBytes, 0, mLength);
+    }
+
+    /**
+     * Gives the array back to the pool. Calling it more than once has no effect.
+     */
+    void release() {
+        synchronized (this) {
+            if (mReleased) return;
+            mReleased = true;
+        }
+        mPool.release(mBytes);
+    }
+}
@@ -0,0 +1,133 @@
+package com.base.networking.retrofit.converter;
+
+import androidx.annotation.NonNull;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that encodes the characters written as UTF-8 straight into an array taken from
+ * a {@link ByteArrayPool}, growing it with bigger arrays of the pool when needed.
+ * <p>
+ * Unlike an <i>OutputStreamWriter</i>, it doesn't allocate an encoder or intermediate buffers.
+ */
+class PooledUtf8Writer extends Writer {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private final ByteArrayPool mPool;
+    private byte[] mBytes;
+    private int mCount;
+    private int mHighSurrogate = -1;
+
+    PooledUtf8Writer(@NonNull ByteArrayPool pool) {
+        mPool = pool;
+        mBytes = pool.acquire(INITIAL_SIZE);
+    }
+
+    /**
+     * Returns the array with the encoded bytes. It belongs to the pool of the writer and must be
+     * released once it's no longer used.
+     */
+    @NonNull
+    byte[] getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Returns the amount of bytes written to the array.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * Gives the array back to the pool, discarding the bytes written.
+     */
+    void release() {
+        mPool.release(mBytes);
+    }
+
+    @Override
+    public void write(int c) {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(@NonNull char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            writeChar(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(@NonNull String string, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            writeChar(string.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (mHighSurrogate >= 0) {
+            ensureCapacity(1);
+            mBytes[mCount++] = '?';
+            mHighSurrogate = -1;
+        }
+    }
+
+    private void writeChar(char c) {
+        if (mHighSurrogate >= 0) {
+            int high = mHighSurrogate;
+            mHighSurrogate = -1;
+            if (Character.isLowSurrogate(c)) {
+                writeCodePoint(Character.toCodePoint((char) high, c));
+                return;
+            }
+            // Unpaired surrogate
+            writeCodePoint('?');
+        }
+
+        if (Character.isHighSurrogate(c)) {
+            mHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            writeCodePoint('?');
+        } else {
+            writeCodePoint(c);
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            ensureCapacity(1);
+            mBytes[mCount++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            ensureCapacity(2);
+            mBytes[mCount++] = (byte) (0xc0 | (codePoint >> 6));
+            mBytes[mCount++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            ensureCapacity(3);
+            mBytes[mCount++] = (byte) (0xe0 | (codePoint >> 12));
+            mBytes[mCount++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            mBytes[mCount++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+            ensureCapacity(4);
+            mBytes[mCount++] = (byte) (0xf0 | (codePoint >> 18));
+            mBytes[mCount++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            mBytes[mCount++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            mBytes[mCount++] = (byte) (0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mCount + extra <= mBytes.length) return;
+
+        byte[] bigger = mPool.acquire(Math.max(mCount + extra, mBytes.length * 2));
+        System.arraycopy(mBytes, 0, bigger, 0, mCount);
+        mPool.release(mBytes);
+        mBytes = bigger;
+    }
+}
@@ -0,0 +1,189 @@
+package com.base.networking.retrofit.interceptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.NetworkCodes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * An implementation of OkHTTP's {@link Interceptor} that limits the rate of requests sent to
+ * each endpoint using token buckets.
+ * <p>
+ * Requests exceeding the limit are delayed, in arrival order, instead of being rejected. If a
+ * request would have to wait longer than the max queueing time it fails with a
+ * {@link RateLimitException}. "Retry-After" headers received with 429 and 503 responses pause the
+ * corresponding bucket for the time requested by the server.
+ * <p>
+ * Buckets are keyed by host by default, override {@link #getBucketKey(Request)} to key them by
+ * endpoint.
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final long mMaxQueueNanos;
+    private final Map<String, Limit> mLimits = new HashMap<>();
+    private final Map<String, TokenBucket> mBuckets = new HashMap<>();
+    private Limit mDefaultLimit;
+
+    /**
+     * @param maxQueueTime max time a request can be delayed before failing
+     * @param unit         time unit of maxQueueTime
+     */
+    public RateLimitInterceptor(long maxQueueTime, @NonNull TimeUnit unit) {
+        mMaxQueueNanos = unit.toNanos(maxQueueTime);
+    }
+
+    /**
+     * Limits the requests for a given bucket key.
+     *
+     * @param key              bucket key, as returned by {@link #getBucketKey(Request)}
+     * @param permitsPerSecond sustained amount of requests per second allowed
+     * @param burst            amount of requests that can be sent at once after being idle
+     * @return this interceptor, to chain calls
+     */
+    @NonNull
+    public synchronized RateLimitInterceptor setLimit(
+            @NonNull String key, double permitsPerSecond, int burst) {
+        mLimits.put(key, new Limit(permitsPerSecond, burst));
+        mBuckets.remove(key);
+        return this;
+    }
+
+    /**
+     * Limits the requests for every bucket key without a specific limit. By default, these
+     * requests are not limited.
+     *
+     * @param permitsPerSecond sustained amount of requests per second allowed
+     * @param burst            amount of requests that can be sent at once after being idle
+     * @return this interceptor, to chain calls
+     */
+    @NonNull
+    public synchronized RateLimitInterceptor setDefaultLimit(double permitsPerSecond, int burst) {
+        mDefaultLimit = new Limit(permitsPerSecond, burst);
+        for (String key : mBuckets.keySet().toArray(new String[0])) {
+            if (!mLimits.containsKey(key)) mBuckets.remove(key);
+        }
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        TokenBucket bucket = getBucket(getBucketKey(request));
+        if (bucket == null) return chain.proceed(request);
+
+        long wait = bucket.reserve(System.nanoTime(), mMaxQueueNanos);
+        if (wait < 0) {
+            throw new RateLimitException("Rate limit exceeded for " + request.url());
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit");
+            }
+        }
+
+        Response response = chain.proceed(request);
+        if (response.code() == NetworkCodes.ERROR_TOO_MANY_REQUESTS
+                || response.code() == NetworkCodes.ERROR_SERVICE_UNAVAILABLE) {
+            long retryAfter = parseRetryAfter(response.header(RETRY_AFTER_HEADER));
+            if (retryAfter > 0) bucket.pause(System.nanoTime(), retryAfter);
+        }
+        return response;
+    }
+
+    /**
+     * Override if needed.
+     * Returns the key of the bucket that limits the given request. Requests with the same key
+     * share the same limit. By default, the key is the host of the request.
+     *
+     * @param request request about to be sent
+     * @return bucket key
+     */
+    @NonNull
+    protected String getBucketKey(@NonNull Request request) {
+        return request.url().host();
+    }
+
+    @Nullable
+    private synchronized TokenBucket getBucket(@NonNull String key) {
+        TokenBucket bucket = mBuckets.get(key);
+        if (bucket != null) return bucket;
+
+        Limit limit = mLimits.get(key);
+        if (limit == null) limit = mDefaultLimit;
+        if (limit == null) return null;
+
+        bucket = new TokenBucket(limit.mPermitsPerSecond, limit.mBurst, System.nanoTime());
+        mBuckets.put(key, bucket);
+        return bucket;
+    }
+
+    /**
+     * Parses the value of a "Retry-After" header, which can be either an amount of seconds or an
+     * HTTP date.
+     *
+     * @param value header value
+     * @return the delay in nanoseconds, or -1 if it's missing or malformed
+     */
+    private static long parseRetryAfter(@Nullable String value) {
+        if (value == null) return -1;
+        value = value.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // Not an amount of seconds, try with a date
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value);
+            return TimeUnit.MILLISECONDS.toNanos(date.getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private static class Limit {
+
+        private final double mPermitsPerSecond;
+        private final int mBurst;
+
+        Limit(double permitsPerSecond, int burst) {
+            mPermitsPerSecond = permitsPerSecond;
+            mBurst = burst;
+        }
+    }
+
+    /**
+     * Thrown when a request would have to wait longer than the max queueing time to be sent.
+     */
+    public static class RateLimitException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RateLimitException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.base.networking.retrofit.interceptor;
+
+/**
+ * A token bucket that hands out reservations instead of rejecting when it runs out of tokens.
+ * Every reservation takes a token, leaving the bucket in debt if needed, and returns how long the
+ * caller has to wait before using it. This keeps callers in arrival order.
+ * <p>
+ * Times are expressed in nanoseconds, as returned by {@link System#nanoTime()}.
+ */
+class TokenBucket {
+
+    private final double mCapacity;
+    private final double mTokensPerNano;
+    private double mTokens;
+    private long mLastRefill;
+
+    /**
+     * @param permitsPerSecond rate at which the bucket gets refilled
+     * @param capacity         max amount of tokens the bucket can hold, the allowed burst size
+     * @param now              current time
+     */
+    TokenBucket(double permitsPerSecond, int capacity, long now) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rate and capacity must be greater than 0");
+        }
+        mCapacity = capacity;
+        mTokensPerNano = permitsPerSecond / 1e9;
+        mTokens = capacity;
+        mLastRefill = now;
+    }
+
+    /**
+     * Reserves a token.
+     *
+     * @param now     current time
+     * @param maxWait max time the caller is willing to wait for the token
+     * @return the time to wait before using the token, or -1 if it's longer than maxWait. In that
+     * case no token is taken.
+     */
+    synchronized long reserve(long now, long maxWait) {
+        refill(now);
+        double remaining = mTokens - 1;
+        long wait = Math.max(0, mLastRefill - now);
+        if (remaining < 0) {
+            wait += (long) Math.ceil(-remaining / mTokensPerNano);
+        }
+        if (wait > maxWait) return -1;
+
+        mTokens = remaining;
+        return wait;
+    }
+
+    /**
+     * Stops refilling the bucket for the given time, usually because the server asked to back
+     * off. Pending reservations are pushed back accordingly.
+     *
+     * @param now   current time
+     * @param delay time to wait before refilling the bucket again
+     */
+    synchronized void pause(long now, long delay) {
+        refill(now);
+        mTokens = Math.min(mTokens, 0);
+        mLastRefill = Math.max(mLastRefill, now + delay);
+    }
+
+    private void refill(long now) {
+        if (now <= mLastRefill) return;
+        mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) * mTokensPerNano);
+        mLastRefill = now;
+    }
+}
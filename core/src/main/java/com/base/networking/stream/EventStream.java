@@ -0,0 +1,308 @@
+package com.base.networking.stream;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Base class for the streams that keep a connection open to receive messages pushed by the
+ * server, instead of polling an endpoint.
+ * <p>
+ * Each message is decoded with Gson and stored in a bounded buffer, which applies an
+ * {@link OverflowPolicy} when full, before being delivered on the main thread. While the stream
+ * is paused the connection stays open but nothing is delivered, so the buffer keeps only what the
+ * policy allows; resuming it delivers the buffered messages. A paused stream never floods the
+ * main thread: at most one delivery is pending at any time.
+ * <p>
+ * When the connection is lost, the stream connects again after a delay that grows exponentially
+ * with each failed attempt, and resets once a connection is opened.
+ * <p>
+ * This class is thread safe. Subclasses report the events of each connection with the id they
+ * receive in {@link #connect(int)}, so events from a connection already replaced are ignored.
+ *
+ * @param <T> type of the messages
+ */
+public abstract class EventStream<T> {
+
+    private static final String TAG = "EventStream";
+
+    private static final long INITIAL_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+    private static final float RECONNECT_JITTER = 0.2f;
+
+    private static ScheduledExecutorService sScheduler;
+
+    private final OkHttpClient mClient;
+    private final Gson mGson;
+    private final Type mType;
+    private final MessageBuffer<T> mBuffer;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Random mRandom = new Random();
+    private volatile StreamListener<T> mListener;
+
+    // Guarded by this
+    private int mConnection;
+    private boolean mStarted;
+    private boolean mPaused;
+    private boolean mDeliveryScheduled;
+    private int mFailedAttempts;
+    private long mReconnectDelayMs = INITIAL_RECONNECT_DELAY_MS;
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (EventStream.this) {
+                mDeliveryScheduled = false;
+                if (mPaused || !mStarted) return;
+            }
+            StreamListener<T> listener = mListener;
+            List<T> messages = mBuffer.drain();
+            if (listener == null) return;
+            for (T message : messages) {
+                listener.onMessage(message);
+            }
+        }
+    };
+
+    /**
+     * @param client     client used to connect, usually the one from
+     *                   {@link com.base.networking.retrofit.RetrofitServices#getClient()}
+     * @param gson       Gson used to decode the messages
+     * @param type       type the messages are decoded to
+     * @param bufferSize max amount of messages waiting to be delivered
+     * @param policy     what to do with new messages when the buffer is full
+     */
+    protected EventStream(@NonNull OkHttpClient client, @NonNull Gson gson, @NonNull Type type,
+                          int bufferSize, @NonNull OverflowPolicy policy) {
+        mClient = client;
+        mGson = gson;
+        mType = type;
+        mBuffer = new MessageBuffer<>(bufferSize, policy);
+    }
+
+    /**
+     * Opens a connection. Called from any thread, must not block.
+     *
+     * @param connection id of the connection, to report its events
+     */
+    protected abstract void connect(int connection);
+
+    /**
+     * Closes the current connection, if any. Its events are already ignored.
+     */
+    protected abstract void disconnect();
+
+    /**
+     * Override if needed.
+     * Decodes a message received as text. By default, it's parsed as JSON to the type given in
+     * the constructor.
+     *
+     * @param text text of the message
+     * @return the message, or null to ignore it
+     * @throws JsonParseException if the message is not valid
+     */
+    @Nullable
+    protected T decode(@NonNull String text) {
+        return mGson.fromJson(text, mType);
+    }
+
+    public void setListener(@Nullable StreamListener<T> listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Opens the connection. It has no effect if the stream is already started.
+     */
+    public synchronized void start() {
+        if (mStarted) return;
+        mStarted = true;
+        mFailedAttempts = 0;
+        connect(++mConnection);
+    }
+
+    /**
+     * Stops delivering messages until {@link #resume()} is called. The connection stays open and
+     * messages keep being buffered according to the {@link OverflowPolicy}.
+     */
+    public synchronized void pause() {
+        mPaused = true;
+    }
+
+    /**
+     * Delivers the buffered messages and the following ones.
+     */
+    public synchronized void resume() {
+        mPaused = false;
+        scheduleDelivery();
+    }
+
+    /**
+     * Closes the connection and discards the buffered messages. The stream can be started again.
+     */
+    public synchronized void close() {
+        if (!mStarted) return;
+        mStarted = false;
+        mConnection++;
+        disconnect();
+        mBuffer.clear();
+    }
+
+    public synchronized boolean isStarted() {
+        return mStarted;
+    }
+
+    public synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Returns the amount of messages discarded because the buffer was full.
+     *
+     * @return messages discarded
+     */
+    public long getDroppedCount() {
+        return mBuffer.getDroppedCount();
+    }
+
+    @NonNull
+    protected final OkHttpClient getClient() {
+        return mClient;
+    }
+
+    @NonNull
+    protected final Gson getGson() {
+        return mGson;
+    }
+
+    /**
+     * Changes the delay before the first reconnection attempt, usually as requested by the server.
+     *
+     * @param delayMs delay in milliseconds
+     */
+    protected final synchronized void setReconnectDelay(long delayMs) {
+        mReconnectDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Reports that a connection was opened.
+     *
+     * @param connection id of the connection
+     */
+    protected final void onConnectionOpened(int connection) {
+        synchronized (this) {
+            if (connection != mConnection) return;
+            mFailedAttempts = 0;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                StreamListener<T> listener = mListener;
+                if (listener != null) listener.onConnected();
+            }
+        });
+    }
+
+    /**
+     * Reports that a connection received a message.
+     *
+     * @param connection id of the connection
+     * @param text       text of the message
+     */
+    protected final void onMessageReceived(int connection, @NonNull String text) {
+        T message;
+        try {
+            message = decode(text);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Discarding invalid message", e);
+            return;
+        }
+        if (message == null) return;
+
+        synchronized (this) {
+            if (connection != mConnection) return;
+            mBuffer.offer(message);
+            scheduleDelivery();
+        }
+    }
+
+    /**
+     * Reports that a connection was closed or couldn't be opened.
+     *
+     * @param connection id of the connection
+     * @param t          the cause, or null if the server closed it normally
+     * @param reconnect  <b>true</b> to connect again after a delay, <b>false</b> to stop the stream
+     */
+    protected final void onConnectionClosed(int connection, @Nullable final Throwable t,
+                                            final boolean reconnect) {
+        synchronized (this) {
+            if (connection != mConnection) return;
+            if (reconnect) {
+                scheduleReconnect();
+            } else {
+                mStarted = false;
+                mConnection++;
+            }
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                StreamListener<T> listener = mListener;
+                if (listener != null) listener.onDisconnected(t, reconnect);
+            }
+        });
+    }
+
+    private void scheduleDelivery() {
+        if (mDeliveryScheduled || mPaused || !mStarted) return;
+        mDeliveryScheduled = true;
+        mMainHandler.post(mDelivery);
+    }
+
+    private void scheduleReconnect() {
+        long delay = Math.min(MAX_RECONNECT_DELAY_MS,
+                mReconnectDelayMs << Math.min(mFailedAttempts, 16));
+        delay += (long) (delay * RECONNECT_JITTER * (mRandom.nextFloat() * 2 - 1));
+        mFailedAttempts++;
+
+        final int connection = ++mConnection;
+        getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (EventStream.this) {
+                    if (connection == mConnection) connect(connection);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @NonNull
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (sScheduler == null) {
+            sScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "EventStream");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sScheduler;
+    }
+}
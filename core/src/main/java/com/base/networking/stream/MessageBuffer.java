@@ -0,0 +1,54 @@
+package com.base.networking.stream;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded queue of messages waiting to be delivered, which applies an {@link OverflowPolicy}
+ * when full.
+ *
+ * @param <T> type of the messages
+ */
+class MessageBuffer<T> {
+
+    private final ArrayDeque<T> mQueue = new ArrayDeque<>();
+    private final int mCapacity;
+    private final OverflowPolicy mPolicy;
+    private long mDropped;
+
+    MessageBuffer(int capacity, @NonNull OverflowPolicy policy) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be > 0");
+        mCapacity = capacity;
+        mPolicy = policy;
+    }
+
+    synchronized void offer(@NonNull T message) {
+        if (mPolicy == OverflowPolicy.CONFLATE) {
+            mDropped += mQueue.size();
+            mQueue.clear();
+        } else if (mQueue.size() >= mCapacity) {
+            mDropped++;
+            if (mPolicy == OverflowPolicy.DROP_NEWEST) return;
+            mQueue.poll();
+        }
+        mQueue.add(message);
+    }
+
+    @NonNull
+    synchronized List<T> drain() {
+        List<T> messages = new ArrayList<>(mQueue);
+        mQueue.clear();
+        return messages;
+    }
+
+    synchronized void clear() {
+        mQueue.clear();
+    }
+
+    synchronized long getDroppedCount() {
+        return mDropped;
+    }
+}
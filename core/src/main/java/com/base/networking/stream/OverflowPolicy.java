@@ -0,0 +1,24 @@
+package com.base.networking.stream;
+
+/**
+ * Defines what an {@link EventStream} does with a new message when its buffer is full, usually
+ * because the stream is paused or the main thread is busy.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The oldest buffered message is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new message is discarded.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Every buffered message is replaced by the new one, so only the latest state is delivered.
+     * Use it when each message is a full snapshot.
+     */
+    CONFLATE
+}
@@ -0,0 +1,213 @@
+package com.base.networking.stream;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.NetworkCodes;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * An {@link EventStream} that receives
+ * <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent Events</a>.
+ * <p>
+ * The data of each event is decoded as a message. When reconnecting, the id of the last event
+ * received is sent in the "Last-Event-ID" header so the server can resume from it, and the
+ * "retry" field sent by the server is used as the reconnection delay. The stream stops for good
+ * if the server answers {@value NetworkCodes#OK_NO_CONTENT} or a client error, as the
+ * specification requires.
+ * <p>
+ * The application interceptors of the client are not used, since most of them, like a body
+ * logger, read the whole body and would never return. If nothing, not even a comment, is
+ * received for {@value #IDLE_TIMEOUT_SECONDS} seconds, the connection is considered dead and
+ * opened again, so servers should send a heartbeat comment more often than that.
+ * <p>
+ * Usage:
+ * SseStream&lt;Score&gt; stream = new SseStream&lt;&gt;(retrofitServices.getClient(), gson,
+ * Score.class, request, 1, OverflowPolicy.CONFLATE);
+ * stream.setListener(listener);
+ * stream.start();
+ *
+ * @param <T> type of the messages
+ */
+public class SseStream<T> extends EventStream<T> {
+
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final String EVENT_STREAM_TYPE = "text/event-stream";
+    private static final String DEFAULT_EVENT = "message";
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+
+    private static ExecutorService sExecutor;
+
+    private final OkHttpClient mStreamClient;
+    private final Request mRequest;
+    private volatile String mLastEventId;
+    private Call mCall;
+
+    /**
+     * @param client     client used to connect, usually the one from
+     *                   {@link com.base.networking.retrofit.RetrofitServices#getClient()},
+     *                   without its application interceptors and with an idle read timeout
+     * @param gson       Gson used to decode the data of the events
+     * @param type       type the data of the events is decoded to
+     * @param request    request that opens the stream
+     * @param bufferSize max amount of messages waiting to be delivered
+     * @param policy     what to do with new messages when the buffer is full
+     */
+    public SseStream(@NonNull OkHttpClient client, @NonNull Gson gson, @NonNull Type type,
+                     @NonNull Request request, int bufferSize, @NonNull OverflowPolicy policy) {
+        super(client, gson, type, bufferSize, policy);
+        OkHttpClient.Builder builder = client.newBuilder()
+                .cache(null)
+                .readTimeout(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        builder.interceptors().clear();
+        mStreamClient = builder.build();
+        mRequest = request;
+    }
+
+    /**
+     * Override if needed.
+     * Checks if the events of the given type are delivered. By default, only events without a
+     * type, or with the type "message", are.
+     *
+     * @param event type of the event
+     * @return <b>true</b> to decode and deliver the event, <b>false</b> to ignore it
+     */
+    protected boolean acceptEvent(@NonNull String event) {
+        return DEFAULT_EVENT.equals(event);
+    }
+
+    /**
+     * Returns the id of the last event received, sent to the server when reconnecting.
+     *
+     * @return the id, or null if no event had one
+     */
+    @Nullable
+    public String getLastEventId() {
+        return mLastEventId;
+    }
+
+    @Override
+    protected synchronized void connect(final int connection) {
+        Request.Builder builder = mRequest.newBuilder()
+                .header("Accept", EVENT_STREAM_TYPE)
+                .header("Cache-Control", "no-cache");
+        if (mLastEventId != null) builder.header(LAST_EVENT_ID_HEADER, mLastEventId);
+
+        final Call call = mStreamClient.newCall(builder.build());
+        mCall = call;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                read(connection, call);
+            }
+        });
+    }
+
+    @Override
+    protected synchronized void disconnect() {
+        if (mCall != null) mCall.cancel();
+        mCall = null;
+    }
+
+    private void read(int connection, @NonNull Call call) {
+        Response response = null;
+        try {
+            response = call.execute();
+            ResponseBody body = response.body();
+            if (response.code() == NetworkCodes.OK_NO_CONTENT) {
+                onConnectionClosed(connection, null, false);
+                return;
+            }
+            if (!response.isSuccessful() || body == null) {
+                boolean retry = response.code() >= NetworkCodes.ERROR_INTERNAL
+                        || response.code() == NetworkCodes.ERROR_REQUEST_TIMEOUT
+                        || response.code() == NetworkCodes.ERROR_TOO_MANY_REQUESTS;
+                onConnectionClosed(connection,
+                        new IOException("Unexpected response " + response.code()), retry);
+                return;
+            }
+
+            onConnectionOpened(connection);
+            readEvents(connection, body.source());
+            onConnectionClosed(connection, null, true);
+        } catch (IOException e) {
+            onConnectionClosed(connection, e, true);
+        } finally {
+            if (response != null) response.close();
+        }
+    }
+
+    /**
+     * Parses events until the server closes the stream.
+     */
+    private void readEvents(int connection, @NonNull BufferedSource source) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String event = DEFAULT_EVENT;
+        String id = mLastEventId;
+
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                mLastEventId = id;
+                if (data.length() > 0 && acceptEvent(event)) {
+                    onMessageReceived(connection, data.substring(0, data.length() - 1));
+                }
+                data.setLength(0);
+                event = DEFAULT_EVENT;
+                continue;
+            }
+            if (line.startsWith(":")) continue;
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+
+            switch (field) {
+                case "data":
+                    data.append(value).append('\n');
+                    break;
+                case "event":
+                    event = value.isEmpty() ? DEFAULT_EVENT : value;
+                    break;
+                case "id":
+                    if (value.indexOf('\0') < 0) id = value;
+                    break;
+                case "retry":
+                    if (value.matches("[0-9]+")) setReconnectDelay(Long.parseLong(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @NonNull
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SseStream");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+}
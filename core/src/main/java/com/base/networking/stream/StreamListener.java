@@ -0,0 +1,34 @@
+package com.base.networking.stream;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Callback for the messages received by an {@link EventStream}. Every method is called on the
+ * main thread.
+ *
+ * @param <T> type of the messages
+ */
+public interface StreamListener<T> {
+
+    /**
+     * The connection was opened, or opened again after being lost.
+     */
+    void onConnected();
+
+    /**
+     * A message was received.
+     *
+     * @param message the decoded message
+     */
+    void onMessage(@NonNull T message);
+
+    /**
+     * The connection was lost or couldn't be opened.
+     *
+     * @param t            the cause, or null if the server closed the connection normally
+     * @param reconnecting <b>true</b> if the stream will connect again after a delay,
+     *                     <b>false</b> if it stopped for good
+     */
+    void onDisconnected(@Nullable Throwable t, boolean reconnecting);
+}
@@ -0,0 +1,104 @@
+package com.base.networking.stream;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+/**
+ * An {@link EventStream} that receives the text messages of a WebSocket, and can send messages
+ * encoded with Gson while connected.
+ * <p>
+ * The connection is pinged periodically so a dead connection is detected and opened again. The
+ * stream stops for good only when the server closes the WebSocket with the normal closure code.
+ *
+ * @param <T> type of the messages received
+ */
+public class WebSocketStream<T> extends EventStream<T> {
+
+    private static final int NORMAL_CLOSURE = 1000;
+    private static final long PING_INTERVAL_SECONDS = 30;
+
+    private final OkHttpClient mSocketClient;
+    private final Request mRequest;
+    private WebSocket mWebSocket;
+
+    /**
+     * @param client     client used to connect, usually the one from
+     *                   {@link com.base.networking.retrofit.RetrofitServices#getClient()}
+     * @param gson       Gson used to decode and encode the messages
+     * @param type       type the messages received are decoded to
+     * @param request    request that opens the WebSocket
+     * @param bufferSize max amount of messages waiting to be delivered
+     * @param policy     what to do with new messages when the buffer is full
+     */
+    public WebSocketStream(@NonNull OkHttpClient client, @NonNull Gson gson, @NonNull Type type,
+                           @NonNull Request request, int bufferSize,
+                           @NonNull OverflowPolicy policy) {
+        super(client, gson, type, bufferSize, policy);
+        mSocketClient = client.newBuilder()
+                .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .build();
+        mRequest = request;
+    }
+
+    /**
+     * Sends a message encoded as JSON.
+     *
+     * @param message message to send
+     * @return <b>true</b> if the message was enqueued, <b>false</b> if the WebSocket is not open
+     */
+    public synchronized boolean send(@NonNull Object message) {
+        return mWebSocket != null && mWebSocket.send(getGson().toJson(message));
+    }
+
+    @Override
+    protected synchronized void connect(final int connection) {
+        mWebSocket = mSocketClient.newWebSocket(mRequest, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                onConnectionOpened(connection);
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                onMessageReceived(connection, text);
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                onMessageReceived(connection, bytes.utf8());
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                webSocket.close(code, null);
+            }
+
+            @Override
+            public void onClosed(WebSocket webSocket, int code, String reason) {
+                onConnectionClosed(connection, null, code != NORMAL_CLOSURE);
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                onConnectionClosed(connection, t, true);
+            }
+        });
+    }
+
+    @Override
+    protected synchronized void disconnect() {
+        if (mWebSocket != null) mWebSocket.close(NORMAL_CLOSURE, null);
+        mWebSocket = null;
+    }
+}
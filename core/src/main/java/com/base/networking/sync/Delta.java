@@ -0,0 +1,62 @@
+package com.base.networking.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The changes of a collection between two versions, as returned by a delta endpoint. It's either
+ * a JSON Patch to apply to the whole document, or lists of upserted items and deleted ids.
+ */
+public class Delta {
+
+    final String mBaseVersion;
+    final String mVersion;
+    final JsonArray mPatch;
+    final JsonArray mUpserts;
+    final Collection<String> mDeletedIds;
+
+    private Delta(@Nullable String baseVersion, @NonNull String version,
+                  @Nullable JsonArray patch, @Nullable JsonArray upserts,
+                  @Nullable Collection<String> deletedIds) {
+        mBaseVersion = baseVersion;
+        mVersion = version;
+        mPatch = patch;
+        mUpserts = upserts != null ? upserts : new JsonArray();
+        mDeletedIds = deletedIds != null ? deletedIds : Collections.<String>emptyList();
+    }
+
+    /**
+     * Creates a delta described by a JSON Patch.
+     *
+     * @param baseVersion version the patch applies to, or null if the server doesn't report it
+     * @param version     version of the document after applying the patch
+     * @param patch       array of RFC 6902 operations
+     * @return the delta
+     */
+    @NonNull
+    public static Delta ofPatch(@Nullable String baseVersion, @NonNull String version,
+                                @NonNull JsonArray patch) {
+        return new Delta(baseVersion, version, patch, null, null);
+    }
+
+    /**
+     * Creates a delta described by the items added or modified and the ids of the items removed.
+     *
+     * @param baseVersion version the changes apply to, or null if the server doesn't report it
+     * @param version     version of the collection after applying the changes
+     * @param upserts     items added or modified, replaced whole by their id
+     * @param deletedIds  ids of the items removed
+     * @return the delta
+     */
+    @NonNull
+    public static Delta ofChanges(@Nullable String baseVersion, @NonNull String version,
+                                  @Nullable JsonArray upserts,
+                                  @Nullable Collection<String> deletedIds) {
+        return new Delta(baseVersion, version, null, upserts, deletedIds);
+    }
+}
@@ -0,0 +1,499 @@
+package com.base.networking.sync;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.NetworkCodes;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Call;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * Keeps a local, versioned copy of a collection and updates it with the changes since the last
+ * version instead of downloading it whole.
+ * <p>
+ * The first sync downloads the full collection. The following ones request a delta with the
+ * version token of the local copy, and apply it in place: either a JSON Patch (RFC 6902) or lists
+ * of upserted items and deleted ids. The collection is downloaded whole again only when a version
+ * gap is detected: the delta is based on a different version than the local copy, the server
+ * answers {@value NetworkCodes#ERROR_GONE} (the version is too old) or the delta doesn't apply.
+ * <p>
+ * The local copy is stored as JSON in the app's files dir, and parsed with the {@link Gson} given,
+ * usually the one from {@link com.base.networking.retrofit.RetrofitServices#getConverterGson()},
+ * so the same adapters used for the API calls apply. The calls must return a
+ * {@link JsonElement}, which the Gson converter already supports.
+ * <p>
+ * Syncs are performed one at a time in background, and the result is delivered on the main
+ * thread.
+ *
+ * @param <T> type the collection is parsed to
+ */
+public abstract class DeltaSync<T> {
+
+    private static final String TAG = "DeltaSync";
+
+    private static final String DIRECTORY = "sync";
+    private static final String VERSION_MEMBER = "version";
+    private static final String DOCUMENT_MEMBER = "document";
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Gson mGson;
+    private final Type mType;
+    private final File mFile;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by this
+    private boolean mLoaded;
+    private String mVersion;
+    private JsonElement mDocument;
+    private T mData;
+    private int mFullSyncs;
+    private int mDeltaSyncs;
+
+    /**
+     * Callback for the syncs performed by a {@link DeltaSync}.
+     *
+     * @param <T> type the collection is parsed to
+     */
+    public interface SyncListener<T> {
+
+        /**
+         * The local copy is up to date.
+         *
+         * @param data the collection
+         * @param full <b>true</b> if it was downloaded whole, <b>false</b> if a delta was
+         *             applied
+         */
+        void onSynced(@NonNull T data, boolean full);
+
+        /**
+         * The collection couldn't be synced. The local copy, if any, is left as it was.
+         *
+         * @param t the cause of the failure, a {@link HttpException} if the API answered with an
+         *          error
+         */
+        void onSyncFailed(@NonNull Throwable t);
+    }
+
+    /**
+     * @param context any {@link Context}
+     * @param gson    Gson used to parse the collection
+     * @param name    name of the file of the local copy, must be unique for each collection
+     * @param type    type the collection is parsed to
+     */
+    protected DeltaSync(@NonNull Context context, @NonNull Gson gson, @NonNull String name,
+                        @NonNull Type type) {
+        mGson = gson;
+        mType = type;
+        mFile = new File(new File(context.getApplicationContext().getFilesDir(), DIRECTORY),
+                name + ".json");
+    }
+
+    /**
+     * Creates the call that requests the whole collection.
+     *
+     * @return the call
+     */
+    @NonNull
+    protected abstract Call<JsonElement> createFullCall();
+
+    /**
+     * Creates the call that requests the changes since a version.
+     *
+     * @param version version token of the local copy
+     * @return the call
+     */
+    @NonNull
+    protected abstract Call<JsonElement> createDeltaCall(@NonNull String version);
+
+    /**
+     * Returns the version token of a full response, usually from a member of the body or the
+     * ETag header.
+     *
+     * @param response API response
+     * @return the version token
+     */
+    @NonNull
+    protected abstract String getFullVersion(@NonNull Response<JsonElement> response);
+
+    /**
+     * Reads the changes from a delta response.
+     *
+     * @param response API response
+     * @return the changes
+     * @throws JsonParseException            if the body doesn't describe a delta
+     * @throws IllegalStateException         if an element of the body has an unexpected type,
+     *                                       like the ones thrown by Gson's getAs methods
+     * @throws UnsupportedOperationException same as above
+     */
+    @NonNull
+    protected abstract Delta getDelta(@NonNull Response<JsonElement> response);
+
+    /**
+     * Override if needed.
+     * Returns the collection from a full response. By default, it's the whole body.
+     *
+     * @param body body of the API response
+     * @return the collection
+     */
+    @NonNull
+    protected JsonElement getFullDocument(@NonNull JsonElement body) {
+        return body;
+    }
+
+    /**
+     * Override if needed.
+     * Returns the JSON Pointer to the array of items that deltas with upserts and deleted ids
+     * modify. By default, it's the whole collection.
+     *
+     * @return pointer to the array of items
+     */
+    @NonNull
+    protected String getItemsPointer() {
+        return "";
+    }
+
+    /**
+     * Override if needed.
+     * Returns the member that identifies each item of the collection. By default, it's "id".
+     *
+     * @return name of the id member
+     */
+    @NonNull
+    protected String getIdMember() {
+        return "id";
+    }
+
+    /**
+     * Syncs the local copy in background.
+     *
+     * @param listener callback for the result, called on the main thread
+     */
+    public void sync(@Nullable final SyncListener<T> listener) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final boolean full = performSync();
+                    final T data = getData();
+                    if (listener == null || data == null) return;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onSynced(data, full);
+                        }
+                    });
+                } catch (final Exception e) {
+                    Log.w(TAG, "Couldn't sync " + mFile.getName(), e);
+                    if (listener == null) return;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onSyncFailed(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the local copy of the collection, reading it from disk if needed.
+     *
+     * @return the collection, or null if it was never synced
+     */
+    @Nullable
+    public synchronized T getData() {
+        load();
+        return mData;
+    }
+
+    /**
+     * Returns the version token of the local copy.
+     *
+     * @return the version, or null if it was never synced
+     */
+    @Nullable
+    public synchronized String getVersion() {
+        load();
+        return mVersion;
+    }
+
+    /**
+     * Deletes the local copy, so the next sync downloads the whole collection.
+     */
+    public synchronized void clear() {
+        mLoaded = true;
+        mVersion = null;
+        mDocument = null;
+        mData = null;
+        if (mFile.exists() && !mFile.delete()) Log.w(TAG, "Couldn't delete " + mFile);
+    }
+
+    /**
+     * Returns the amount of syncs that downloaded the whole collection.
+     *
+     * @return full syncs
+     */
+    public synchronized int getFullSyncCount() {
+        return mFullSyncs;
+    }
+
+    /**
+     * Returns the amount of syncs resolved applying a delta.
+     *
+     * @return delta syncs
+     */
+    public synchronized int getDeltaSyncCount() {
+        return mDeltaSyncs;
+    }
+
+    /**
+     * Applies a delta if there is a local copy, or downloads the whole collection otherwise or if
+     * the delta doesn't apply. Only called from sExecutor, so only one sync runs at a time.
+     *
+     * @return <b>true</b> if the whole collection was downloaded
+     */
+    private boolean performSync() throws IOException, HttpException {
+        String version;
+        JsonElement document;
+        synchronized (this) {
+            load();
+            version = mVersion;
+            document = mDocument;
+        }
+
+        if (version != null && document != null && syncDelta(version, document)) return false;
+        syncFull();
+        return true;
+    }
+
+    /**
+     * @return <b>true</b> if the delta was applied, <b>false</b> if there is a version gap
+     */
+    private boolean syncDelta(@NonNull String version, @NonNull JsonElement document)
+            throws IOException, HttpException {
+        Response<JsonElement> response = createDeltaCall(version).execute();
+        if (response.code() == NetworkCodes.ERROR_GONE) return false;
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new HttpException(response);
+        }
+
+        Delta delta;
+        try {
+            delta = getDelta(response);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            // Handled as a gap, the full collection is fetched instead
+            Log.w(TAG, "Invalid delta for " + mFile.getName(), e);
+            return false;
+        }
+        if (delta.mBaseVersion != null && !delta.mBaseVersion.equals(version)) return false;
+        if (delta.mVersion.equals(version)) {
+            synchronized (this) {
+                mDeltaSyncs++;
+            }
+            return true;
+        }
+
+        JsonElement patched = document;
+        try {
+            if (delta.mPatch != null) {
+                patched = JsonPatch.apply(document, delta.mPatch);
+            } else {
+                applyChanges(document, delta);
+            }
+        } catch (JsonPatchException | IllegalStateException e) {
+            Log.w(TAG, "Couldn't apply delta to " + mFile.getName(), e);
+            discardDocument();
+            return false;
+        }
+
+        T data;
+        try {
+            data = parse(patched);
+        } catch (IOException e) {
+            discardDocument();
+            throw e;
+        }
+        synchronized (this) {
+            update(delta.mVersion, patched, data);
+            mDeltaSyncs++;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the document in memory, which may be partially patched, so it's read from disk again
+     * if the full download fails.
+     */
+    private synchronized void discardDocument() {
+        mLoaded = false;
+        mDocument = null;
+    }
+
+    private void syncFull() throws IOException, HttpException {
+        Response<JsonElement> response = createFullCall().execute();
+        JsonElement body = response.body();
+        if (!response.isSuccessful() || body == null) throw new HttpException(response);
+
+        String version = getFullVersion(response);
+        JsonElement document = getFullDocument(body);
+        T data = parse(document);
+        synchronized (this) {
+            update(version, document, data);
+            mFullSyncs++;
+        }
+    }
+
+    /**
+     * Replaces the items with the ids of the upserted ones, appends the new ones and removes the
+     * deleted ones, keeping the order of the rest.
+     */
+    private void applyChanges(@NonNull JsonElement document, @NonNull Delta delta)
+            throws JsonPatchException {
+        JsonArray items = JsonPatch.get(document, getItemsPointer()).getAsJsonArray();
+        String idMember = getIdMember();
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            positions.put(getId(items.get(i), idMember), i);
+        }
+        for (JsonElement item : delta.mUpserts) {
+            String id = getId(item, idMember);
+            Integer position = positions.get(id);
+            if (position != null) {
+                items.set(position, item);
+            } else {
+                positions.put(id, items.size());
+                items.add(item);
+            }
+        }
+
+        if (delta.mDeletedIds.isEmpty()) return;
+        JsonArray kept = new JsonArray();
+        for (JsonElement item : items) {
+            if (!delta.mDeletedIds.contains(getId(item, idMember))) kept.add(item);
+        }
+        while (items.size() > 0) {
+            items.remove(items.size() - 1);
+        }
+        items.addAll(kept);
+    }
+
+    @NonNull
+    private static String getId(@NonNull JsonElement item, @NonNull String idMember)
+            throws JsonPatchException {
+        JsonElement id = item.isJsonObject() ? item.getAsJsonObject().get(idMember) : null;
+        if (id == null || !id.isJsonPrimitive()) {
+            throw new JsonPatchException("Item without " + idMember);
+        }
+        return id.getAsString();
+    }
+
+    @NonNull
+    private T parse(@NonNull JsonElement document) throws IOException {
+        try {
+            T data = mGson.fromJson(document, mType);
+            if (data == null) throw new IOException("Empty collection");
+            return data;
+        } catch (JsonParseException e) {
+            throw new IOException("Couldn't parse " + mFile.getName(), e);
+        }
+    }
+
+    private synchronized void update(@NonNull String version, @NonNull JsonElement document,
+                                     @NonNull T data) {
+        mVersion = version;
+        mDocument = document;
+        mData = data;
+        try {
+            save();
+        } catch (IOException e) {
+            // The copy in memory is still valid, the next sync will download it whole
+            Log.e(TAG, "Couldn't save " + mFile, e);
+            if (mFile.exists() && !mFile.delete()) Log.w(TAG, "Couldn't delete " + mFile);
+        }
+    }
+
+    private synchronized void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+        if (!mFile.exists()) return;
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(mFile), "UTF-8");
+            JsonObject stored = new JsonParser().parse(reader).getAsJsonObject();
+            JsonElement document = stored.get(DOCUMENT_MEMBER);
+            mData = parse(document);
+            mVersion = stored.get(VERSION_MEMBER).getAsString();
+            mDocument = document;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable " + mFile, e);
+            mData = null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the local copy to a temporary file and renames it, so a crash never leaves a
+     * partially written copy.
+     */
+    private void save() throws IOException {
+        File directory = mFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+
+        JsonObject stored = new JsonObject();
+        stored.addProperty(VERSION_MEMBER, mVersion);
+        stored.add(DOCUMENT_MEMBER, mDocument);
+
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        FileOutputStream fileStream = new FileOutputStream(tempFile);
+        Writer writer = new OutputStreamWriter(fileStream, "UTF-8");
+        try {
+            mGson.toJson(stored, writer);
+            writer.flush();
+            fileStream.getFD().sync();
+        } finally {
+            writer.close();
+        }
+
+        if (!tempFile.renameTo(mFile)) throw new IOException("Couldn't write " + mFile);
+    }
+}
@@ -0,0 +1,248 @@
+package com.base.networking.sync;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies JSON Patch documents (<a href="https://tools.ietf.org/html/rfc6902">RFC 6902</a>) to
+ * Gson trees. Paths are JSON Pointers (<a href="https://tools.ietf.org/html/rfc6901">RFC 6901</a>).
+ * <p>
+ * Operations modify the document in place, so when one of them fails the document may be left
+ * partially patched and must be discarded.
+ */
+public final class JsonPatch {
+
+    private static final String APPEND_INDEX = "-";
+
+    private JsonPatch() {
+    }
+
+    /**
+     * Applies every operation of a patch to a document.
+     *
+     * @param document document to patch, modified in place
+     * @param patch    array of operations
+     * @return the patched document, which is a different instance only if an operation replaced
+     * the whole document
+     * @throws JsonPatchException if any operation can't be applied
+     */
+    @NonNull
+    public static JsonElement apply(@NonNull JsonElement document, @NonNull JsonArray patch)
+            throws JsonPatchException {
+        JsonElement result = document;
+        for (JsonElement operation : patch) {
+            if (!operation.isJsonObject()) throw new JsonPatchException("Invalid operation");
+            result = applyOperation(result, operation.getAsJsonObject());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value the given pointer refers to.
+     *
+     * @param document document to search in
+     * @param pointer  JSON Pointer
+     * @return the value
+     * @throws JsonPatchException if the pointer doesn't exist in the document
+     */
+    @NonNull
+    public static JsonElement get(@NonNull JsonElement document, @NonNull String pointer)
+            throws JsonPatchException {
+        JsonElement current = document;
+        for (String token : parsePointer(pointer)) {
+            current = getChild(current, token);
+        }
+        return current;
+    }
+
+    @NonNull
+    private static JsonElement applyOperation(@NonNull JsonElement document,
+                                              @NonNull JsonObject operation)
+            throws JsonPatchException {
+        String op = getMember(operation, "op");
+        String path = getMember(operation, "path");
+        switch (op) {
+            case "add":
+                return add(document, path, getValue(operation));
+            case "remove":
+                return remove(document, path);
+            case "replace":
+                get(document, path);
+                return add(remove(document, path), path, getValue(operation));
+            case "move": {
+                String from = getMember(operation, "from");
+                if (path.startsWith(from + "/")) {
+                    throw new JsonPatchException("Can't move " + from + " into its child " + path);
+                }
+                JsonElement value = get(document, from);
+                return add(remove(document, from), path, value);
+            }
+            case "copy":
+                return add(document, path, deepCopy(get(document, getMember(operation, "from"))));
+            case "test":
+                if (!get(document, path).equals(getValue(operation))) {
+                    throw new JsonPatchException("Test failed at " + path);
+                }
+                return document;
+            default:
+                throw new JsonPatchException("Unknown operation " + op);
+        }
+    }
+
+    @NonNull
+    private static JsonElement add(@NonNull JsonElement document, @NonNull String path,
+                                   @NonNull JsonElement value) throws JsonPatchException {
+        List<String> tokens = parsePointer(path);
+        if (tokens.isEmpty()) return value;
+
+        JsonElement parent = getParent(document, tokens);
+        String token = tokens.get(tokens.size() - 1);
+        if (parent.isJsonObject()) {
+            parent.getAsJsonObject().add(token, value);
+        } else if (parent.isJsonArray()) {
+            JsonArray array = parent.getAsJsonArray();
+            if (APPEND_INDEX.equals(token)) {
+                array.add(value);
+            } else {
+                insert(array, getIndex(token, array.size() + 1), value);
+            }
+        } else {
+            throw new JsonPatchException("Can't add to a value at " + path);
+        }
+        return document;
+    }
+
+    @NonNull
+    private static JsonElement remove(@NonNull JsonElement document, @NonNull String path)
+            throws JsonPatchException {
+        List<String> tokens = parsePointer(path);
+        if (tokens.isEmpty()) return JsonNull.INSTANCE;
+
+        JsonElement parent = getParent(document, tokens);
+        String token = tokens.get(tokens.size() - 1);
+        if (parent.isJsonObject()) {
+            if (parent.getAsJsonObject().remove(token) == null) {
+                throw new JsonPatchException("Missing member at " + path);
+            }
+        } else if (parent.isJsonArray()) {
+            JsonArray array = parent.getAsJsonArray();
+            array.remove(getIndex(token, array.size()));
+        } else {
+            throw new JsonPatchException("Can't remove from a value at " + path);
+        }
+        return document;
+    }
+
+    @NonNull
+    private static JsonElement getParent(@NonNull JsonElement document,
+                                         @NonNull List<String> tokens) throws JsonPatchException {
+        JsonElement current = document;
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            current = getChild(current, tokens.get(i));
+        }
+        return current;
+    }
+
+    @NonNull
+    private static JsonElement getChild(@NonNull JsonElement element, @NonNull String token)
+            throws JsonPatchException {
+        JsonElement child = null;
+        if (element.isJsonObject()) {
+            child = element.getAsJsonObject().get(token);
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            child = array.get(getIndex(token, array.size()));
+        }
+        if (child == null) throw new JsonPatchException("Missing member " + token);
+        return child;
+    }
+
+    /**
+     * Inserts a value in an array, shifting the following elements, since {@link JsonArray}
+     * can only append.
+     */
+    private static void insert(@NonNull JsonArray array, int index, @NonNull JsonElement value) {
+        List<JsonElement> tail = new ArrayList<>();
+        while (array.size() > index) {
+            tail.add(array.remove(index));
+        }
+        array.add(value);
+        for (JsonElement element : tail) {
+            array.add(element);
+        }
+    }
+
+    private static int getIndex(@NonNull String token, int size) throws JsonPatchException {
+        if (!token.matches("0|[1-9][0-9]*")) {
+            throw new JsonPatchException("Invalid array index " + token);
+        }
+        try {
+            int index = Integer.parseInt(token);
+            if (index < size) return index;
+        } catch (NumberFormatException e) {
+            // Too large, reported below
+        }
+        throw new JsonPatchException("Array index out of bounds " + token);
+    }
+
+    @NonNull
+    private static List<String> parsePointer(@NonNull String pointer) throws JsonPatchException {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) return tokens;
+        if (pointer.charAt(0) != '/') throw new JsonPatchException("Invalid pointer " + pointer);
+
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    @NonNull
+    private static String getMember(@NonNull JsonObject operation, @NonNull String name)
+            throws JsonPatchException {
+        JsonElement member = operation.get(name);
+        if (member == null || !member.isJsonPrimitive()) {
+            throw new JsonPatchException("Operation without " + name);
+        }
+        return member.getAsString();
+    }
+
+    @NonNull
+    private static JsonElement getValue(@NonNull JsonObject operation)
+            throws JsonPatchException {
+        JsonElement value = operation.get("value");
+        if (value == null) throw new JsonPatchException("Operation without value");
+        return value;
+    }
+
+    /**
+     * Copies an element, since Gson only exposes deepCopy() from version 2.8.2. Primitives are
+     * immutable, so they are shared.
+     */
+    @NonNull
+    private static JsonElement deepCopy(@NonNull JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject copy = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                copy.add(entry.getKey(), deepCopy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (element.isJsonArray()) {
+            JsonArray copy = new JsonArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                copy.add(deepCopy(child));
+            }
+            return copy;
+        }
+        return element;
+    }
+}
@@ -0,0 +1,16 @@
+package com.base.networking.sync;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Thrown when a JSON Patch operation can't be applied to a document, because it's malformed,
+ * its path doesn't exist or a "test" operation failed.
+ */
+public class JsonPatchException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonPatchException(@NonNull String message) {
+        super(message);
+    }
+}
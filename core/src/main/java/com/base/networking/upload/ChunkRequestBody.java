@@ -0,0 +1,75 @@
+package com.base.networking.upload;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * A {@link RequestBody} that streams a range of an {@link UploadSource}, segment by segment,
+ * reporting the progress as it's written.
+ */
+class ChunkRequestBody extends RequestBody {
+
+    private static final long SEGMENT_SIZE = 8192;
+
+    /**
+     * Receives the amount of bytes of the whole source written so far.
+     */
+    interface ProgressCallback {
+
+        void onProgress(long position);
+    }
+
+    private final UploadSource mSource;
+    private final MediaType mContentType;
+    private final long mOffset;
+    private final long mLength;
+    private final ProgressCallback mCallback;
+
+    ChunkRequestBody(@NonNull UploadSource source, @Nullable MediaType contentType, long offset,
+                     long length, @NonNull ProgressCallback callback) {
+        mSource = source;
+        mContentType = contentType;
+        mOffset = offset;
+        mLength = length;
+        mCallback = callback;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mContentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return mLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        InputStream in = mSource.open(mOffset);
+        Source source = Okio.source(in);
+        Buffer buffer = new Buffer();
+        try {
+            long written = 0;
+            while (written < mLength) {
+                long read = source.read(buffer, Math.min(SEGMENT_SIZE, mLength - written));
+                if (read == -1) throw new IOException("Upload source ended before expected");
+                sink.write(buffer, read);
+                written += read;
+                mCallback.onProgress(mOffset + written);
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
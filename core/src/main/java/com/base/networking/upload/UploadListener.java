@@ -0,0 +1,41 @@
+package com.base.networking.upload;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Callback for uploads performed by the {@link UploadManager}. Every method is called on the
+ * main thread.
+ */
+public interface UploadListener {
+
+    /**
+     * The server created the upload. Store the URL to resume the upload if the process dies
+     * before it finishes.
+     *
+     * @param uploadUrl URL of the upload on the server
+     */
+    void onUploadCreated(@NonNull String uploadUrl);
+
+    /**
+     * Part of the content was sent.
+     *
+     * @param uploadedBytes amount of bytes sent
+     * @param totalBytes    size of the content
+     */
+    void onProgress(long uploadedBytes, long totalBytes);
+
+    /**
+     * The server acknowledged the whole content.
+     *
+     * @param uploadUrl URL of the upload on the server
+     */
+    void onUploadSuccessful(@NonNull String uploadUrl);
+
+    /**
+     * The upload failed and retrying didn't fix it. It can still be resumed later using the URL
+     * received in {@link #onUploadCreated(String)}.
+     *
+     * @param t A Throwable with the cause of the failure
+     */
+    void onUploadFailed(@NonNull Throwable t);
+}
@@ -0,0 +1,384 @@
+package com.base.networking.upload;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.base.networking.utils.NetworkCodes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Uploads files, or any {@link UploadSource}, streaming them in chunks so the content never has
+ * to be held in memory, using the resumable upload protocol defined by tus 1.0
+ * (<a href="https://tus.io/protocols/resumable-upload">tus.io</a>), with its creation extension.
+ * <p>
+ * When sending a chunk fails, the upload asks the server for the last offset it acknowledged and
+ * resumes from there. Uploads interrupted for good can be resumed later, even after the process
+ * is restarted, with {@link #resume(String, UploadSource, UploadListener)}.
+ * <p>
+ * Note that logging request bodies, as the default <i>RetrofitServices.initClient()</i> does,
+ * buffers each chunk in memory. Use a client without body logging for large uploads.
+ */
+public class UploadManager {
+
+    private static final String TUS_RESUMABLE_HEADER = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String UPLOAD_LENGTH_HEADER = "Upload-Length";
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    private static final String LOCATION_HEADER = "Location";
+    private static final MediaType CHUNK_CONTENT_TYPE =
+            MediaType.parse("application/offset+octet-stream");
+
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+    private final OkHttpClient mClient;
+    private final long mChunkSize;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param client               client used to perform the uploads, usually the one from
+     *                             {@link com.base.networking.retrofit.RetrofitServices#getClient()}
+     * @param maxConcurrentUploads max amount of uploads running at the same time, the rest are
+     *                             queued
+     * @param chunkSize            max amount of bytes sent in each request
+     */
+    public UploadManager(@NonNull OkHttpClient client, int maxConcurrentUploads, long chunkSize) {
+        if (maxConcurrentUploads <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Concurrent uploads and chunk size must be > 0");
+        }
+        mClient = client;
+        mChunkSize = chunkSize;
+        mExecutor = new ThreadPoolExecutor(maxConcurrentUploads, maxConcurrentUploads,
+                IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Changes the max amount of uploads running at the same time.
+     *
+     * @param maxConcurrentUploads max amount of concurrent uploads, must be > 0
+     */
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        if (maxConcurrentUploads <= 0) {
+            throw new IllegalArgumentException("Concurrent uploads must be > 0");
+        }
+        if (maxConcurrentUploads > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(maxConcurrentUploads);
+            mExecutor.setCorePoolSize(maxConcurrentUploads);
+        } else {
+            mExecutor.setCorePoolSize(maxConcurrentUploads);
+            mExecutor.setMaximumPoolSize(maxConcurrentUploads);
+        }
+    }
+
+    /**
+     * Creates a new upload in the server and sends the content.
+     *
+     * @param endpoint URL where uploads are created
+     * @param source   content to upload
+     * @param listener callback for the upload
+     * @return a handle to cancel the upload
+     */
+    @NonNull
+    public UploadTask upload(@NonNull HttpUrl endpoint, @NonNull UploadSource source,
+                             @NonNull UploadListener listener) {
+        return submit(new UploadTask(endpoint, null, source, listener));
+    }
+
+    /**
+     * Resumes an upload previously created, sending the content from the last offset
+     * acknowledged by the server.
+     *
+     * @param uploadUrl URL of the upload, as received in
+     *                  {@link UploadListener#onUploadCreated(String)}
+     * @param source    content to upload, must be the same one used to create the upload
+     * @param listener  callback for the upload
+     * @return a handle to cancel the upload
+     */
+    @NonNull
+    public UploadTask resume(@NonNull String uploadUrl, @NonNull UploadSource source,
+                             @NonNull UploadListener listener) {
+        return submit(new UploadTask(null, uploadUrl, source, listener));
+    }
+
+    @NonNull
+    private UploadTask submit(@NonNull UploadTask task) {
+        task.mFuture = mExecutor.submit(task);
+        return task;
+    }
+
+    /**
+     * A running or queued upload.
+     */
+    public final class UploadTask implements Runnable {
+
+        private final HttpUrl mEndpoint;
+        private final UploadSource mSource;
+        private final UploadListener mListener;
+        private volatile String mUploadUrl;
+        private volatile boolean mCancelled;
+        private volatile Call mCall;
+        private volatile Future<?> mFuture;
+        private long mTotalBytes;
+        private long mReportedBytes = -1;
+
+        private UploadTask(@Nullable HttpUrl endpoint, @Nullable String uploadUrl,
+                           @NonNull UploadSource source, @NonNull UploadListener listener) {
+            mEndpoint = endpoint;
+            mUploadUrl = uploadUrl;
+            mSource = source;
+            mListener = listener;
+        }
+
+        /**
+         * Cancels the upload. The listener is not notified anymore. The upload can be resumed
+         * later if it was already created.
+         */
+        public void cancel() {
+            mCancelled = true;
+            Call call = mCall;
+            if (call != null) call.cancel();
+            Future<?> future = mFuture;
+            if (future != null) future.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Returns the URL of the upload in the server.
+         *
+         * @return the upload URL, or null if it wasn't created yet
+         */
+        @Nullable
+        public String getUploadUrl() {
+            return mUploadUrl;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mTotalBytes = mSource.length();
+                // -1 while the offset must be asked to the server, like when resuming
+                long offset = -1;
+                if (mUploadUrl == null) {
+                    mUploadUrl = create();
+                    final String uploadUrl = mUploadUrl;
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mListener.onUploadCreated(uploadUrl);
+                        }
+                    });
+                    offset = 0;
+                }
+
+                // Failures are only reset by a sent chunk, so a failing chunk whose offset is
+                // queried fine is still retried MAX_RETRIES times at most
+                int failures = 0;
+                while (offset < mTotalBytes) {
+                    if (mCancelled) return;
+                    try {
+                        if (offset < 0) {
+                            offset = queryOffset();
+                        } else {
+                            offset = sendChunk(offset, Math.min(mChunkSize, mTotalBytes - offset));
+                            failures = 0;
+                        }
+                    } catch (IOException e) {
+                        if (mCancelled || !isRetryable(e) || ++failures > MAX_RETRIES) throw e;
+                        sleep(RETRY_DELAY_MS << (failures - 1));
+                        offset = -1;
+                    }
+                }
+
+                reportProgress(mTotalBytes);
+                final String uploadUrl = mUploadUrl;
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onUploadSuccessful(uploadUrl);
+                    }
+                });
+            } catch (final IOException e) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onUploadFailed(e);
+                    }
+                });
+            }
+        }
+
+        @NonNull
+        private String create() throws IOException {
+            Request request = new Request.Builder()
+                    .url(mEndpoint)
+                    .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                    .header(UPLOAD_LENGTH_HEADER, String.valueOf(mTotalBytes))
+                    .post(RequestBody.create(null, new byte[0]))
+                    .build();
+            Response response = execute(request);
+            try {
+                String location = response.header(LOCATION_HEADER);
+                if (location == null) throw new IOException("Upload created without location");
+                HttpUrl uploadUrl = response.request().url().resolve(location);
+                if (uploadUrl == null) throw new IOException("Invalid upload location " + location);
+                return uploadUrl.toString();
+            } finally {
+                response.close();
+            }
+        }
+
+        private long queryOffset() throws IOException {
+            Request request = new Request.Builder()
+                    .url(mUploadUrl)
+                    .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                    .head()
+                    .build();
+            Response response = execute(request);
+            try {
+                return parseOffset(response);
+            } finally {
+                response.close();
+            }
+        }
+
+        private long sendChunk(long offset, long length) throws IOException {
+            RequestBody body = new ChunkRequestBody(mSource, CHUNK_CONTENT_TYPE, offset, length,
+                    new ChunkRequestBody.ProgressCallback() {
+                        @Override
+                        public void onProgress(long position) {
+                            reportProgress(position);
+                        }
+                    });
+            Request request = new Request.Builder()
+                    .url(mUploadUrl)
+                    .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(offset))
+                    .patch(body)
+                    .build();
+            Response response = execute(request);
+            try {
+                return parseOffset(response);
+            } finally {
+                response.close();
+            }
+        }
+
+        /**
+         * Executes the request, keeping track of the call so it can be cancelled.
+         *
+         * @param request request to execute
+         * @return a successful response
+         * @throws IOException if the request failed or the response is not successful
+         */
+        @NonNull
+        private Response execute(@NonNull Request request) throws IOException {
+            if (mCancelled) throw new InterruptedIOException("Upload cancelled");
+            mCall = mClient.newCall(request);
+            Response response = mCall.execute();
+            mCall = null;
+            if (!response.isSuccessful()) {
+                response.close();
+                throw new UploadException(response.code());
+            }
+            return response;
+        }
+
+        private long parseOffset(@NonNull Response response) throws IOException {
+            String offset = response.header(UPLOAD_OFFSET_HEADER);
+            try {
+                return Long.parseLong(offset);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid upload offset: " + offset);
+            }
+        }
+
+        /**
+         * Reports the progress to the listener, at most once per percent uploaded.
+         *
+         * @param uploadedBytes bytes uploaded
+         */
+        private void reportProgress(final long uploadedBytes) {
+            long step = Math.max(1, mTotalBytes / 100);
+            if (uploadedBytes == mReportedBytes) return;
+            if (uploadedBytes != mTotalBytes
+                    && Math.abs(uploadedBytes - mReportedBytes) < step) return;
+            mReportedBytes = uploadedBytes;
+            final long totalBytes = mTotalBytes;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onProgress(uploadedBytes, totalBytes);
+                }
+            });
+        }
+
+        private void post(@NonNull final Runnable runnable) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) runnable.run();
+                }
+            });
+        }
+
+        private void sleep(long millis) throws InterruptedIOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+        }
+    }
+
+    private static boolean isRetryable(@NonNull IOException e) {
+        if (!(e instanceof UploadException)) return true;
+        int code = ((UploadException) e).getCode();
+        return code >= NetworkCodes.ERROR_INTERNAL
+                || code == NetworkCodes.ERROR_REQUEST_TIMEOUT
+                || code == NetworkCodes.ERROR_TOO_MANY_REQUESTS
+                || code == NetworkCodes.ERROR_CONFLICT;
+    }
+
+    /**
+     * Thrown when the server answers an upload request with an error code.
+     */
+    public static class UploadException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mCode;
+
+        UploadException(int code) {
+            super("Upload request failed with code " + code);
+            mCode = code;
+        }
+
+        public int getCode() {
+            return mCode;
+        }
+    }
+}
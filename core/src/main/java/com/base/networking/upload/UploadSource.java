@@ -0,0 +1,127 @@
+package com.base.networking.upload;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content to upload, read as a stream from a given offset so it never has to be held in
+ * memory.
+ */
+public abstract class UploadSource {
+
+    /**
+     * Returns the total size of the content.
+     *
+     * @return size in bytes
+     * @throws IOException if the size can't be determined
+     */
+    public abstract long length() throws IOException;
+
+    /**
+     * Opens a stream to read the content starting at the given offset.
+     *
+     * @param offset position of the first byte to read
+     * @return a new stream, the caller must close it
+     * @throws IOException if the content can't be read
+     */
+    @NonNull
+    public abstract InputStream open(long offset) throws IOException;
+
+    /**
+     * Creates a source that reads a {@link File}.
+     *
+     * @param file file to upload
+     * @return a source for the file
+     */
+    @NonNull
+    public static UploadSource fromFile(@NonNull final File file) {
+        return new UploadSource() {
+            @Override
+            public long length() throws IOException {
+                if (!file.exists()) throw new FileNotFoundException(file.getPath());
+                return file.length();
+            }
+
+            @NonNull
+            @Override
+            public InputStream open(long offset) throws IOException {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    in.getChannel().position(offset);
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            }
+        };
+    }
+
+    /**
+     * Creates a source that reads a {@link Uri} through the {@link ContentResolver}, so it also
+     * works with content that isn't stored in a file, like the ones returned by the gallery.
+     *
+     * @param context any {@link Context}
+     * @param uri     content to upload
+     * @return a source for the content
+     */
+    @NonNull
+    public static UploadSource fromUri(@NonNull Context context, @NonNull final Uri uri) {
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        return new UploadSource() {
+            @Override
+            public long length() throws IOException {
+                AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r");
+                if (descriptor != null) {
+                    try {
+                        long length = descriptor.getLength();
+                        if (length != AssetFileDescriptor.UNKNOWN_LENGTH) return length;
+                    } finally {
+                        descriptor.close();
+                    }
+                }
+
+                Cursor cursor = resolver.query(
+                        uri, new String[]{OpenableColumns.SIZE}, null, null, null);
+                if (cursor == null) throw new IOException("Couldn't get the size of " + uri);
+                try {
+                    if (cursor.moveToFirst() && !cursor.isNull(0)) return cursor.getLong(0);
+                } finally {
+                    cursor.close();
+                }
+                throw new IOException("Couldn't get the size of " + uri);
+            }
+
+            @NonNull
+            @Override
+            public InputStream open(long offset) throws IOException {
+                InputStream in = resolver.openInputStream(uri);
+                if (in == null) throw new FileNotFoundException(uri.toString());
+                try {
+                    long remaining = offset;
+                    while (remaining > 0) {
+                        long skipped = in.skip(remaining);
+                        if (skipped <= 0) throw new IOException("Couldn't skip to " + offset);
+                        remaining -= skipped;
+                    }
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            }
+        };
+    }
+}
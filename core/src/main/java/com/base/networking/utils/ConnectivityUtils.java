@@ -0,0 +1,160 @@
+package com.base.networking.utils;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An utility class to check the device's network connectivity.
+ * It requires the <i>ACCESS_NETWORK_STATE</i> permission, which is declared by this library.
+ */
+public class ConnectivityUtils {
+
+    private ConnectivityUtils() {
+    }
+
+    /**
+     * Listener of the changes of the default network, see
+     * {@link #registerNetworkListener(Context, NetworkListener)}.
+     */
+    public interface NetworkListener {
+
+        /**
+         * Called on the main thread when the default network changes, like when switching from
+         * Wi-Fi to cellular, or when it's lost.
+         */
+        void onNetworkChanged();
+    }
+
+    /**
+     * Checks if the device has an active network connection.
+     *
+     * @param context any {@link Context}
+     * @return <b>true</b> if there is an active network that is connected, <b>false</b> otherwise.
+     */
+    public static boolean isConnected(@NonNull Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) return false;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return hasInternet(connectivityManager);
+        }
+        return isActiveNetworkConnected(connectivityManager);
+    }
+
+    /**
+     * Registers a listener of the changes of the default network. It uses a default network
+     * callback on Nougat and newer, and the connectivity broadcast before.
+     *
+     * @param context  any {@link Context}
+     * @param listener listener to notify
+     * @return a handle to give to {@link #unregisterNetworkListener(Context, Object)}
+     */
+    @NonNull
+    public static Object registerNetworkListener(@NonNull Context context,
+                                                 @NonNull NetworkListener listener) {
+        Context appContext = context.getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return registerNetworkCallback(appContext, listener);
+        }
+        return registerConnectivityReceiver(appContext, listener);
+    }
+
+    /**
+     * Unregisters a listener registered with
+     * {@link #registerNetworkListener(Context, NetworkListener)}.
+     *
+     * @param context any {@link Context}
+     * @param handle  the handle returned when registering it
+     */
+    public static void unregisterNetworkListener(@NonNull Context context,
+                                                 @NonNull Object handle) {
+        Context appContext = context.getApplicationContext();
+        if (handle instanceof BroadcastReceiver) {
+            appContext.unregisterReceiver((BroadcastReceiver) handle);
+        } else {
+            unregisterNetworkCallback(appContext, handle);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static boolean hasInternet(@NonNull ConnectivityManager connectivityManager) {
+        Network network = connectivityManager.getActiveNetwork();
+        if (network == null) return false;
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isActiveNetworkConnected(
+            @NonNull ConnectivityManager connectivityManager) {
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    @NonNull
+    private static Object registerNetworkCallback(@NonNull Context context,
+                                                  @NonNull final NetworkListener listener) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final Runnable notifyListener = new Runnable() {
+            @Override
+            public void run() {
+                listener.onNetworkChanged();
+            }
+        };
+        ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                mainHandler.post(notifyListener);
+            }
+
+            @Override
+            public void onLost(Network network) {
+                mainHandler.post(notifyListener);
+            }
+        };
+        getConnectivityManager(context).registerDefaultNetworkCallback(callback);
+        return callback;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private static void unregisterNetworkCallback(@NonNull Context context,
+                                                  @NonNull Object callback) {
+        getConnectivityManager(context).unregisterNetworkCallback(
+                (ConnectivityManager.NetworkCallback) callback);
+    }
+
+    @SuppressWarnings("deprecation")
+    @NonNull
+    private static Object registerConnectivityReceiver(@NonNull Context context,
+                                                       @NonNull final NetworkListener listener) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                listener.onNetworkChanged();
+            }
+        };
+        context.registerReceiver(receiver,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        return receiver;
+    }
+
+    @NonNull
+    private static ConnectivityManager getConnectivityManager(@NonNull Context context) {
+        return (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+}
@@ -22,11 +22,16 @@ public class NetworkCodes {
     public static final int ERROR_UNAUTHORIZED = 401;
     public static final int ERROR_FORBIDDEN = 403;
     public static final int ERROR_NOT_FOUND = 404;
+    public static final int ERROR_REQUEST_TIMEOUT = 408;
+    public static final int ERROR_CONFLICT = 409;
+    public static final int ERROR_GONE = 410;
     public static final int ERROR_PRECONDITION_FAILED = 412;
+    public static final int ERROR_TOO_MANY_REQUESTS = 429;
 
     /**
      * 5XX Server errors
      */
     public static final int ERROR_INTERNAL = 500;
+    public static final int ERROR_SERVICE_UNAVAILABLE = 503;
 
 }
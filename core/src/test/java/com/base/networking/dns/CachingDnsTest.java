@@ -0,0 +1,167 @@
+package com.base.networking.dns;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CachingDnsTest {
+
+    private static final long TTL_MS = 1000;
+    private static final long MAX_STALE_MS = 500;
+    private static final int MAX_ENTRIES = 2;
+
+    private FakeDns mUpstream;
+    private TestCachingDns mDns;
+
+    @Before
+    public void setUp() {
+        mUpstream = new FakeDns();
+        mDns = new TestCachingDns(mUpstream);
+    }
+
+    @Test
+    public void lookup_cachesUntilTheTtlExpires() throws Exception {
+        List<InetAddress> first = mDns.lookup("a.com");
+        mDns.mNow = TTL_MS - 1;
+        assertEquals(first, mDns.lookup("a.com"));
+        assertEquals(1, mUpstream.getLookups("a.com"));
+        assertEquals(1, mDns.getHitCount());
+        assertEquals(1, mDns.getMissCount());
+
+        mDns.mNow = TTL_MS;
+        assertNotEquals(first, mDns.lookup("a.com"));
+        assertEquals(2, mUpstream.getLookups("a.com"));
+        assertEquals(2, mDns.getMissCount());
+    }
+
+    @Test
+    public void lookup_refreshesHotHostsBeforeExpiring() throws Exception {
+        mDns.lookup("a.com");
+        mDns.mNow = (long) (TTL_MS * 0.75f);
+        mUpstream.mRefreshed = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            mDns.lookup("a.com");
+        }
+
+        assertTrue(mUpstream.mRefreshed.await(5, TimeUnit.SECONDS));
+        waitForRefresh();
+        assertEquals(2, mUpstream.getLookups("a.com"));
+        mDns.mNow = TTL_MS;
+        mDns.lookup("a.com");
+        assertEquals(2, mUpstream.getLookups("a.com"));
+    }
+
+    @Test
+    public void lookup_doesNotRefreshColdHosts() throws Exception {
+        mDns.lookup("a.com");
+        mDns.mNow = (long) (TTL_MS * 0.75f);
+        mDns.lookup("a.com");
+
+        assertEquals(1, mUpstream.getLookups("a.com"));
+        assertEquals(0, mDns.getRefreshCount());
+    }
+
+    @Test
+    public void lookup_servesStaleAddressesIfResolvingFails() throws Exception {
+        List<InetAddress> first = mDns.lookup("a.com");
+        mUpstream.mFailing = true;
+
+        mDns.mNow = TTL_MS + MAX_STALE_MS - 1;
+        assertEquals(first, mDns.lookup("a.com"));
+        assertEquals(1, mDns.getStaleHitCount());
+
+        mDns.mNow = TTL_MS + MAX_STALE_MS;
+        try {
+            mDns.lookup("a.com");
+            fail();
+        } catch (UnknownHostException e) {
+            assertEquals(1, mDns.getStaleHitCount());
+        }
+    }
+
+    @Test
+    public void lookup_evictsTheLeastRecentlyUsedHost() throws Exception {
+        mDns.lookup("a.com");
+        mDns.lookup("b.com");
+        mDns.lookup("a.com");
+        mDns.lookup("c.com");
+
+        mDns.lookup("a.com");
+        assertEquals(1, mUpstream.getLookups("a.com"));
+        mDns.lookup("b.com");
+        assertEquals(2, mUpstream.getLookups("b.com"));
+    }
+
+    @Test
+    public void clear_removesEveryHost() throws Exception {
+        mDns.lookup("a.com");
+        mDns.clear();
+        mDns.lookup("a.com");
+
+        assertEquals(2, mUpstream.getLookups("a.com"));
+    }
+
+    private void waitForRefresh() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mDns.getRefreshCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, mDns.getRefreshCount());
+    }
+
+    private static class TestCachingDns extends CachingDns {
+
+        private volatile long mNow;
+
+        TestCachingDns(Dns upstream) {
+            super(upstream, TTL_MS, MAX_STALE_MS, MAX_ENTRIES);
+        }
+
+        @Override
+        protected long now() {
+            return mNow;
+        }
+    }
+
+    /**
+     * Resolves every host to a different address each time, so the tests can tell a cached
+     * answer from a new one.
+     */
+    private static class FakeDns implements Dns {
+
+        private final Map<String, Integer> mLookups = new HashMap<>();
+        private volatile boolean mFailing;
+        private volatile CountDownLatch mRefreshed;
+
+        @Override
+        public synchronized List<InetAddress> lookup(String hostname)
+                throws UnknownHostException {
+            if (mFailing) throw new UnknownHostException(hostname);
+            int lookups = getLookups(hostname) + 1;
+            mLookups.put(hostname, lookups);
+            if (mRefreshed != null) mRefreshed.countDown();
+            byte[] address = {10, 0, 0, (byte) lookups};
+            return Collections.singletonList(InetAddress.getByAddress(hostname, address));
+        }
+
+        synchronized int getLookups(String hostname) {
+            Integer lookups = mLookups.get(hostname);
+            return lookups != null ? lookups : 0;
+        }
+    }
+}